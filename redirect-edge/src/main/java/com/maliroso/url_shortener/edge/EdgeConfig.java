@@ -0,0 +1,106 @@
+package com.maliroso.url_shortener.edge;
+
+import com.maliroso.url_shortener.sharding.ShardRouter;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Settings of the redirect edge, read from the same environment variables as the main app where
+ * one exists, so both can be started from one env file.
+ *
+ * @param shards shard name to JDBC url, in ring order; a single entry named
+ *               {@link ShardRouter#DEFAULT_SHARD} when the database is not sharded
+ * @param retiredShards shards removed from the ring whose rows may not have moved yet; they are
+ *                      only read as a previous shard
+ */
+public record EdgeConfig(
+        int port,
+        String username,
+        String password,
+        Map<String, String> shards,
+        Map<String, String> retiredShards,
+        List<String> previousShards,
+        int virtualNodes,
+        int maximumPoolSize,
+        int connectionTimeoutMs,
+        int queryTimeoutSeconds,
+        long retryAfterMs,
+        int cacheCapacity,
+        long hitFlushIntervalMs,
+        boolean slidingExpiryEnabled,
+        long slidingExpiryExtensionMs,
+        long slidingExpiryMinWriteIntervalMs,
+        long slidingExpiryFlushIntervalMs,
+        int slidingExpiryTrackedCodes,
+        List<String> prefixes,
+        int learnSampleSize,
+        int maxPrefixes,
+        int minCount
+) {
+
+    public static EdgeConfig fromEnvironment(Map<String, String> env) {
+        Map<String, String> shards = shardUrls(env, "SHORTENER_EDGE_SHARDS");
+        if (shards.isEmpty()) {
+            shards.put(ShardRouter.DEFAULT_SHARD, env.getOrDefault("SPRING_DATASOURCE_URL", "jdbc:postgresql://localhost:5432/mydb"));
+        }
+
+        return new EdgeConfig(
+                intValue(env, "SHORTENER_EDGE_PORT", 8081),
+                env.getOrDefault("SPRING_DATASOURCE_USERNAME", "postgres"),
+                env.getOrDefault("SPRING_DATASOURCE_PASSWORD", "postgres"),
+                shards,
+                shardUrls(env, "SHORTENER_EDGE_RETIRED_SHARDS"),
+                split(env.getOrDefault("SHORTENER_EDGE_PREVIOUS_SHARDS", "")),
+                intValue(env, "SHORTENER_EDGE_VIRTUAL_NODES", 128),
+                intValue(env, "SHORTENER_EDGE_MAXIMUM_POOL_SIZE", 10),
+                intValue(env, "SHORTENER_DB_CONNECTION_TIMEOUT_MS", 1000),
+                intValue(env, "SHORTENER_EDGE_QUERY_TIMEOUT_SECONDS", 1),
+                // the app asks clients to wait out its breaker; the edge gives the same answer
+                longValue(env, "SHORTENER_DB_BREAKER_OPEN_DURATION_MS", 5000L),
+                intValue(env, "SHORTENER_EDGE_CACHE_CAPACITY", 100000),
+                intValue(env, "SHORTENER_EDGE_HIT_FLUSH_INTERVAL_MS", 1000),
+                Boolean.parseBoolean(env.getOrDefault("SHORTENER_SLIDING_EXPIRY_ENABLED", "false").trim()),
+                longValue(env, "SHORTENER_SLIDING_EXPIRY_EXTENSION_MS", 604800000L),
+                longValue(env, "SHORTENER_SLIDING_EXPIRY_MIN_WRITE_INTERVAL_MS", 3600000L),
+                longValue(env, "SHORTENER_SLIDING_EXPIRY_FLUSH_INTERVAL_MS", 5000L),
+                intValue(env, "SHORTENER_SLIDING_EXPIRY_TRACKED_CODES", 100000),
+                split(env.getOrDefault("SHORTENER_URL_CODEC_PREFIXES", "https://,http://,https://www.")),
+                intValue(env, "SHORTENER_URL_CODEC_LEARN_SAMPLE_SIZE", 10000),
+                intValue(env, "SHORTENER_URL_CODEC_MAX_PREFIXES", 64),
+                intValue(env, "SHORTENER_URL_CODEC_MIN_COUNT", 20)
+        );
+    }
+
+    // name=url pairs; the names and virtual nodes must match shortener.sharding of the app
+    private static Map<String, String> shardUrls(Map<String, String> env, String name) {
+        Map<String, String> shards = new LinkedHashMap<>();
+        for (String entry : split(env.getOrDefault(name, ""))) {
+            int separator = entry.indexOf('=');
+            if (separator <= 0) {
+                throw new IllegalArgumentException(name + " entries must be name=jdbc-url: " + entry);
+            }
+            shards.put(entry.substring(0, separator).trim(), entry.substring(separator + 1).trim());
+        }
+        return shards;
+    }
+
+    private static int intValue(Map<String, String> env, String name, int defaultValue) {
+        String value = env.get(name);
+        return value == null || value.isBlank() ? defaultValue : Integer.parseInt(value.trim());
+    }
+
+    private static long longValue(Map<String, String> env, String name, long defaultValue) {
+        String value = env.get(name);
+        return value == null || value.isBlank() ? defaultValue : Long.parseLong(value.trim());
+    }
+
+    private static List<String> split(String value) {
+        return Arrays.stream(value.split(","))
+                .map(String::trim)
+                .filter(part -> !part.isEmpty())
+                .toList();
+    }
+}
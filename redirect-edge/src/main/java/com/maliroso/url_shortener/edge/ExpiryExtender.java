@@ -0,0 +1,95 @@
+package com.maliroso.url_shortener.edge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * The app's sliding expiry for redirects served here: a redirect only records the new expiry, the
+ * writes go to the {@link MappingSource} once per flush interval, and each code is extended at
+ * most once per minimum write interval. Cached entries keep their old expiry and reload the
+ * extended row when it passes.
+ */
+public class ExpiryExtender {
+
+    private static final Logger log = LoggerFactory.getLogger(ExpiryExtender.class);
+
+    private final MappingSource mappingSource;
+
+    private final boolean enabled;
+
+    private final Duration extension;
+
+    private final Duration minWriteInterval;
+
+    private final Map<String, MappingSource.Extension> pending = new ConcurrentHashMap<>();
+
+    // when each code was last scheduled, so one hot link costs one write per interval
+    private final Map<String, Instant> lastScheduled;
+
+    public ExpiryExtender(MappingSource mappingSource, boolean enabled, Duration extension,
+                          Duration minWriteInterval, int trackedCodes) {
+        this.mappingSource = mappingSource;
+        this.enabled = enabled;
+        this.extension = extension;
+        this.minWriteInterval = minWriteInterval;
+        this.lastScheduled = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Instant> eldest) {
+                return size() > trackedCodes;
+            }
+        };
+    }
+
+    /**
+     * Called for every redirect; does nothing unless the code is due for an extension.
+     */
+    public void touch(String code, MappingSource.Mapping mapping, Instant instant) {
+        if (!enabled) {
+            return;
+        }
+        Instant extendedTo = instant.plus(extension);
+        // extended or created within the interval already
+        if (mapping.expiresAt() != null && mapping.expiresAt().isAfter(extendedTo.minus(minWriteInterval))) {
+            return;
+        }
+        synchronized (lastScheduled) {
+            Instant last = lastScheduled.get(code);
+            if (last != null && last.isAfter(instant.minus(minWriteInterval))) {
+                return;
+            }
+            lastScheduled.put(code, instant);
+        }
+        pending.put(code, new MappingSource.Extension(code, mapping.longUrl(), extendedTo));
+    }
+
+    public int pending() {
+        return pending.size();
+    }
+
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        List<MappingSource.Extension> extensions = new ArrayList<>();
+        for (String code : pending.keySet()) {
+            MappingSource.Extension extension = pending.remove(code);
+            if (extension != null) {
+                extensions.add(extension);
+            }
+        }
+        try {
+            mappingSource.extendExpiry(extensions);
+        } catch (RuntimeException e) {
+            // the next redirect after the interval schedules the code again
+            log.warn("Dropped {} expiry extensions", extensions.size(), e);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.maliroso.url_shortener.edge;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Buffers redirect hits and hands them to the {@link MappingSource} once per flush interval, the
+ * same way the app's hit-count buffer does, so a redirect never writes.
+ */
+public class HitCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(HitCounter.class);
+
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    private final MappingSource mappingSource;
+
+    public HitCounter(MappingSource mappingSource) {
+        this.mappingSource = mappingSource;
+    }
+
+    public void increment(String code) {
+        pending.merge(code, 1L, Long::sum);
+    }
+
+    public long pending(String code) {
+        return pending.getOrDefault(code, 0L);
+    }
+
+    public void flush() {
+        if (pending.isEmpty()) {
+            return;
+        }
+        Map<String, Long> hits = new HashMap<>();
+        for (String code : pending.keySet()) {
+            // remove is atomic with merge, so a concurrent increment lands in a fresh entry
+            Long delta = pending.remove(code);
+            if (delta != null) {
+                hits.put(code, delta);
+            }
+        }
+        try {
+            mappingSource.addHits(hits);
+        } catch (RuntimeException e) {
+            log.warn("Dropped {} buffered hit counts", hits.size(), e);
+        }
+    }
+}
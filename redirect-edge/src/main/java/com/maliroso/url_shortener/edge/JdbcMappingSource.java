@@ -0,0 +1,223 @@
+package com.maliroso.url_shortener.edge;
+
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.utils.UrlHashUtil;
+import com.zaxxer.hikari.HikariDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Plain JDBC over one pool per shard, routed with the app's {@link ShardRouter} so a code is read
+ * from the shard the app wrote it to, and from its previous shard while a rebalance is running.
+ */
+public class JdbcMappingSource implements MappingSource, AutoCloseable {
+
+    private static final String FIND_SQL = "select long_url, expires_at from url_mappings where code = ? and expires_at >= ?";
+
+    private static final String UPDATE_SQL = "update url_mappings set hit_count = hit_count + ? where code = ?";
+
+    // the app's sliding expiry statements: a concurrent longer extension or a re-created code wins
+    private static final String EXTEND_SQL = "update url_mappings set expires_at = ? where code = ? and expires_at < ?";
+
+    private static final String EXTEND_DIGEST_SQL = "update url_digests set expires_at = ? where digest = ? and code = ? and expires_at < ?";
+
+    private static final String SAMPLE_SQL = "select long_url from url_mappings order by id desc limit ?";
+
+    private final ShardRouter shardRouter;
+
+    private final Map<String, DataSource> dataSources;
+
+    private final int queryTimeoutSeconds;
+
+    public JdbcMappingSource(ShardRouter shardRouter, Map<String, DataSource> dataSources, int queryTimeoutSeconds) {
+        this.shardRouter = shardRouter;
+        this.dataSources = dataSources;
+        this.queryTimeoutSeconds = queryTimeoutSeconds;
+    }
+
+    /**
+     * Pools are created without opening a connection, so the server is listening before the
+     * database has been reached.
+     */
+    public static JdbcMappingSource connect(EdgeConfig config) {
+        Map<String, String> urls = new LinkedHashMap<>(config.shards());
+        urls.putAll(config.retiredShards());
+        Map<String, DataSource> dataSources = new LinkedHashMap<>();
+        urls.forEach((shard, url) -> {
+            HikariDataSource dataSource = new HikariDataSource();
+            dataSource.setPoolName("edge-" + shard);
+            dataSource.setJdbcUrl(url);
+            dataSource.setUsername(config.username());
+            dataSource.setPassword(config.password());
+            dataSource.setMaximumPoolSize(config.maximumPoolSize());
+            dataSource.setConnectionTimeout(config.connectionTimeoutMs());
+            dataSource.setInitializationFailTimeout(-1);
+            dataSources.put(shard, dataSource);
+        });
+        ShardRouter shardRouter = new ShardRouter(
+                List.copyOf(config.shards().keySet()), config.previousShards(), config.virtualNodes());
+        return new JdbcMappingSource(shardRouter, dataSources, config.queryTimeoutSeconds());
+    }
+
+    @Override
+    public Optional<Mapping> find(String code, Instant instant) {
+        Optional<Mapping> mapping = findOnShard(shardRouter.shardForCode(code), code, instant);
+        if (mapping.isEmpty()) {
+            Optional<String> previous = shardRouter.previousShardFor(code)
+                    .filter(dataSources::containsKey);
+            if (previous.isPresent()) {
+                return findOnShard(previous.get(), code, instant);
+            }
+        }
+        return mapping;
+    }
+
+    private Optional<Mapping> findOnShard(String shard, String code, Instant instant) {
+        try (Connection connection = dataSource(shard).getConnection();
+             PreparedStatement statement = connection.prepareStatement(FIND_SQL)) {
+            statement.setQueryTimeout(queryTimeoutSeconds);
+            statement.setString(1, code);
+            statement.setTimestamp(2, Timestamp.from(instant));
+            try (ResultSet resultSet = statement.executeQuery()) {
+                if (!resultSet.next()) {
+                    return Optional.empty();
+                }
+                return Optional.of(new Mapping(resultSet.getString(1), resultSet.getTimestamp(2).toInstant()));
+            }
+        } catch (SQLException e) {
+            throw new MappingUnavailableException(shard, e);
+        }
+    }
+
+    /**
+     * One batch per shard, as the app's hit-count buffer writes them.
+     */
+    @Override
+    public void addHits(Map<String, Long> hits) {
+        Map<String, List<Map.Entry<String, Long>>> byShard = new HashMap<>();
+        hits.entrySet().forEach(hit ->
+                byShard.computeIfAbsent(shardRouter.shardForCode(hit.getKey()), shard -> new ArrayList<>()).add(hit));
+
+        for (Map.Entry<String, List<Map.Entry<String, Long>>> shardHits : byShard.entrySet()) {
+            try (Connection connection = dataSource(shardHits.getKey()).getConnection();
+                 PreparedStatement statement = connection.prepareStatement(UPDATE_SQL)) {
+                connection.setAutoCommit(false);
+                for (Map.Entry<String, Long> hit : shardHits.getValue()) {
+                    statement.setLong(1, hit.getValue());
+                    statement.setString(2, hit.getKey());
+                    statement.addBatch();
+                }
+                statement.executeBatch();
+                connection.commit();
+            } catch (SQLException e) {
+                throw new MappingUnavailableException(shardHits.getKey(), e);
+            }
+        }
+    }
+
+    /**
+     * One batch per shard, as the app's sliding expiry writes them.
+     */
+    @Override
+    public int extendExpiry(List<Extension> extensions) {
+        Map<String, List<Object[]>> mappingArgs = new HashMap<>();
+        Map<String, List<Object[]>> digestArgs = new HashMap<>();
+        for (Extension extension : extensions) {
+            Timestamp expiresAt = Timestamp.from(extension.expiresAt());
+            mappingArgs.computeIfAbsent(shardRouter.shardForCode(extension.code()), shard -> new ArrayList<>())
+                    .add(new Object[]{expiresAt, extension.code(), expiresAt});
+            // the digest row expires with the mapping, otherwise the app's long-url dedup stops finding it
+            if (shardRouter.isSharded()) {
+                String digest = UrlHashUtil.digest(extension.longUrl());
+                digestArgs.computeIfAbsent(shardRouter.shardForDigest(digest), shard -> new ArrayList<>())
+                        .add(new Object[]{expiresAt, digest, extension.code(), expiresAt});
+            }
+        }
+
+        int extended = 0;
+        for (Map.Entry<String, List<Object[]>> shardArgs : mappingArgs.entrySet()) {
+            extended += batchUpdate(shardArgs.getKey(), EXTEND_SQL, shardArgs.getValue());
+        }
+        for (Map.Entry<String, List<Object[]>> shardArgs : digestArgs.entrySet()) {
+            batchUpdate(shardArgs.getKey(), EXTEND_DIGEST_SQL, shardArgs.getValue());
+        }
+        return extended;
+    }
+
+    private int batchUpdate(String shard, String sql, List<Object[]> rows) {
+        try (Connection connection = dataSource(shard).getConnection();
+             PreparedStatement statement = connection.prepareStatement(sql)) {
+            connection.setAutoCommit(false);
+            for (Object[] row : rows) {
+                for (int i = 0; i < row.length; i++) {
+                    statement.setObject(i + 1, row[i]);
+                }
+                statement.addBatch();
+            }
+            int[] counts = statement.executeBatch();
+            connection.commit();
+            int updated = 0;
+            for (int count : counts) {
+                // drivers may report SUCCESS_NO_INFO (-2) for batched rows
+                updated += Math.max(count, 0);
+            }
+            return updated;
+        } catch (SQLException e) {
+            throw new MappingUnavailableException(shard, e);
+        }
+    }
+
+    @Override
+    public List<String> sampleLongUrls(int sampleSize) {
+        List<String> shards = shardRouter.shardNames();
+        int perShard = Math.max(1, sampleSize / shards.size());
+        List<String> sample = new ArrayList<>(sampleSize);
+        for (String shard : shards) {
+            try (Connection connection = dataSource(shard).getConnection();
+                 PreparedStatement statement = connection.prepareStatement(SAMPLE_SQL)) {
+                statement.setInt(1, perShard);
+                try (ResultSet resultSet = statement.executeQuery()) {
+                    while (resultSet.next()) {
+                        sample.add(resultSet.getString(1));
+                    }
+                }
+            } catch (SQLException e) {
+                throw new MappingUnavailableException(shard, e);
+            }
+        }
+        return sample;
+    }
+
+    private DataSource dataSource(String shard) {
+        DataSource dataSource = dataSources.get(shard);
+        if (dataSource == null) {
+            throw new IllegalStateException("No data source configured for shard " + shard);
+        }
+        return dataSource;
+    }
+
+    @Override
+    public void close() {
+        for (DataSource dataSource : dataSources.values()) {
+            if (dataSource instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception ignored) {
+                    // shutting down anyway
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,34 @@
+package com.maliroso.url_shortener.edge;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Read side of {@code url_mappings} as the edge needs it: one lookup per code, plus the hit-count
+ * increments and sliding-expiry extensions it owes the table.
+ */
+public interface MappingSource {
+
+    /**
+     * @throws MappingUnavailableException when the owning database cannot be reached
+     */
+    Optional<Mapping> find(String code, Instant instant);
+
+    void addHits(Map<String, Long> hits);
+
+    /**
+     * Moves each code's expiry forward, never back, and its digest row's with it when the database
+     * is sharded. Returns the number of mappings extended.
+     */
+    int extendExpiry(List<Extension> extensions);
+
+    List<String> sampleLongUrls(int sampleSize);
+
+    record Mapping(String longUrl, Instant expiresAt) {
+    }
+
+    record Extension(String code, String longUrl, Instant expiresAt) {
+    }
+}
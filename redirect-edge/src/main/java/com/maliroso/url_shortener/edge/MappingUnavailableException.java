@@ -0,0 +1,11 @@
+package com.maliroso.url_shortener.edge;
+
+/**
+ * The database owning a code could not answer, so the edge cannot tell whether the code exists.
+ */
+public class MappingUnavailableException extends RuntimeException {
+
+    public MappingUnavailableException(String shard, Throwable cause) {
+        super("Shard " + shard + " is unavailable", cause);
+    }
+}
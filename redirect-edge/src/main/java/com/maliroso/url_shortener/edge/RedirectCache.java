@@ -0,0 +1,73 @@
+package com.maliroso.url_shortener.edge;
+
+import com.maliroso.url_shortener.utils.CompactUrlCodec;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Bounded LRU of resolved codes, with the long url held in the app's compact encoding.
+ */
+public class RedirectCache {
+
+    private final Map<String, Entry> lru;
+
+    private volatile CompactUrlCodec codec;
+
+    public RedirectCache(int capacity, CompactUrlCodec codec) {
+        this.codec = codec;
+        this.lru = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+    }
+
+    public Optional<MappingSource.Mapping> get(String code, Instant instant) {
+        Entry entry;
+        synchronized (lru) {
+            entry = lru.get(code);
+        }
+        if (entry == null) {
+            return Optional.empty();
+        }
+        if (entry.expiresAt().isBefore(instant)) {
+            synchronized (lru) {
+                lru.remove(code);
+            }
+            return Optional.empty();
+        }
+        return Optional.of(new MappingSource.Mapping(entry.codec().decode(entry.longUrl()), entry.expiresAt()));
+    }
+
+    public void put(String code, String longUrl, Instant expiresAt) {
+        CompactUrlCodec current = codec;
+        Entry entry = new Entry(current.encode(longUrl), current, expiresAt);
+        synchronized (lru) {
+            lru.put(code, entry);
+        }
+    }
+
+    /**
+     * Entries already cached keep decoding with the codec they were encoded with.
+     */
+    public void useCodec(CompactUrlCodec codec) {
+        this.codec = codec;
+    }
+
+    public CompactUrlCodec codec() {
+        return codec;
+    }
+
+    public int size() {
+        synchronized (lru) {
+            return lru.size();
+        }
+    }
+
+    private record Entry(byte[] longUrl, CompactUrlCodec codec, Instant expiresAt) {
+    }
+}
@@ -0,0 +1,141 @@
+package com.maliroso.url_shortener.edge;
+
+import com.maliroso.url_shortener.utils.CompactUrlCodec;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serves {@code /r/{code}} without Spring: the JDK HTTP server accepts and parses requests on its
+ * selector thread and runs each exchange on a virtual thread, so a request waiting on the
+ * database parks instead of holding a platform thread. Nothing is loaded at startup beyond the
+ * classes needed to listen; the pools connect on first use.
+ */
+public class RedirectEdgeServer implements AutoCloseable {
+
+    private static final Logger log = LoggerFactory.getLogger(RedirectEdgeServer.class);
+
+    private final HttpServer server;
+
+    private final ExecutorService requestExecutor;
+
+    private final ScheduledExecutorService flushExecutor;
+
+    private final HitCounter hitCounter;
+
+    private final ExpiryExtender expiryExtender;
+
+    private final RedirectCache cache;
+
+    private RedirectEdgeServer(HttpServer server, ExecutorService requestExecutor, ScheduledExecutorService flushExecutor,
+                               HitCounter hitCounter, ExpiryExtender expiryExtender, RedirectCache cache) {
+        this.server = server;
+        this.requestExecutor = requestExecutor;
+        this.flushExecutor = flushExecutor;
+        this.hitCounter = hitCounter;
+        this.expiryExtender = expiryExtender;
+        this.cache = cache;
+    }
+
+    public static RedirectEdgeServer start(EdgeConfig config, MappingSource mappingSource) throws IOException {
+        RedirectCache cache = new RedirectCache(config.cacheCapacity(), new CompactUrlCodec(config.prefixes()));
+        HitCounter hitCounter = new HitCounter(mappingSource);
+        ExpiryExtender expiryExtender = new ExpiryExtender(mappingSource, config.slidingExpiryEnabled(),
+                Duration.ofMillis(config.slidingExpiryExtensionMs()),
+                Duration.ofMillis(config.slidingExpiryMinWriteIntervalMs()),
+                config.slidingExpiryTrackedCodes());
+
+        HttpServer server = HttpServer.create(new InetSocketAddress(config.port()), 1024);
+        server.createContext(RedirectHandler.PATH, new RedirectHandler(cache, mappingSource, hitCounter, expiryExtender,
+                Duration.ofMillis(config.retryAfterMs())));
+        server.createContext("/health", exchange -> {
+            try (exchange) {
+                byte[] body = "UP".getBytes(StandardCharsets.US_ASCII);
+                exchange.sendResponseHeaders(200, body.length);
+                exchange.getResponseBody().write(body);
+            }
+        });
+        ExecutorService requestExecutor = Executors.newVirtualThreadPerTaskExecutor();
+        server.setExecutor(requestExecutor);
+
+        ScheduledExecutorService flushExecutor = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "edge-flush");
+            thread.setDaemon(true);
+            return thread;
+        });
+        flushExecutor.scheduleWithFixedDelay(hitCounter::flush,
+                config.hitFlushIntervalMs(), config.hitFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        if (config.slidingExpiryEnabled()) {
+            flushExecutor.scheduleWithFixedDelay(expiryExtender::flush,
+                    config.slidingExpiryFlushIntervalMs(), config.slidingExpiryFlushIntervalMs(), TimeUnit.MILLISECONDS);
+        }
+
+        server.start();
+        return new RedirectEdgeServer(server, requestExecutor, flushExecutor, hitCounter, expiryExtender, cache);
+    }
+
+    public int port() {
+        return server.getAddress().getPort();
+    }
+
+    /**
+     * Extends the configured prefixes with ones learned from recent rows, as the app does at startup.
+     */
+    public void learnPrefixes(MappingSource mappingSource, EdgeConfig config) {
+        int room = Math.max(0, config.maxPrefixes() - config.prefixes().size());
+        if (room == 0) {
+            return;
+        }
+        List<String> learned = CompactUrlCodec.learn(mappingSource.sampleLongUrls(config.learnSampleSize()),
+                room, config.minCount());
+        List<String> prefixes = new ArrayList<>(config.prefixes());
+        prefixes.addAll(learned);
+        cache.useCodec(new CompactUrlCodec(prefixes));
+    }
+
+    @Override
+    public void close() {
+        server.stop(1);
+        flushExecutor.shutdown();
+        requestExecutor.close();
+        // whatever was counted or extended after the last scheduled flush
+        hitCounter.flush();
+        expiryExtender.flush();
+    }
+
+    public static void main(String[] args) throws IOException {
+        long started = System.nanoTime();
+        EdgeConfig config = EdgeConfig.fromEnvironment(System.getenv());
+        JdbcMappingSource mappingSource = JdbcMappingSource.connect(config);
+        RedirectEdgeServer edge = start(config, mappingSource);
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            edge.close();
+            mappingSource.close();
+        }, "edge-shutdown"));
+        log.info("Redirect edge listening on port {} after {} ms, {} shard(s)",
+                edge.port(), TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - started), config.shards().size());
+
+        if (config.learnSampleSize() > 0) {
+            Thread.ofVirtual().name("edge-learn-prefixes").start(() -> {
+                try {
+                    edge.learnPrefixes(mappingSource, config);
+                    log.info("Url dictionary has {} prefixes", edge.cache.codec().prefixes().size());
+                } catch (RuntimeException e) {
+                    // the configured dictionary keeps working, just with less compression
+                    log.warn("Could not learn url prefixes, keeping the configured ones", e);
+                }
+            });
+        }
+    }
+}
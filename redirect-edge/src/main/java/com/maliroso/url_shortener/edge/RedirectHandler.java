@@ -0,0 +1,94 @@
+package com.maliroso.url_shortener.edge;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * {@code GET /r/{code}}: answers from the cache, else from the code's shard, with the same
+ * statuses as the app's redirect endpoint (302, 404, and 503 when the database cannot tell).
+ */
+public class RedirectHandler implements HttpHandler {
+
+    static final String PATH = "/r/";
+
+
+    private static final Logger log = LoggerFactory.getLogger(RedirectHandler.class);
+
+    private final RedirectCache cache;
+
+    private final MappingSource mappingSource;
+
+    private final HitCounter hitCounter;
+
+    private final ExpiryExtender expiryExtender;
+
+    private final String retryAfterSeconds;
+
+    public RedirectHandler(RedirectCache cache, MappingSource mappingSource, HitCounter hitCounter,
+                           ExpiryExtender expiryExtender, Duration retryAfter) {
+        this.cache = cache;
+        this.mappingSource = mappingSource;
+        this.hitCounter = hitCounter;
+        this.expiryExtender = expiryExtender;
+        this.retryAfterSeconds = String.valueOf(Math.max(1, retryAfter.plusMillis(999).toSeconds()));
+    }
+
+    @Override
+    public void handle(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            String method = exchange.getRequestMethod();
+            if (!method.equals("GET") && !method.equals("HEAD")) {
+                exchange.getResponseHeaders().set("Allow", "GET, HEAD");
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+
+            String code = exchange.getRequestURI().getPath().substring(PATH.length());
+            if (code.isEmpty() || code.indexOf('/') >= 0) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            Instant now = Instant.now();
+            Optional<MappingSource.Mapping> mapping;
+            try {
+                mapping = resolve(code, now);
+            } catch (MappingUnavailableException e) {
+                log.debug("Lookup of {} failed", code, e);
+                exchange.getResponseHeaders().set("Retry-After", retryAfterSeconds);
+                exchange.sendResponseHeaders(503, -1);
+                return;
+            }
+            if (mapping.isEmpty()) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            hitCounter.increment(code);
+            expiryExtender.touch(code, mapping.get(), now);
+            String location = mapping.get().longUrl();
+            if (!location.startsWith("http")) {
+                location = "http://" + location;
+            }
+            exchange.getResponseHeaders().set("Location", location);
+            exchange.sendResponseHeaders(302, -1);
+        }
+    }
+
+    Optional<MappingSource.Mapping> resolve(String code, Instant instant) {
+        Optional<MappingSource.Mapping> cached = cache.get(code, instant);
+        if (cached.isPresent()) {
+            return cached;
+        }
+        Optional<MappingSource.Mapping> mapping = mappingSource.find(code, instant);
+        mapping.ifPresent(found -> cache.put(code, found.longUrl(), found.expiresAt()));
+        return mapping;
+    }
+}
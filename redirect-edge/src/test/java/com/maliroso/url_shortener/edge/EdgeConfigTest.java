@@ -0,0 +1,49 @@
+package com.maliroso.url_shortener.edge;
+
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class EdgeConfigTest {
+
+    @Test
+    void usesTheAppDatasource_whenNoShardsAreListed() {
+        EdgeConfig config = EdgeConfig.fromEnvironment(Map.of("SPRING_DATASOURCE_URL", "jdbc:postgresql://db:5432/mydb"));
+
+        assertEquals(Map.of(ShardRouter.DEFAULT_SHARD, "jdbc:postgresql://db:5432/mydb"), config.shards());
+        assertEquals(8081, config.port());
+        assertEquals(List.of("https://", "http://", "https://www."), config.prefixes());
+    }
+
+    @Test
+    void parsesShardsInRingOrder() {
+        EdgeConfig config = EdgeConfig.fromEnvironment(Map.of(
+                "SHORTENER_EDGE_SHARDS", "shard-0=jdbc:postgresql://a/mydb, shard-1=jdbc:postgresql://b/mydb",
+                "SHORTENER_EDGE_PREVIOUS_SHARDS", "shard-0"));
+
+        assertEquals(List.of("shard-0", "shard-1"), List.copyOf(config.shards().keySet()));
+        assertEquals("jdbc:postgresql://b/mydb", config.shards().get("shard-1"));
+        assertEquals(List.of("shard-0"), config.previousShards());
+    }
+
+    @Test
+    void keepsRetiredShardsOffTheRing() {
+        EdgeConfig config = EdgeConfig.fromEnvironment(Map.of(
+                "SHORTENER_EDGE_SHARDS", "shard-0=jdbc:postgresql://a/mydb",
+                "SHORTENER_EDGE_RETIRED_SHARDS", "shard-1=jdbc:postgresql://b/mydb",
+                "SHORTENER_EDGE_PREVIOUS_SHARDS", "shard-0,shard-1"));
+
+        assertEquals(List.of("shard-0"), List.copyOf(config.shards().keySet()));
+        assertEquals(Map.of("shard-1", "jdbc:postgresql://b/mydb"), config.retiredShards());
+    }
+
+    @Test
+    void rejectsShardsWithoutName() {
+        assertThrows(IllegalArgumentException.class,
+                () -> EdgeConfig.fromEnvironment(Map.of("SHORTENER_EDGE_SHARDS", "jdbc:postgresql://a/mydb")));
+    }
+}
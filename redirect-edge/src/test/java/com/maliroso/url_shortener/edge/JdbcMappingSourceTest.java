@@ -0,0 +1,156 @@
+package com.maliroso.url_shortener.edge;
+
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import org.h2.jdbcx.JdbcDataSource;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import javax.sql.DataSource;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class JdbcMappingSourceTest {
+
+    private static final List<String> SHARDS = List.of("s0", "s1", "s2");
+
+    private final Map<String, DataSource> dataSources = new LinkedHashMap<>();
+
+    private final Instant now = Instant.now();
+
+    @BeforeEach
+    void setUp() throws Exception {
+        String schema;
+        try (InputStream in = getClass().getResourceAsStream("/schema-shard.sql")) {
+            schema = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+        String run = UUID.randomUUID().toString();
+        for (String shard : SHARDS) {
+            JdbcDataSource dataSource = new JdbcDataSource();
+            dataSource.setURL("jdbc:h2:mem:" + shard + "-" + run + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+            try (Connection connection = dataSource.getConnection(); Statement statement = connection.createStatement()) {
+                for (String sql : schema.split(";")) {
+                    if (!sql.isBlank()) {
+                        statement.execute(sql);
+                    }
+                }
+            }
+            dataSources.put(shard, dataSource);
+        }
+    }
+
+    @Test
+    void findsCodeOnItsShard_andSkipsExpiredRows() throws Exception {
+        ShardRouter router = new ShardRouter(SHARDS, List.of(), 32);
+        JdbcMappingSource source = new JdbcMappingSource(router, dataSources, 1);
+        insert(router.shardForCode("live"), "live", "https://example.com/live", now.plusSeconds(60));
+        insert(router.shardForCode("gone"), "gone", "https://example.com/gone", now.minusSeconds(60));
+
+        Optional<MappingSource.Mapping> live = source.find("live", now);
+
+        assertEquals("https://example.com/live", live.orElseThrow().longUrl());
+        assertTrue(source.find("gone", now).isEmpty());
+        assertTrue(source.find("missing", now).isEmpty());
+    }
+
+    @Test
+    void fallsBackToPreviousShard_whileRebalancing() throws Exception {
+        // the ring grew from s0 to three shards and nothing has been moved yet
+        ShardRouter router = new ShardRouter(SHARDS, List.of("s0"), 32);
+        JdbcMappingSource source = new JdbcMappingSource(router, dataSources, 1);
+        String code = codeNotOn("s0", router);
+        insert("s0", code, "https://example.com/moved", now.plusSeconds(60));
+
+        assertEquals("https://example.com/moved", source.find(code, now).orElseThrow().longUrl());
+    }
+
+    @Test
+    void addHits_updatesEachShard() throws Exception {
+        ShardRouter router = new ShardRouter(SHARDS, List.of(), 32);
+        JdbcMappingSource source = new JdbcMappingSource(router, dataSources, 1);
+        for (int i = 0; i < 10; i++) {
+            insert(router.shardForCode("code" + i), "code" + i, "https://example.com/" + i, now.plusSeconds(60));
+        }
+
+        Map<String, Long> hits = new LinkedHashMap<>();
+        for (int i = 0; i < 10; i++) {
+            hits.put("code" + i, (long) i + 1);
+        }
+        source.addHits(hits);
+
+        for (int i = 0; i < 10; i++) {
+            assertEquals(i + 1, hitCount(router.shardForCode("code" + i), "code" + i));
+        }
+    }
+
+    @Test
+    void extendExpiry_movesExpiryForwardOnly() throws Exception {
+        ShardRouter router = new ShardRouter(SHARDS, List.of(), 32);
+        JdbcMappingSource source = new JdbcMappingSource(router, dataSources, 1);
+        Instant later = now.plusSeconds(3600);
+        insert(router.shardForCode("soon"), "soon", "https://example.com/soon", now.plusSeconds(60));
+        insert(router.shardForCode("late"), "late", "https://example.com/late", later.plusSeconds(60));
+
+        int extended = source.extendExpiry(List.of(
+                new MappingSource.Extension("soon", "https://example.com/soon", later),
+                new MappingSource.Extension("late", "https://example.com/late", later)));
+
+        assertEquals(1, extended);
+        assertEquals(later.toEpochMilli(), source.find("soon", now).orElseThrow().expiresAt().toEpochMilli());
+        assertEquals(later.plusSeconds(60).toEpochMilli(), source.find("late", now).orElseThrow().expiresAt().toEpochMilli());
+    }
+
+    @Test
+    void findThrowsUnavailable_whenShardFails() {
+        JdbcDataSource broken = new JdbcDataSource();
+        broken.setURL("jdbc:h2:mem:missing-" + UUID.randomUUID() + ";IFEXISTS=TRUE");
+        JdbcMappingSource source = new JdbcMappingSource(ShardRouter.single(), Map.of(ShardRouter.DEFAULT_SHARD, broken), 1);
+
+        assertThrows(MappingUnavailableException.class, () -> source.find("abc", now));
+    }
+
+    private String codeNotOn(String shard, ShardRouter router) {
+        for (int i = 0; ; i++) {
+            if (!router.shardForCode("code" + i).equals(shard)) {
+                return "code" + i;
+            }
+        }
+    }
+
+    private void insert(String shard, String code, String longUrl, Instant expiresAt) throws Exception {
+        try (Connection connection = dataSources.get(shard).getConnection();
+             PreparedStatement statement = connection.prepareStatement("""
+                     insert into url_mappings (id, code, long_url, hit_count, created_at, expires_at)
+                     values (nextval('url_mappings_seq'), ?, ?, 0, ?, ?)
+                     """)) {
+            statement.setString(1, code);
+            statement.setString(2, longUrl);
+            statement.setTimestamp(3, Timestamp.from(now));
+            statement.setTimestamp(4, Timestamp.from(expiresAt));
+            statement.executeUpdate();
+        }
+    }
+
+    private long hitCount(String shard, String code) throws Exception {
+        try (Connection connection = dataSources.get(shard).getConnection();
+             PreparedStatement statement = connection.prepareStatement("select hit_count from url_mappings where code = ?")) {
+            statement.setString(1, code);
+            try (ResultSet resultSet = statement.executeQuery()) {
+                resultSet.next();
+                return resultSet.getLong(1);
+            }
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.maliroso.url_shortener.edge;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RedirectEdgeServerTest {
+
+    private final InMemoryMappingSource mappingSource = new InMemoryMappingSource();
+
+    private final HttpClient client = HttpClient.newBuilder().followRedirects(HttpClient.Redirect.NEVER).build();
+
+    private RedirectEdgeServer edge;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Map<String, String> env = Map.of("SHORTENER_EDGE_PORT", "0", "SHORTENER_EDGE_HIT_FLUSH_INTERVAL_MS", "60000");
+        edge = RedirectEdgeServer.start(EdgeConfig.fromEnvironment(env), mappingSource);
+    }
+
+    @AfterEach
+    void tearDown() {
+        edge.close();
+    }
+
+    @Test
+    void redirectsToLongUrl_andServesRepeatsFromCache() throws Exception {
+        mappingSource.mappings.put("abc", new MappingSource.Mapping("https://example.com/a", Instant.now().plusSeconds(60)));
+
+        HttpResponse<Void> first = get("/r/abc");
+        HttpResponse<Void> second = get("/r/abc");
+
+        assertEquals(302, first.statusCode());
+        assertEquals("https://example.com/a", first.headers().firstValue("Location").orElseThrow());
+        assertEquals(302, second.statusCode());
+        assertEquals(1, mappingSource.lookups.get());
+    }
+
+    @Test
+    void prefixesSchemeLessUrls_likeTheApp() throws Exception {
+        mappingSource.mappings.put("abc", new MappingSource.Mapping("example.com", Instant.now().plusSeconds(60)));
+
+        assertEquals("http://example.com", get("/r/abc").headers().firstValue("Location").orElseThrow());
+    }
+
+    @Test
+    void returnsNotFound_forUnknownOrExpiredCodes() throws Exception {
+        mappingSource.mappings.put("old", new MappingSource.Mapping("https://example.com", Instant.now().minusSeconds(1)));
+
+        assertEquals(404, get("/r/missing").statusCode());
+        assertEquals(404, get("/r/old").statusCode());
+        assertEquals(404, get("/r/").statusCode());
+    }
+
+    @Test
+    void returnsServiceUnavailable_whenDatabaseFails() throws Exception {
+        mappingSource.failing = true;
+
+        HttpResponse<Void> response = get("/r/abc");
+
+        assertEquals(503, response.statusCode());
+        assertEquals("5", response.headers().firstValue("Retry-After").orElseThrow());
+    }
+
+    @Test
+    void derivesRetryAfter_fromTheBreakerOpenDuration() throws Exception {
+        edge.close();
+        edge = RedirectEdgeServer.start(EdgeConfig.fromEnvironment(Map.of(
+                "SHORTENER_EDGE_PORT", "0",
+                "SHORTENER_DB_BREAKER_OPEN_DURATION_MS", "2500")), mappingSource);
+        mappingSource.failing = true;
+
+        assertEquals("3", get("/r/abc").headers().firstValue("Retry-After").orElseThrow());
+    }
+
+    @Test
+    void flushesBufferedHits_onClose() throws Exception {
+        mappingSource.mappings.put("abc", new MappingSource.Mapping("https://example.com", Instant.now().plusSeconds(60)));
+        get("/r/abc");
+        get("/r/abc");
+
+        edge.close();
+
+        assertEquals(List.of(Map.of("abc", 2L)), mappingSource.flushedHits);
+    }
+
+    @Test
+    void extendsExpiringLinks_whenSlidingExpiryIsOn() throws Exception {
+        edge.close();
+        edge = RedirectEdgeServer.start(EdgeConfig.fromEnvironment(Map.of(
+                "SHORTENER_EDGE_PORT", "0",
+                "SHORTENER_EDGE_HIT_FLUSH_INTERVAL_MS", "60000",
+                "SHORTENER_SLIDING_EXPIRY_ENABLED", "true",
+                "SHORTENER_SLIDING_EXPIRY_FLUSH_INTERVAL_MS", "60000")), mappingSource);
+        mappingSource.mappings.put("abc", new MappingSource.Mapping("https://example.com", Instant.now().plusSeconds(60)));
+        mappingSource.mappings.put("new", new MappingSource.Mapping("https://example.com/new", Instant.now().plus(Duration.ofDays(7))));
+
+        Instant before = Instant.now();
+        get("/r/abc");
+        get("/r/abc");
+        get("/r/new");
+        edge.close();
+
+        // one write for the link about to lapse, none for the one just created
+        assertEquals(1, mappingSource.extensions.size());
+        MappingSource.Extension extension = mappingSource.extensions.get(0);
+        assertEquals("abc", extension.code());
+        assertFalse(extension.expiresAt().isBefore(before.plus(Duration.ofDays(7))));
+    }
+
+    @Test
+    void leavesExpiryAlone_byDefault() throws Exception {
+        mappingSource.mappings.put("abc", new MappingSource.Mapping("https://example.com", Instant.now().plusSeconds(60)));
+        get("/r/abc");
+
+        edge.close();
+
+        assertTrue(mappingSource.extensions.isEmpty());
+    }
+
+    @Test
+    void rejectsOtherMethods() throws Exception {
+        HttpRequest request = HttpRequest.newBuilder(uri("/r/abc")).POST(HttpRequest.BodyPublishers.noBody()).build();
+
+        assertEquals(405, client.send(request, HttpResponse.BodyHandlers.discarding()).statusCode());
+    }
+
+    private HttpResponse<Void> get(String path) throws Exception {
+        return client.send(HttpRequest.newBuilder(uri(path)).GET().build(), HttpResponse.BodyHandlers.discarding());
+    }
+
+    private URI uri(String path) {
+        return URI.create("http://localhost:" + edge.port() + path);
+    }
+
+    private static class InMemoryMappingSource implements MappingSource {
+        private final Map<String, Mapping> mappings = new ConcurrentHashMap<>();
+        private final List<Map<String, Long>> flushedHits = new ArrayList<>();
+        private final List<Extension> extensions = new ArrayList<>();
+        private final AtomicInteger lookups = new AtomicInteger();
+        private volatile boolean failing;
+
+        @Override
+        public Optional<Mapping> find(String code, Instant instant) {
+            lookups.incrementAndGet();
+            if (failing) {
+                throw new MappingUnavailableException("default", new RuntimeException("down"));
+            }
+            return Optional.ofNullable(mappings.get(code)).filter(mapping -> !mapping.expiresAt().isBefore(instant));
+        }
+
+        @Override
+        public synchronized void addHits(Map<String, Long> hits) {
+            flushedHits.add(Map.copyOf(hits));
+        }
+
+        @Override
+        public synchronized int extendExpiry(List<Extension> extensions) {
+            this.extensions.addAll(extensions);
+            return extensions.size();
+        }
+
+        @Override
+        public List<String> sampleLongUrls(int sampleSize) {
+            return mappings.values().stream().map(Mapping::longUrl).limit(sampleSize).toList();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+#!/usr/bin/env bash
+# Measures time-to-first-redirect and resident set size for each startup variant.
+#
+# Usage: scripts/startup-benchmark.sh [jar|cds|native]...
+# Expects Postgres to be reachable with the usual SPRING_DATASOURCE_* settings and
+# the variants to have been built beforehand. A variant that has not answered within
+# STARTUP_TIMEOUT_S seconds (default 120) is killed and the script exits non-zero.
+# The table is printed and also written to target/startup-benchmark.md.
+#   jar    ./mvnw package -DskipTests
+#   cds    ./mvnw -Pcds package -DskipTests
+#   native ./mvnw -Pnative native:compile -DskipTests
+set -euo pipefail
+
+PORT=${PORT:-8080}
+STARTUP_TIMEOUT_S=${STARTUP_TIMEOUT_S:-120}
+BASE="http://localhost:${PORT}"
+RESULTS=target/startup-benchmark.md
+VARIANTS=("$@")
+[ ${#VARIANTS[@]} -eq 0 ] && VARIANTS=(jar cds native)
+
+now_ms() { date +%s%3N; }
+
+# exec, so that the background pid is the app itself and killing it stops the app
+start_variant() {
+  case "$1" in
+    jar)    exec java -jar target/url_shortener-0.0.1-SNAPSHOT.jar --server.port="${PORT}" ;;
+    cds)    exec java -XX:SharedArchiveFile=target/cds/application.jsa -Dspring.aot.enabled=true \
+              -jar target/cds/url_shortener-0.0.1-SNAPSHOT.jar --server.port="${PORT}" ;;
+    native) exec ./target/url-shortener --server.port="${PORT}" ;;
+    *)      echo "unknown variant $1" >&2; exit 1 ;;
+  esac
+}
+
+{
+  printf '| variant | time to first redirect (ms) | RSS after first redirect (MB) |\n'
+  printf '|---------|-----------------------------|-------------------------------|\n'
+} | tee "${RESULTS}"
+
+for variant in "${VARIANTS[@]}"; do
+  started=$(now_ms)
+  start_variant "${variant}" > "target/startup-${variant}.log" 2>&1 &
+  pid=$!
+
+  # create a mapping as soon as the API answers, then follow it once
+  code=""
+  until [ -n "${code}" ]; do
+    # a broken AOT or CDS build usually dies or hangs at startup; neither may stall the run
+    if ! kill -0 "${pid}" 2>/dev/null; then
+      echo "error: ${variant} exited before answering, see target/startup-${variant}.log" >&2
+      exit 1
+    fi
+    if [ $(( $(now_ms) - started )) -gt $(( STARTUP_TIMEOUT_S * 1000 )) ]; then
+      echo "error: ${variant} did not answer within ${STARTUP_TIMEOUT_S}s, see target/startup-${variant}.log" >&2
+      kill "${pid}" 2>/dev/null || true
+      wait "${pid}" 2>/dev/null || true
+      exit 1
+    fi
+    code=$(curl -s --max-time 5 -X POST "${BASE}/api/urls" -H 'Content-Type: application/json' \
+             -d '{"longUrl":"https://example.com/startup-benchmark"}' \
+           | sed -n 's/.*"code":"\([^"]*\)".*/\1/p' || true)
+    [ -z "${code}" ] && sleep 0.01
+  done
+  status=$(curl -s --max-time 5 -o /dev/null -w '%{http_code}' "${BASE}/r/${code}")
+  elapsed=$(( $(now_ms) - started ))
+  rss_kb=$(ps -o rss= -p "${pid}" | tr -d ' ')
+
+  [ "${status}" = "302" ] || echo "warning: ${variant} answered ${status} for /r/${code}" >&2
+  printf '| %s | %d | %d |\n' "${variant}" "${elapsed}" $(( rss_kb / 1024 )) | tee -a "${RESULTS}"
+
+  kill "${pid}"
+  wait "${pid}" 2>/dev/null || true
+done
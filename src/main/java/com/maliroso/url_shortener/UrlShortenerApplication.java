@@ -1,9 +1,14 @@
 package com.maliroso.url_shortener;
 
+import com.maliroso.url_shortener.config.NativeRuntimeHints;
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.context.annotation.ImportRuntimeHints;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@ImportRuntimeHints(NativeRuntimeHints.class)
+@EnableScheduling
 public class UrlShortenerApplication {
 
 	public static void main(String[] args) {
@@ -0,0 +1,128 @@
+package com.maliroso.url_shortener.accesslog;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Preallocated multi-producer / single-consumer ring of fixed-layout access log records.
+ * Request threads format straight into their claimed slot, so appending allocates nothing;
+ * when the writer falls behind, records are dropped and counted instead of blocking requests.
+ *
+ * <p>Record layout (ASCII, {@value #RECORD_SIZE} bytes, space padded):
+ * <pre>
+ * epoch-millis(13) method(7) status(3) duration-micros(10) client-ip(45) path(rest) \n
+ * </pre>
+ */
+public class AccessLogRingBuffer {
+
+    public static final int RECORD_SIZE = 256;
+
+    private static final int MILLIS_WIDTH = 13;
+    private static final int METHOD_WIDTH = 7;
+    private static final int STATUS_WIDTH = 3;
+    private static final int DURATION_WIDTH = 10;
+    private static final int IP_WIDTH = 45;
+    private static final int PATH_WIDTH = RECORD_SIZE - 1
+            - (MILLIS_WIDTH + METHOD_WIDTH + STATUS_WIDTH + DURATION_WIDTH + IP_WIDTH + 5);
+
+    private final int capacity;
+    private final byte[] slots;
+    // slot i holds sequence s once published[i] == s + 1
+    private final AtomicLongArray published;
+    private final AtomicLong claimed = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile long consumed;
+
+    public AccessLogRingBuffer(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.slots = new byte[capacity * RECORD_SIZE];
+        this.published = new AtomicLongArray(capacity);
+    }
+
+    /**
+     * Formats one record into the next free slot. Returns false if the ring is full.
+     */
+    public boolean tryAppend(long epochMillis, String method, int status, long durationMicros, String clientIp, String path) {
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (sequence - consumed >= capacity) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        int index = (int) (sequence % capacity);
+        int offset = index * RECORD_SIZE;
+        offset = writeNumber(epochMillis, offset, MILLIS_WIDTH);
+        offset = writeText(method, offset, METHOD_WIDTH);
+        offset = writeNumber(status, offset, STATUS_WIDTH);
+        offset = writeNumber(durationMicros, offset, DURATION_WIDTH);
+        offset = writeText(clientIp, offset, IP_WIDTH);
+        offset = writeText(path, offset, PATH_WIDTH);
+        slots[offset - 1] = '\n';
+
+        published.set(index, sequence + 1);
+        return true;
+    }
+
+    /**
+     * Copies published records into {@code target} in order. Only called from the writer thread.
+     */
+    public int drainTo(ByteBuffer target) {
+        long next = consumed;
+        int drained = 0;
+        while (target.remaining() >= RECORD_SIZE) {
+            int index = (int) (next % capacity);
+            if (published.get(index) != next + 1) {
+                break;
+            }
+            target.put(slots, index * RECORD_SIZE, RECORD_SIZE);
+            next++;
+            drained++;
+        }
+        consumed = next;
+        return drained;
+    }
+
+    public long droppedCount() {
+        return dropped.get();
+    }
+
+    public long appendedCount() {
+        return claimed.get();
+    }
+
+    // right-aligned digits followed by the field separator
+    private int writeNumber(long value, int offset, int width) {
+        long remaining = Math.max(value, 0);
+        for (int i = width - 1; i >= 0; i--) {
+            if (remaining == 0 && i < width - 1) {
+                slots[offset + i] = ' ';
+            } else {
+                slots[offset + i] = (byte) ('0' + remaining % 10);
+                remaining /= 10;
+            }
+        }
+        slots[offset + width] = ' ';
+        return offset + width + 1;
+    }
+
+    // left-aligned text, truncated or space padded, non-ASCII replaced by '?'
+    private int writeText(String value, int offset, int width) {
+        int length = value == null ? 0 : Math.min(value.length(), width);
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            slots[offset + i] = c >= 0x20 && c < 0x7f ? (byte) c : (byte) '?';
+        }
+        for (int i = length; i < width; i++) {
+            slots[offset + i] = ' ';
+        }
+        slots[offset + width] = ' ';
+        return offset + width + 1;
+    }
+}
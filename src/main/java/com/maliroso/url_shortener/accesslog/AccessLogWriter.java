@@ -0,0 +1,161 @@
+package com.maliroso.url_shortener.accesslog;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Owns the access log ring and the background thread that flushes it to a size-rotated file
+ * ({@code access.log}, {@code access.log.1}, ...). Request threads never touch the file.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "shortener.access-log.enabled", havingValue = "true", matchIfMissing = true)
+public class AccessLogWriter {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(2);
+
+    private final AccessLogRingBuffer ringBuffer;
+
+    private final Path file;
+
+    private final long maxFileBytes;
+
+    private final int maxFiles;
+
+    private final ByteBuffer writeBuffer = ByteBuffer.allocateDirect(AccessLogRingBuffer.RECORD_SIZE * 256);
+
+    private final Timer flushTimer;
+
+    private FileChannel channel;
+
+    private long fileBytes;
+
+    private volatile boolean running;
+
+    private Thread thread;
+
+    public AccessLogWriter(
+            @Value("${shortener.access-log.file:logs/access.log}") String file,
+            @Value("${shortener.access-log.max-file-size-mb:50}") long maxFileSizeMb,
+            @Value("${shortener.access-log.max-files:5}") int maxFiles,
+            @Value("${shortener.access-log.buffer-records:65536}") int bufferRecords,
+            MeterRegistry meterRegistry
+    ){
+        this.ringBuffer = new AccessLogRingBuffer(bufferRecords);
+        this.file = Path.of(file);
+        this.maxFileBytes = maxFileSizeMb * 1024 * 1024;
+        this.maxFiles = maxFiles;
+
+        FunctionCounter.builder("shortener_accesslog_records_total", ringBuffer, AccessLogRingBuffer::appendedCount)
+                .description("Access log records accepted into the buffer")
+                .register(meterRegistry);
+        FunctionCounter.builder("shortener_accesslog_dropped_total", ringBuffer, AccessLogRingBuffer::droppedCount)
+                .description("Access log records dropped because the writer fell behind")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("shortener_accesslog_flush")
+                .description("Time the background writer spends writing one batch of records")
+                .register(meterRegistry);
+    }
+
+    public boolean append(long epochMillis, String method, int status, long durationMicros, String clientIp, String path){
+        return ringBuffer.tryAppend(epochMillis, method, status, durationMicros, clientIp, path);
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        open();
+        running = true;
+        thread = Thread.ofPlatform().daemon().name("access-log-writer").start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException, IOException {
+        running = false;
+        thread.join(TimeUnit.SECONDS.toMillis(5));
+        channel.close();
+    }
+
+    private void run(){
+        while(running){
+            try {
+                if(! flushOnce()){
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                }
+            } catch (IOException e) {
+                log.warn("Access log write failed", e);
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+        try {
+            // drain whatever was appended before shutdown
+            while(flushOnce()){
+                // keep going
+            }
+        } catch (IOException e) {
+            log.warn("Access log write failed during shutdown", e);
+        }
+    }
+
+    /**
+     * Writes one batch of records; returns false when there was nothing to write.
+     */
+    boolean flushOnce() throws IOException {
+        writeBuffer.clear();
+        if(ringBuffer.drainTo(writeBuffer) == 0){
+            return false;
+        }
+        writeBuffer.flip();
+
+        long started = System.nanoTime();
+        if(fileBytes + writeBuffer.remaining() > maxFileBytes){
+            rotate();
+        }
+        while(writeBuffer.hasRemaining()){
+            fileBytes += channel.write(writeBuffer);
+        }
+        flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+        return true;
+    }
+
+    private void open() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if(parent != null){
+            Files.createDirectories(parent);
+        }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        fileBytes = channel.size();
+    }
+
+    private void rotate() throws IOException {
+        channel.close();
+        for(int i = maxFiles - 1; i >= 1; i--){
+            Path source = rotated(i);
+            if(Files.exists(source)){
+                Files.move(source, rotated(i + 1), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        Files.move(file, rotated(1), StandardCopyOption.REPLACE_EXISTING);
+        open();
+    }
+
+    private Path rotated(int index){
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
@@ -0,0 +1,27 @@
+package com.maliroso.url_shortener.actuator;
+
+import com.maliroso.url_shortener.dto.response.HeavyHitterResponse;
+import com.maliroso.url_shortener.service.HeavyHitterService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+@Component
+@Endpoint(id = "heavyhitters")
+public class HeavyHittersEndpoint {
+
+    private static final int LIMIT = 20;
+
+    private final HeavyHitterService heavyHitterService;
+
+    public HeavyHittersEndpoint(HeavyHitterService heavyHitterService){
+        this.heavyHitterService = heavyHitterService;
+    }
+
+    @ReadOperation
+    public List<HeavyHitterResponse> heavyHitters(){
+        return heavyHitterService.topHitters(LIMIT);
+    }
+}
@@ -0,0 +1,36 @@
+package com.maliroso.url_shortener.actuator;
+
+import com.maliroso.url_shortener.dto.response.ShardRebalanceStatus;
+import com.maliroso.url_shortener.sharding.ShardRebalancer;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /actuator/shards} reports the ring and the last rebalance,
+ * {@code POST /actuator/shards} starts a rebalance in the background.
+ */
+@Component
+@Endpoint(id = "shards")
+@ConditionalOnProperty(name = "shortener.sharding.enabled", havingValue = "true")
+public class ShardsEndpoint {
+
+    private final ShardRebalancer shardRebalancer;
+
+    public ShardsEndpoint(ShardRebalancer shardRebalancer){
+        this.shardRebalancer = shardRebalancer;
+    }
+
+    @ReadOperation
+    public ShardRebalanceStatus shards(){
+        return shardRebalancer.status();
+    }
+
+    @WriteOperation
+    public ShardRebalanceStatus rebalance(){
+        shardRebalancer.start();
+        return shardRebalancer.status();
+    }
+}
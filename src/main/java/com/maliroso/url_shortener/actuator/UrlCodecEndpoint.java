@@ -0,0 +1,36 @@
+package com.maliroso.url_shortener.actuator;
+
+import com.maliroso.url_shortener.dto.response.UrlCodecReport;
+import com.maliroso.url_shortener.service.UrlCodecService;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code GET /actuator/urlcodec} reports the url dictionary and its savings,
+ * {@code POST /actuator/urlcodec} relearns the dictionary from recent rows.
+ */
+@Component
+@Endpoint(id = "urlcodec")
+public class UrlCodecEndpoint {
+
+    private static final int SAMPLE_SIZE = 1000;
+
+    private final UrlCodecService urlCodecService;
+
+    public UrlCodecEndpoint(UrlCodecService urlCodecService){
+        this.urlCodecService = urlCodecService;
+    }
+
+    @ReadOperation
+    public UrlCodecReport urlCodec(){
+        return urlCodecService.report(SAMPLE_SIZE);
+    }
+
+    @WriteOperation
+    public UrlCodecReport relearn(){
+        urlCodecService.learn();
+        return urlCodecService.report(SAMPLE_SIZE);
+    }
+}
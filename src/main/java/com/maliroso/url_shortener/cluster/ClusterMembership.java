@@ -0,0 +1,181 @@
+package com.maliroso.url_shortener.cluster;
+
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.utils.ConsistentHashRing;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+
+/**
+ * Which app nodes are up, agreed through the database: every node upserts a heartbeat row and
+ * reads back the rows that are still fresh, then builds the same consistent-hash ring over codes.
+ * The owner of a code is the node whose cache should hold it.
+ *
+ * <p>Nodes may briefly disagree after a join or a crash. That only costs a lookup in the wrong
+ * cache, which then goes to the database as it would without affinity.
+ */
+@Slf4j
+@Service
+public class ClusterMembership {
+
+    private static final String CREATE_TABLE_SQL = """
+            create table if not exists cluster_nodes (
+                node_id varchar(255) not null primary key,
+                base_url varchar(255) not null,
+                heartbeat_at timestamp(6) with time zone not null
+            )
+            """;
+
+    // the database clock decides freshness, so skewed node clocks still agree
+    private static final String HEARTBEAT_SQL = """
+            insert into cluster_nodes (node_id, base_url, heartbeat_at)
+            values (?, ?, now())
+            on conflict (node_id) do update set base_url = excluded.base_url, heartbeat_at = excluded.heartbeat_at
+            """;
+
+    private static final String LIVE_NODES_SQL = "select node_id, base_url from cluster_nodes where heartbeat_at > now() - make_interval(secs => ?)";
+
+    // rows of nodes that crashed instead of leaving
+    private static final String PRUNE_SQL = "delete from cluster_nodes where heartbeat_at < now() - interval '1 day'";
+
+    private static final String LEAVE_SQL = "delete from cluster_nodes where node_id = ?";
+
+    private final boolean enabled;
+
+    private final String nodeId;
+
+    private final String advertisedUrl;
+
+    private final double nodeTtlSeconds;
+
+    private final int virtualNodes;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ShardRouter shardRouter;
+
+    private volatile Ring ring;
+
+    private volatile boolean joined;
+
+    public ClusterMembership(
+            @Value("${shortener.affinity.enabled:false}") boolean enabled,
+            @Value("${shortener.affinity.node-id:}") String nodeId,
+            @Value("${shortener.affinity.advertised-url:http://localhost:8080}") String advertisedUrl,
+            @Value("${shortener.affinity.node-ttl-ms:6000}") long nodeTtlMs,
+            @Value("${shortener.affinity.virtual-nodes:128}") int virtualNodes,
+            JdbcTemplate jdbcTemplate,
+            ShardRouter shardRouter,
+            MeterRegistry meterRegistry
+    ){
+        this.enabled = enabled;
+        this.advertisedUrl = advertisedUrl.endsWith("/") ? advertisedUrl.substring(0, advertisedUrl.length() - 1) : advertisedUrl;
+        // the advertised url is unique per node, which is what several local instances need
+        this.nodeId = nodeId == null || nodeId.isBlank() ? this.advertisedUrl : nodeId;
+        this.nodeTtlSeconds = nodeTtlMs / 1000.0;
+        this.virtualNodes = virtualNodes;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+
+        Gauge.builder("shortener_affinity_nodes", this, membership -> membership.nodes().size())
+                .description("App nodes on the code-affinity ring, this one included")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    public String nodeId(){
+        return nodeId;
+    }
+
+    /**
+     * The node that owns the code, unless that is this node or affinity is off.
+     */
+    public Optional<Peer> ownerOf(String code){
+        Ring current = ring;
+        if(current == null){
+            return Optional.empty();
+        }
+        String owner = current.ring().nodeFor(code);
+        if(owner.equals(nodeId)){
+            return Optional.empty();
+        }
+        return Optional.of(new Peer(owner, current.urls().get(owner)));
+    }
+
+    public List<String> nodes(){
+        Ring current = ring;
+        return current == null ? List.of() : current.ring().nodes();
+    }
+
+    @Scheduled(fixedDelayString = "${shortener.affinity.heartbeat-interval-ms:2000}")
+    public void heartbeat(){
+        if(! enabled){
+            return;
+        }
+        // membership lives next to the first shard's mappings; every node reaches that one
+        String shard = shardRouter.shardNames().get(0);
+        Map<String, String> live = new TreeMap<>();
+        try {
+            shardRouter.runOnShard(shard, () -> {
+                if(! joined){
+                    jdbcTemplate.execute(CREATE_TABLE_SQL);
+                    jdbcTemplate.update(PRUNE_SQL);
+                    joined = true;
+                }
+                jdbcTemplate.update(HEARTBEAT_SQL, nodeId, advertisedUrl);
+                jdbcTemplate.query(LIVE_NODES_SQL,
+                        rs -> { live.put(rs.getString("node_id"), rs.getString("base_url")); },
+                        nodeTtlSeconds);
+            });
+        } catch (DataAccessException e) {
+            // keep the last ring; lookups that miss it still end at the database
+            log.warn("Cluster heartbeat failed, keeping {} known nodes: {}", nodes().size(), e.getMessage());
+            return;
+        }
+        live.put(nodeId, advertisedUrl);
+        update(live);
+    }
+
+    void update(Map<String, String> live){
+        Ring current = ring;
+        if(current != null && current.urls().equals(live)){
+            return;
+        }
+        // sorted ids, so every node builds the ring from the same input
+        List<String> ids = List.copyOf(new TreeMap<>(live).keySet());
+        ring = new Ring(new ConsistentHashRing(ids, virtualNodes), Map.copyOf(live));
+        log.info("Code-affinity ring is now {}", live.keySet());
+    }
+
+    @PreDestroy
+    public void leave(){
+        if(! enabled || ! joined){
+            return;
+        }
+        try {
+            shardRouter.runOnShard(shardRouter.shardNames().get(0), () -> jdbcTemplate.update(LEAVE_SQL, nodeId));
+        } catch (DataAccessException e) {
+            log.warn("Could not leave the cluster, peers drop this node once its heartbeat lapses: {}", e.getMessage());
+        }
+    }
+
+    public record Peer(String nodeId, String baseUrl) {
+    }
+
+    private record Ring(ConsistentHashRing ring, Map<String, String> urls) {
+    }
+}
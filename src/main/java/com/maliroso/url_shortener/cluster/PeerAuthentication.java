@@ -0,0 +1,46 @@
+package com.maliroso.url_shortener.cluster;
+
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * Shared cluster secret that peer lookups carry in {@link #HEADER}. Only a request holding it is
+ * treated as coming from another node; everything else on the internal path is a client.
+ */
+@Component
+public class PeerAuthentication {
+
+    public static final String HEADER = "X-Shortener-Peer-Secret";
+
+    private final boolean enabled;
+
+    private final byte[] secret;
+
+    public PeerAuthentication(
+            @Value("${shortener.affinity.enabled:false}") boolean enabled,
+            @Value("${shortener.affinity.secret:}") String secret
+    ){
+        if(enabled && (secret == null || secret.isBlank())){
+            throw new IllegalStateException("shortener.affinity.enabled is set but shortener.affinity.secret is empty");
+        }
+        this.enabled = enabled;
+        this.secret = secret == null ? new byte[0] : secret.getBytes(StandardCharsets.UTF_8);
+    }
+
+    String secret(){
+        return new String(secret, StandardCharsets.UTF_8);
+    }
+
+    public boolean isPeer(HttpServletRequest request){
+        if(! enabled){
+            return false;
+        }
+        String presented = request.getHeader(HEADER);
+        // constant time, so the secret cannot be guessed byte by byte from response times
+        return presented != null && MessageDigest.isEqual(presented.getBytes(StandardCharsets.UTF_8), secret);
+    }
+}
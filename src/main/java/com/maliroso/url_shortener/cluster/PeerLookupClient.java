@@ -0,0 +1,133 @@
+package com.maliroso.url_shortener.cluster;
+
+import com.maliroso.url_shortener.dto.response.PeerMappingResponse;
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.URLEncoder;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Asks the owning node for a code over HTTP. The timeout is short on purpose: a peer that is
+ * slower than the database is worth nothing here, and after a failure the peer is skipped for
+ * the backoff period so a dead node does not add its timeout to every redirect it owns.
+ */
+@Service
+public class PeerLookupClient {
+
+    public static final String PATH = "/internal/mappings/";
+
+    private final HttpClient httpClient;
+
+    private final Duration timeout;
+
+    private final Duration backoff;
+
+    private final ObjectMapper objectMapper;
+
+    private final PeerAuthentication peerAuthentication;
+
+    private final Map<String, Instant> backoffUntil = new ConcurrentHashMap<>();
+
+    private final Counter foundCounter;
+
+    private final Counter notFoundCounter;
+
+    private final Counter unavailableCounter;
+
+    public PeerLookupClient(
+            @Value("${shortener.affinity.peer-timeout-ms:200}") long timeoutMs,
+            @Value("${shortener.affinity.peer-backoff-ms:5000}") long backoffMs,
+            ObjectMapper objectMapper,
+            PeerAuthentication peerAuthentication,
+            MeterRegistry meterRegistry
+    ){
+        this.timeout = Duration.ofMillis(timeoutMs);
+        this.backoff = Duration.ofMillis(backoffMs);
+        this.objectMapper = objectMapper;
+        this.peerAuthentication = peerAuthentication;
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .build();
+
+        this.foundCounter = lookupCounter(meterRegistry, "found");
+        this.notFoundCounter = lookupCounter(meterRegistry, "not_found");
+        this.unavailableCounter = lookupCounter(meterRegistry, "unavailable");
+    }
+
+    private static Counter lookupCounter(MeterRegistry meterRegistry, String result){
+        return Counter.builder("shortener_affinity_lookups_total")
+                .description("Redirect lookups sent to the node owning the code, by outcome")
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * The owner's answer: its mapping for the code, or empty if it has none.
+     *
+     * @throws PeerUnavailableException if the owner gave no usable answer
+     */
+    public Optional<CachedUrlMapping> lookup(ClusterMembership.Peer peer, String code){
+        Instant until = backoffUntil.get(peer.nodeId());
+        if(until != null){
+            if(Instant.now().isBefore(until)){
+                unavailableCounter.increment();
+                throw new PeerUnavailableException("Backing off from " + peer.nodeId());
+            }
+            backoffUntil.remove(peer.nodeId(), until);
+        }
+
+        HttpRequest request = HttpRequest.newBuilder(URI.create(peer.baseUrl() + PATH + URLEncoder.encode(code, StandardCharsets.UTF_8)))
+                .timeout(timeout)
+                .header("Accept", "application/json")
+                .header(PeerAuthentication.HEADER, peerAuthentication.secret())
+                .GET()
+                .build();
+        HttpResponse<byte[]> response;
+        try {
+            response = httpClient.send(request, HttpResponse.BodyHandlers.ofByteArray());
+        } catch (IOException e) {
+            throw unavailable(peer, "Lookup on " + peer.nodeId() + " failed", e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw unavailable(peer, "Interrupted waiting for " + peer.nodeId(), e);
+        }
+
+        if(response.statusCode() == 404){
+            notFoundCounter.increment();
+            return Optional.empty();
+        }
+        if(response.statusCode() != 200){
+            throw unavailable(peer, peer.nodeId() + " answered " + response.statusCode(), null);
+        }
+        try {
+            PeerMappingResponse body = objectMapper.readValue(response.body(), PeerMappingResponse.class);
+            foundCounter.increment();
+            return Optional.of(new CachedUrlMapping(body.code(), body.longUrl(), body.expiresAt()));
+        } catch (JacksonException e) {
+            throw unavailable(peer, "Unreadable answer from " + peer.nodeId(), e);
+        }
+    }
+
+    private PeerUnavailableException unavailable(ClusterMembership.Peer peer, String message, Throwable cause){
+        backoffUntil.put(peer.nodeId(), Instant.now().plus(backoff));
+        unavailableCounter.increment();
+        return new PeerUnavailableException(message, cause);
+    }
+}
@@ -0,0 +1,16 @@
+package com.maliroso.url_shortener.cluster;
+
+/**
+ * The owning node did not answer a lookup in time, answered with an error, or is backing off
+ * after a recent failure. The caller reads the database itself instead.
+ */
+public class PeerUnavailableException extends RuntimeException {
+
+    public PeerUnavailableException(String message){
+        super(message);
+    }
+
+    public PeerUnavailableException(String message, Throwable cause){
+        super(message, cause);
+    }
+}
@@ -0,0 +1,38 @@
+package com.maliroso.url_shortener.config;
+
+import com.maliroso.url_shortener.jdbc.InstrumentedDataSource;
+import com.maliroso.url_shortener.jdbc.SampledSqlLogger;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+
+/**
+ * Wraps the data source when sampled SQL logging ({@code shortener.sql-log.enabled}) or per-request
+ * statement counting ({@code shortener.sql-stats.enabled}) is on.
+ */
+@Component
+public class InstrumentedDataSourcePostProcessor implements BeanPostProcessor {
+
+    private final SampledSqlLogger sqlLogger;
+
+    private final boolean countStatements;
+
+    public InstrumentedDataSourcePostProcessor(
+            @Value("${shortener.sql-log.enabled:false}") boolean sqlLogEnabled,
+            @Value("${shortener.sql-log.sample-rate:0.01}") double sampleRate,
+            @Value("${shortener.sql-stats.enabled:false}") boolean countStatements) {
+        this.sqlLogger = sqlLogEnabled ? new SampledSqlLogger(sampleRate) : null;
+        this.countStatements = countStatements;
+    }
+
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if ((sqlLogger != null || countStatements)
+                && bean instanceof DataSource dataSource && !(bean instanceof InstrumentedDataSource)) {
+            return new InstrumentedDataSource(dataSource, sqlLogger, countStatements);
+        }
+        return bean;
+    }
+}
@@ -0,0 +1,34 @@
+package com.maliroso.url_shortener.config;
+
+import com.maliroso.url_shortener.sharding.ShardSequenceGenerator;
+import org.springframework.aot.hint.MemberCategory;
+import org.springframework.aot.hint.RuntimeHints;
+import org.springframework.aot.hint.RuntimeHintsRegistrar;
+import org.springframework.aot.hint.TypeReference;
+
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+
+/**
+ * Reflection and proxy hints for the AOT / native builds that Spring cannot infer on its own.
+ */
+public class NativeRuntimeHints implements RuntimeHintsRegistrar {
+
+    @Override
+    public void registerHints(RuntimeHints hints, ClassLoader classLoader) {
+        // Hibernate instantiates the generator behind @CreationTimestamp reflectively
+        hints.reflection().registerType(
+                TypeReference.of("org.hibernate.generator.internal.CurrentTimestampGeneration"),
+                MemberCategory.INVOKE_DECLARED_CONSTRUCTORS);
+        // and the per-shard id generator named by @GenericGenerator
+        hints.reflection().registerType(ShardSequenceGenerator.class, MemberCategory.INVOKE_PUBLIC_CONSTRUCTORS);
+
+        // InstrumentedDataSource wraps connections and statements in JDK proxies
+        hints.proxies().registerJdkProxy(Connection.class);
+        hints.proxies().registerJdkProxy(Statement.class);
+        hints.proxies().registerJdkProxy(PreparedStatement.class);
+        hints.proxies().registerJdkProxy(CallableStatement.class);
+    }
+}
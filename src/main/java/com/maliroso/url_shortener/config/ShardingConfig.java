@@ -0,0 +1,84 @@
+package com.maliroso.url_shortener.config;
+
+import com.maliroso.url_shortener.sharding.ShardPools;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.sharding.ShardRoutingDataSource;
+import com.maliroso.url_shortener.sharding.ShardingProperties;
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+@Configuration
+@EnableConfigurationProperties(ShardingProperties.class)
+public class ShardingConfig {
+
+    @Bean
+    public ShardRouter shardRouter(ShardingProperties properties) {
+        if (!properties.enabled()) {
+            return ShardRouter.single();
+        }
+        return new ShardRouter(properties.shardNames(), properties.previousShards(), properties.virtualNodes());
+    }
+
+    /**
+     * One pool per shard behind a routing data source. Replaces the auto-configured data source,
+     * so JPA, JdbcTemplate and the transaction manager all route through it.
+     */
+    @Configuration
+    @ConditionalOnProperty(name = "shortener.sharding.enabled", havingValue = "true")
+    public static class ShardedDataSourceConfig {
+
+        @Bean
+        public ShardPools shardPools(ShardingProperties properties) {
+            if (properties.shardNames().isEmpty()) {
+                throw new IllegalStateException("shortener.sharding.enabled is set but no shards are configured");
+            }
+            // lookup misses and the rebalancer still read the previous owners, so each needs a pool
+            List<String> configured = properties.shards().stream().map(ShardingProperties.Shard::name).toList();
+            for (String previous : properties.previousShards()) {
+                if (!configured.contains(previous)) {
+                    throw new IllegalStateException("Previous shard " + previous
+                            + " is not in shortener.sharding.shards; keep it listed with retired: true until the rebalance is done");
+                }
+            }
+
+            // Hibernate's ddl-auto only reaches the default shard, so every shard gets the schema here
+            ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("schema-shard.sql"));
+            Map<String, DataSource> dataSources = new LinkedHashMap<>();
+            for (ShardingProperties.Shard shard : properties.shards()) {
+                HikariDataSource dataSource = new HikariDataSource();
+                dataSource.setPoolName("shard-" + shard.name());
+                dataSource.setJdbcUrl(shard.url());
+                dataSource.setUsername(shard.username());
+                dataSource.setPassword(shard.password());
+                dataSource.setMaximumPoolSize(properties.maximumPoolSize());
+                dataSource.setConnectionTimeout(properties.connectionTimeoutMs());
+                schema.execute(dataSource);
+                dataSources.put(shard.name(), dataSource);
+            }
+            return new ShardPools(dataSources);
+        }
+
+        @Bean
+        @Primary
+        public DataSource dataSource(ShardPools shardPools, ShardingProperties properties) {
+            ShardRoutingDataSource routing = new ShardRoutingDataSource();
+            routing.setTargetDataSources(new LinkedHashMap<>(shardPools.dataSources()));
+            routing.setDefaultTargetDataSource(shardPools.dataSources().get(properties.shardNames().get(0)));
+            routing.setLenientFallback(false);
+            routing.afterPropertiesSet();
+            return new LazyConnectionDataSourceProxy(routing);
+        }
+    }
+}
@@ -0,0 +1,71 @@
+package com.maliroso.url_shortener.controller;
+
+import com.maliroso.url_shortener.dto.request.RecordFormat;
+import com.maliroso.url_shortener.service.ExportService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.time.Instant;
+
+@RestController
+public class ExportController {
+    @Autowired
+    private ExportService exportService;
+
+    @Operation(summary = "Stream all url mappings as NDJSON or CSV",
+            description = "Rows are ordered by id. Every row carries a cursor token; pass the last one received "
+                    + "as `cursor` to resume an interrupted export.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Mappings streamed"),
+            @ApiResponse(responseCode = "422", description = "Unprocessable content")
+    })
+    @GetMapping("/api/export/mappings")
+    public void exportMappings(
+            @RequestParam(name = "format", defaultValue = "ndjson") String format,
+            @RequestParam(name = "createdFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdFrom,
+            @RequestParam(name = "createdTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant createdTo,
+            @RequestParam(name = "expiresFrom", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant expiresFrom,
+            @RequestParam(name = "expiresTo", required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) Instant expiresTo,
+            @RequestParam(name = "cursor", required = false) String cursor,
+            HttpServletResponse response
+    ) throws IOException {
+        RecordFormat exportFormat;
+        try {
+            exportFormat = RecordFormat.fromParam(format);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.UNPROCESSABLE_CONTENT.value());
+            response.getWriter().write(e.getMessage());
+            return;
+        }
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(exportFormat.contentType());
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION,
+                "attachment; filename=\"url_mappings." + exportFormat.extension() + "\"");
+
+        try {
+            exportService.export(
+                    exportFormat,
+                    new ExportService.Filter(createdFrom, createdTo, expiresFrom, expiresTo),
+                    cursor,
+                    response.getOutputStream()
+            );
+        } catch (IllegalArgumentException e) {
+            // only the cursor is validated before the first row is written
+            response.reset();
+            response.setStatus(HttpStatus.UNPROCESSABLE_CONTENT.value());
+            response.getWriter().write(e.getMessage());
+        }
+    }
+}
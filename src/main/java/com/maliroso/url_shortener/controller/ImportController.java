@@ -0,0 +1,101 @@
+package com.maliroso.url_shortener.controller;
+
+import com.maliroso.url_shortener.dto.request.RecordFormat;
+import com.maliroso.url_shortener.dto.response.ImportProgress;
+import com.maliroso.url_shortener.service.ImportService;
+import com.maliroso.url_shortener.utils.RecordFormatUtil;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
+import io.swagger.v3.oas.annotations.responses.ApiResponses;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+@RestController
+public class ImportController {
+    @Autowired
+    private ImportService importService;
+
+    @Operation(summary = "Bulk import existing code -> url pairs from an NDJSON or CSV request body",
+            description = "Progress is streamed back as NDJSON. After a failure, resend the same input with "
+                    + "`skip` set to the last reported checkpoint.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Import progress streamed"),
+            @ApiResponse(responseCode = "422", description = "Unprocessable content")
+    })
+    @PostMapping("/api/import/mappings")
+    public void importMappings(
+            @RequestParam(name = "format", defaultValue = "ndjson") String format,
+            @RequestParam(name = "skip", defaultValue = "0") long skip,
+            HttpServletRequest request,
+            HttpServletResponse response
+    ) throws IOException {
+        RecordFormat recordFormat;
+        try {
+            recordFormat = RecordFormat.fromParam(format);
+        } catch (IllegalArgumentException e) {
+            response.setStatus(HttpStatus.UNPROCESSABLE_CONTENT.value());
+            response.getWriter().write(e.getMessage());
+            return;
+        }
+
+        response.setStatus(HttpStatus.OK.value());
+        response.setContentType(RecordFormat.NDJSON.contentType());
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter writer = response.getWriter();
+        ProgressWriter progressWriter = new ProgressWriter(writer, skip);
+
+        try {
+            ImportProgress done = importService.importMappings(recordFormat, request.getInputStream(), skip, progressWriter);
+            writer.write(progressLine("done", done));
+        } catch (Exception e) {
+            // everything up to the last checkpoint is committed; the client resumes from there
+            StringBuilder sb = new StringBuilder("{\"type\":\"failed\",\"checkpoint\":")
+                    .append(progressWriter.lastCheckpoint)
+                    .append(",\"reason\":");
+            RecordFormatUtil.appendJsonString(sb, e.getMessage());
+            writer.write(sb.append("}\n").toString());
+        }
+        writer.flush();
+    }
+
+    private static String progressLine(String type, ImportProgress progress){
+        return "{\"type\":\"" + type + "\""
+                + ",\"checkpoint\":" + progress.checkpoint()
+                + ",\"imported\":" + progress.imported()
+                + ",\"conflicts\":" + progress.conflicts()
+                + ",\"invalid\":" + progress.invalid()
+                + "}\n";
+    }
+
+    private static final class ProgressWriter implements ImportService.Listener {
+        private final PrintWriter writer;
+        private long lastCheckpoint;
+
+        private ProgressWriter(PrintWriter writer, long skip){
+            this.writer = writer;
+            this.lastCheckpoint = skip;
+        }
+
+        @Override
+        public void onInvalid(long line, String reason){
+            StringBuilder sb = new StringBuilder("{\"type\":\"invalid\",\"line\":").append(line).append(",\"reason\":");
+            RecordFormatUtil.appendJsonString(sb, reason);
+            writer.write(sb.append("}\n").toString());
+        }
+
+        @Override
+        public void onProgress(ImportProgress progress){
+            lastCheckpoint = progress.checkpoint();
+            writer.write(progressLine("progress", progress));
+            writer.flush();
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package com.maliroso.url_shortener.controller;
+
+import com.maliroso.url_shortener.cluster.PeerAuthentication;
+import com.maliroso.url_shortener.cluster.PeerLookupClient;
+import com.maliroso.url_shortener.dto.response.PeerMappingResponse;
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import com.maliroso.url_shortener.service.DatabaseUnavailableException;
+import com.maliroso.url_shortener.service.UrlService;
+import io.swagger.v3.oas.annotations.Hidden;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.time.Instant;
+import java.util.Optional;
+
+/**
+ * Answers lookups from other nodes for codes this node owns on the code-affinity ring. Only
+ * registered with affinity on, and only answers requests carrying the cluster secret; those are
+ * not rate limited, and the calling node records the hit itself.
+ */
+@Hidden
+@RestController
+@ConditionalOnProperty(name = "shortener.affinity.enabled", havingValue = "true")
+@RegisterReflectionForBinding(PeerMappingResponse.class)
+public class PeerController {
+
+    @Autowired
+    private UrlService urlService;
+
+    @Autowired
+    private PeerAuthentication peerAuthentication;
+
+    @GetMapping(PeerLookupClient.PATH + "{code}")
+    public ResponseEntity<PeerMappingResponse> lookup(
+            @PathVariable(name = "code") String code,
+            HttpServletRequest request
+    ){
+        if(! peerAuthentication.isPeer(request)){
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        try {
+            Optional<CachedUrlMapping> mapping = urlService.resolveForPeer(code, Instant.now());
+            return mapping
+                    .map(found -> ResponseEntity.ok(new PeerMappingResponse(found.code(), found.longUrl(), found.expiresAt())))
+                    .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND).build());
+        } catch (DatabaseUnavailableException e) {
+            // the caller falls back to its own database and stale store
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).build();
+        }
+    }
+}
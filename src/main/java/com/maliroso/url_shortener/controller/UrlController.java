@@ -1,32 +1,47 @@
 package com.maliroso.url_shortener.controller;
 
+import com.maliroso.url_shortener.dto.request.MetadataBatchRequest;
 import com.maliroso.url_shortener.dto.request.ShortenUrlRequest;
 import com.maliroso.url_shortener.dto.response.ShortUrlMetadataResponse;
 import com.maliroso.url_shortener.dto.response.ShortenUrlResponse;
+import com.maliroso.url_shortener.jfr.RedirectEvent;
+import com.maliroso.url_shortener.jfr.ShortenEvent;
+import com.maliroso.url_shortener.model.CachedUrlMapping;
 import com.maliroso.url_shortener.model.UrlMapping;
+import com.maliroso.url_shortener.service.DatabaseUnavailableException;
+import com.maliroso.url_shortener.service.HeavyHitterService;
+import com.maliroso.url_shortener.service.MetadataResponseCache;
 import com.maliroso.url_shortener.service.RedirectMetricsService;
+import com.maliroso.url_shortener.service.UrlMetadataService;
 import com.maliroso.url_shortener.service.UrlService;
 import io.micrometer.core.instrument.MeterRegistry;
 import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.media.ArraySchema;
 import io.swagger.v3.oas.annotations.media.Content;
 import io.swagger.v3.oas.annotations.media.Schema;
 import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.responses.ApiResponses;
 import jakarta.validation.Valid;
+import org.springframework.aot.hint.annotation.RegisterReflectionForBinding;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
-import org.springframework.transaction.annotation.Transactional;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.net.URI;
 import java.time.Instant;
+import java.util.List;
 import java.util.Optional;
 
 @CrossOrigin(origins = "*")
 @RestController
+// bodies are returned as ResponseEntity<?>, so AOT cannot see the DTO types on its own
+@RegisterReflectionForBinding({ShortenUrlResponse.class, ShortUrlMetadataResponse.class})
 public class UrlController {
     @Autowired
     private UrlService urlService;
@@ -34,25 +49,38 @@ public class UrlController {
     @Autowired
     private RedirectMetricsService metricsService;
 
+    @Autowired
+    private HeavyHitterService heavyHitterService;
+
+    @Autowired
+    private UrlMetadataService urlMetadataService;
+
     private final String baseUrl = "http://localhost:8080/";
 
+    // an open breaker refuses calls for this long, so an earlier retry only meets it again
+    @Value("${shortener.db-breaker.open-duration-ms:5000}")
+    private long breakerOpenDurationMs;
+
     @Operation(summary = "Create a short url for a long url")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Short url created for long url",
                 content = @Content(schema = @Schema(implementation = ShortenUrlResponse.class))),
-            @ApiResponse(responseCode = "422", description = "Unprocessable content")
+            @ApiResponse(responseCode = "422", description = "Unprocessable content"),
+            @ApiResponse(responseCode = "503", description = "Database unavailable")
     })
-    @Transactional
     @PostMapping("/api/urls")
     public ResponseEntity<?> createShortUrl(
             @Valid @RequestBody ShortenUrlRequest request
     ){
+        ShortenEvent event = new ShortenEvent();
+        event.begin();
         try {
             Optional<UrlMapping> urlMapSearch = urlService.fetchByLongUrl(request.longUrl(), Instant.now());
             if(urlMapSearch.isPresent()){
                 UrlMapping urlMap = urlMapSearch.get();
                 String shortUrl = baseUrl + "r/" + urlMap.getCode();
                 ShortenUrlResponse urlResponse = new ShortenUrlResponse(urlMap.getCode(), shortUrl);
+                event.finish(urlMap.getCode(), true, HttpStatus.OK.value());
                 return ResponseEntity.status(HttpStatus.OK).body(urlResponse);
             }
 
@@ -61,8 +89,13 @@ public class UrlController {
 
             String shortUrl = baseUrl + "r/" + urlMap.getCode();
             ShortenUrlResponse urlResponse = new ShortenUrlResponse(urlMap.getCode(), shortUrl);
+            event.finish(urlMap.getCode(), false, HttpStatus.OK.value());
             return ResponseEntity.status(HttpStatus.OK).body(urlResponse);
+        }catch(DatabaseUnavailableException e){
+            event.finish(null, false, HttpStatus.SERVICE_UNAVAILABLE.value());
+            return serviceUnavailable();
         }catch(Exception e){
+            event.finish(null, false, HttpStatus.UNPROCESSABLE_CONTENT.value());
             return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT).body(e.getMessage());
         }
     }
@@ -71,33 +104,72 @@ public class UrlController {
     @ApiResponses(value = {
             @ApiResponse(responseCode = "200", description = "Metadata for url code retrieved successfully",
                     content = @Content(schema = @Schema(implementation = ShortUrlMetadataResponse.class))),
-            @ApiResponse(responseCode = "422", description = "Unprocessable content")
+            @ApiResponse(responseCode = "304", description = "Metadata unchanged since the ETag / Last-Modified sent by the client"),
+            @ApiResponse(responseCode = "422", description = "Unprocessable content"),
+            @ApiResponse(responseCode = "503", description = "Database unavailable")
     })
-    @Transactional
     @GetMapping("/api/urls/{code}")
     public ResponseEntity<?> getUrlMetadata(
             @PathVariable(name = "code") String code
     ){
         try {
-            Optional<UrlMapping> urlMapSearch = urlService.fetchUrlMapping(code, Instant.now());
-            if(urlMapSearch.isPresent()){
-                UrlMapping urlMap = urlMapSearch.get();
-                String shortUrl = baseUrl + "r/" + urlMap.getCode();
-                ShortUrlMetadataResponse urlResponse = new ShortUrlMetadataResponse(
-                        urlMap.getCode(),
-                        shortUrl,
-                        urlMap.getLongUrl(),
-                        urlMap.getCreatedAt(),
-                        urlMap.getHitCount()
-                );
-
-                urlMap.setHitCount(urlMap.getHitCount() + 1);
-                urlService.updateHitCount(urlMap);
-
-                return ResponseEntity.status(HttpStatus.OK).body(urlResponse);
+            Optional<MetadataResponseCache.Snapshot> snapshotSearch =
+                    urlMetadataService.lookup(code, Instant.now(), baseUrl + "r/");
+            if(snapshotSearch.isPresent()){
+                MetadataResponseCache.Snapshot snapshot = snapshotSearch.get();
+
+                // Spring answers If-None-Match / If-Modified-Since with 304 from these validators
+                return ResponseEntity.status(HttpStatus.OK)
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .eTag(snapshot.etag())
+                        .lastModified(snapshot.lastModified())
+                        .cacheControl(CacheControl.noCache())
+                        .body(snapshot.body());
             }
 
             return ResponseEntity.status(HttpStatus.NOT_FOUND).body(null);
+        }catch(DatabaseUnavailableException e){
+            return serviceUnavailable();
+        }catch(Exception e){
+            return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT).body(e.getMessage());
+        }
+    }
+
+    @Operation(summary = "Get metadata for many url codes",
+            description = "Returns a JSON array of metadata in request order. Codes without an active mapping are "
+                    + "left out. Unlike the single-code endpoint this does not count as a hit.")
+    @ApiResponses(value = {
+            @ApiResponse(responseCode = "200", description = "Metadata retrieved successfully",
+                    content = @Content(array = @ArraySchema(schema = @Schema(implementation = ShortUrlMetadataResponse.class)))),
+            @ApiResponse(responseCode = "400", description = "No codes, or more than 1000"),
+            @ApiResponse(responseCode = "422", description = "Unprocessable content"),
+            @ApiResponse(responseCode = "503", description = "Database unavailable")
+    })
+    @PostMapping("/api/urls/metadata")
+    public ResponseEntity<?> getUrlMetadataBatch(
+            @Valid @RequestBody MetadataBatchRequest request
+    ){
+        try {
+            List<MetadataResponseCache.Snapshot> snapshots =
+                    urlMetadataService.lookupAll(request.codes(), Instant.now(), baseUrl + "r/");
+
+            // the cached bodies are already serialized, so they are written out as they are
+            StreamingResponseBody body = out -> {
+                out.write('[');
+                for(int i = 0; i < snapshots.size(); i++){
+                    if(i > 0){
+                        out.write(',');
+                    }
+                    out.write(snapshots.get(i).body());
+                }
+                out.write(']');
+            };
+
+            return ResponseEntity.status(HttpStatus.OK)
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .body(body);
+        }catch(DatabaseUnavailableException e){
+            return serviceUnavailable();
         }catch(Exception e){
             return ResponseEntity.status(HttpStatus.UNPROCESSABLE_CONTENT).body(e.getMessage());
         }
@@ -106,25 +178,33 @@ public class UrlController {
     @Operation(summary = "Redirect to long url from short url")
     @ApiResponses(value = {
             @ApiResponse(responseCode = "302", description = "Redirected to log url"),
-            @ApiResponse(responseCode = "404", description = "Url Not Found")
+            @ApiResponse(responseCode = "404", description = "Url Not Found"),
+            @ApiResponse(responseCode = "503", description = "Database unavailable and no last known mapping for the code")
     })
-    @Transactional
     @GetMapping("/r/{code}")
     public ResponseEntity<?> redirectToUrl(
             @PathVariable(name = "code") String code
     ){
+        RedirectEvent event = new RedirectEvent();
+        event.begin();
+        ResponseEntity<?> response = redirect(code);
+        event.finish(code, response.getStatusCode().value());
+        return response;
+    }
+
+    private ResponseEntity<?> redirect(String code){
         try{
-            Optional<UrlMapping> urlMapSearch = urlService.fetchUrlMapping(code, Instant.now());
+            Optional<CachedUrlMapping> urlMapSearch = urlService.resolveRedirect(code, Instant.now());
             if(urlMapSearch.isEmpty()){
                 return new ResponseEntity<>(HttpStatus.NOT_FOUND);
             }
 
-            UrlMapping urlMap = urlMapSearch.get();
+            CachedUrlMapping urlMap = urlMapSearch.get();
 
-            urlMap.setHitCount(urlMap.getHitCount() + 1);
-            urlService.updateHitCount(urlMap);
+            urlService.recordHit(code);
+            heavyHitterService.recordRedirect(code);
 
-            String longUrl = urlMap.getLongUrl();
+            String longUrl = urlMap.longUrl();
 
             if(longUrl != null && ! longUrl.startsWith("http")){
                 longUrl = "http://"+longUrl;
@@ -139,9 +219,18 @@ public class UrlController {
             metricsService.recordRedirect();
 
             return new ResponseEntity<>(headers, HttpStatus.FOUND);
+        }catch (DatabaseUnavailableException e){
+            // not a 404: the code may well exist, we just cannot tell right now
+            return serviceUnavailable();
         }catch (Exception e){
             return new ResponseEntity<>(HttpStatus.NOT_FOUND);
         }
     }
 
+    private ResponseEntity<?> serviceUnavailable(){
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(Math.max(1, (breakerOpenDurationMs + 999) / 1000)))
+                .build();
+    }
+
 }
@@ -0,0 +1,14 @@
+package com.maliroso.url_shortener.dto.request;
+
+import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+
+/**
+ * One row of a bulk import. Extra fields (such as those written by the export) are ignored.
+ */
+@JsonIgnoreProperties(ignoreUnknown = true)
+public record ImportRecord(
+        String code,
+        String longUrl,
+        String expiresAt
+) {
+}
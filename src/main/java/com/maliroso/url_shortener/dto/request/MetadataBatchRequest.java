@@ -0,0 +1,14 @@
+package com.maliroso.url_shortener.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record MetadataBatchRequest(
+        @NotEmpty(message = "Codes cannot be empty")
+        @Size(max = 1000, message = "At most 1000 codes per request")
+        List<@NotBlank(message = "Code cannot be blank") String> codes
+) {
+}
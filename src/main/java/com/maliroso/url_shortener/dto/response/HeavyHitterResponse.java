@@ -0,0 +1,10 @@
+package com.maliroso.url_shortener.dto.response;
+
+public record HeavyHitterResponse(
+        String code,
+        long estimatedCount,
+        long maxError,
+        double redirectsPerSecond,
+        boolean pinned
+) {
+}
@@ -0,0 +1,13 @@
+package com.maliroso.url_shortener.dto.response;
+
+/**
+ * Import counters. {@code checkpoint} is the number of data lines fully handled and committed;
+ * pass it back as {@code skip} to restart an import after a failure.
+ */
+public record ImportProgress(
+        long checkpoint,
+        long imported,
+        long conflicts,
+        long invalid
+) {
+}
@@ -0,0 +1,13 @@
+package com.maliroso.url_shortener.dto.response;
+
+import java.time.Instant;
+
+/**
+ * What the owning node sends back to a peer that routed a redirect lookup to it.
+ */
+public record PeerMappingResponse(
+        String code,
+        String longUrl,
+        Instant expiresAt
+) {
+}
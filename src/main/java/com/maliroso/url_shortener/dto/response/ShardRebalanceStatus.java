@@ -0,0 +1,16 @@
+package com.maliroso.url_shortener.dto.response;
+
+import java.time.Instant;
+import java.util.List;
+
+public record ShardRebalanceStatus(
+        String state,
+        List<String> shards,
+        List<String> previousShards,
+        long scanned,
+        long moved,
+        Instant startedAt,
+        Instant finishedAt,
+        String error
+) {
+}
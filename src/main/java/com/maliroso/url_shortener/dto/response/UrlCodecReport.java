@@ -0,0 +1,14 @@
+package com.maliroso.url_shortener.dto.response;
+
+import java.util.List;
+
+public record UrlCodecReport(
+        List<String> prefixes,
+        long encodedUrls,
+        long encodedRawBytes,
+        long encodedCompactBytes,
+        int sampledRows,
+        long sampledRawBytes,
+        long sampledCompactBytes
+) {
+}
@@ -0,0 +1,16 @@
+package com.maliroso.url_shortener.dto.response;
+
+import java.time.Instant;
+
+/**
+ * Read-only projection used by the export and the metadata batch, so rows never become managed entities.
+ */
+public record UrlMappingExportRow(
+        Long id,
+        String code,
+        String longUrl,
+        long hitCount,
+        Instant createdAt,
+        Instant expiresAt
+) {
+}
@@ -0,0 +1,52 @@
+package com.maliroso.url_shortener.filter;
+
+import com.maliroso.url_shortener.accesslog.AccessLogWriter;
+import com.maliroso.url_shortener.utils.ClientIpUtil;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Records redirect and API requests, including those rejected by later filters such as the rate limiter.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 1)
+@ConditionalOnProperty(name = "shortener.access-log.enabled", havingValue = "true", matchIfMissing = true)
+public class AccessLogFilter implements Filter {
+
+    @Autowired
+    private AccessLogWriter accessLogWriter;
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
+        HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
+
+        String path = httpRequest.getRequestURI();
+        if (!path.startsWith("/r/") && !path.startsWith("/api/")) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+
+        long started = System.nanoTime();
+        try {
+            filterChain.doFilter(servletRequest, servletResponse);
+        } finally {
+            accessLogWriter.append(
+                    System.currentTimeMillis(),
+                    httpRequest.getMethod(),
+                    httpResponse.getStatus(),
+                    (System.nanoTime() - started) / 1000,
+                    ClientIpUtil.resolve(httpRequest),
+                    path
+            );
+        }
+    }
+}
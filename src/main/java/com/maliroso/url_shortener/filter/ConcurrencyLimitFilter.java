@@ -0,0 +1,77 @@
+package com.maliroso.url_shortener.filter;
+
+import com.maliroso.url_shortener.cluster.PeerLookupClient;
+import com.maliroso.url_shortener.service.AdaptiveConcurrencyLimiter;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.util.Optional;
+
+/**
+ * Admits redirects, metadata reads and creates through the adaptive concurrency limiter. Export,
+ * import and actuator requests are not limited: they are operator traffic, and their long
+ * response times would distort the latency the limit is derived from.
+ */
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 2)
+@ConditionalOnProperty(name = "shortener.concurrency.enabled", havingValue = "true", matchIfMissing = true)
+public class ConcurrencyLimitFilter implements Filter {
+
+    private static final String RETRY_AFTER_SECONDS = "1";
+
+    @Autowired
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
+        HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
+
+        AdaptiveConcurrencyLimiter.Priority priority = classify(httpRequest);
+        if (priority == null) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+
+        Optional<AdaptiveConcurrencyLimiter.Token> token = limiter.tryAcquire(priority);
+        if (token.isEmpty()) {
+            httpResponse.setStatus(HttpServletResponse.SC_SERVICE_UNAVAILABLE);
+            httpResponse.setHeader(HttpHeaders.RETRY_AFTER, RETRY_AFTER_SECONDS);
+            httpResponse.getWriter().write("Server busy. Try again later.");
+            return;
+        }
+
+        boolean completed = false;
+        try {
+            filterChain.doFilter(servletRequest, servletResponse);
+            completed = true;
+        } finally {
+            token.get().release(completed && httpResponse.getStatus() < 500);
+        }
+    }
+
+    static AdaptiveConcurrencyLimiter.Priority classify(HttpServletRequest request) {
+        String path = request.getRequestURI();
+        String method = request.getMethod();
+        // a peer lookup is the database half of a redirect on another node
+        if (path.startsWith("/r/") || path.startsWith(PeerLookupClient.PATH)) {
+            return AdaptiveConcurrencyLimiter.Priority.REDIRECT;
+        }
+        if (path.equals("/api/urls") && "POST".equals(method)) {
+            return AdaptiveConcurrencyLimiter.Priority.CREATE;
+        }
+        if ((path.startsWith("/api/urls/") && "GET".equals(method))
+                || (path.equals("/api/urls/metadata") && "POST".equals(method))) {
+            return AdaptiveConcurrencyLimiter.Priority.METADATA;
+        }
+        return null;
+    }
+}
@@ -1,6 +1,10 @@
 package com.maliroso.url_shortener.filter;
 
+import com.maliroso.url_shortener.cluster.PeerAuthentication;
+import com.maliroso.url_shortener.cluster.PeerLookupClient;
+import com.maliroso.url_shortener.jfr.RateLimitEvent;
 import com.maliroso.url_shortener.service.RateLimiterService;
+import com.maliroso.url_shortener.utils.ClientIpUtil;
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
@@ -16,6 +20,9 @@ public class RateLimitFilter implements Filter {
     @Autowired
     private RateLimiterService rateLimiterService;
 
+    @Autowired
+    private PeerAuthentication peerAuthentication;
+
     private static final int CAPACITY = 10;
     private static final Duration REFILL_DURATION = Duration.ofMinutes(1);
 
@@ -24,23 +31,26 @@ public class RateLimitFilter implements Filter {
         HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
         HttpServletResponse httpResponse = (HttpServletResponse) servletResponse;
 
-        String clientIp = getClientIp(httpRequest);
+        // an authenticated peer lookup is made on behalf of a client its node already limited
+        String path = httpRequest.getRequestURI();
+        if (path != null && path.startsWith(PeerLookupClient.PATH) && peerAuthentication.isPeer(httpRequest)) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+
+        RateLimitEvent event = new RateLimitEvent();
+        event.begin();
+        String clientIp = ClientIpUtil.resolve(httpRequest);
 
         var bucket = rateLimiterService.resolveBucket(clientIp, CAPACITY, REFILL_DURATION);
+        boolean allowed = bucket.tryConsume(1);
+        event.finish(clientIp, path, allowed);
 
-        if (bucket.tryConsume(1)) {
+        if (allowed) {
             filterChain.doFilter(servletRequest, servletResponse);
         } else {
             httpResponse.setStatus(429); // Too Many Requests
             httpResponse.getWriter().write("Rate limit exceeded. Try again later.");
         }
     }
-
-    private String getClientIp(HttpServletRequest request) {
-        String ip = request.getHeader("X-Forwarded-For");
-        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
-            ip = request.getRemoteAddr();
-        }
-        return ip;
-    }
 }
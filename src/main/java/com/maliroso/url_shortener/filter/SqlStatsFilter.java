@@ -0,0 +1,148 @@
+package com.maliroso.url_shortener.filter;
+
+import com.maliroso.url_shortener.jdbc.SqlStatementStats;
+import com.maliroso.url_shortener.service.AdaptiveConcurrencyLimiter;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.servlet.*;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.util.ContentCachingResponseWrapper;
+
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Counts the SQL statements and JDBC time of each redirect, metadata read and create, against a
+ * per-endpoint statement budget. The batch metadata read queries every shard, so its budget is
+ * given per shard. With {@code shortener.sql-stats.debug-headers} the counts are
+ * also returned as {@code X-Sql-Statements} and {@code X-Sql-Time-Us}.
+ */
+@Slf4j
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 3)
+@ConditionalOnProperty(name = "shortener.sql-stats.enabled", havingValue = "true")
+public class SqlStatsFilter implements Filter {
+
+    static final String STATEMENTS_HEADER = "X-Sql-Statements";
+    static final String TIME_HEADER = "X-Sql-Time-Us";
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${shortener.sql-stats.debug-headers:false}")
+    private boolean debugHeaders;
+
+    @Value("${shortener.sql-stats.budget.redirect:1}")
+    private int redirectBudget;
+
+    @Value("${shortener.sql-stats.budget.metadata:1}")
+    private int metadataBudget;
+
+    @Value("${shortener.sql-stats.budget.create:4}")
+    private int createBudget;
+
+    @Value("${shortener.sql-stats.budget.metadata-batch-per-shard:2}")
+    private int metadataBatchBudgetPerShard;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    private final Map<AdaptiveConcurrencyLimiter.Priority, EndpointMeters> meters =
+            new EnumMap<>(AdaptiveConcurrencyLimiter.Priority.class);
+
+    private EndpointMeters metadataBatchMeters;
+
+    @PostConstruct
+    void registerMeters() {
+        meters.put(AdaptiveConcurrencyLimiter.Priority.REDIRECT, new EndpointMeters("redirect", redirectBudget));
+        meters.put(AdaptiveConcurrencyLimiter.Priority.METADATA, new EndpointMeters("metadata", metadataBudget));
+        meters.put(AdaptiveConcurrencyLimiter.Priority.CREATE, new EndpointMeters("create", createBudget));
+        metadataBatchMeters = new EndpointMeters("metadata_batch",
+                metadataBatchBudgetPerShard * shardRouter.shardNames().size());
+    }
+
+    @Override
+    public void doFilter(ServletRequest servletRequest, ServletResponse servletResponse, FilterChain filterChain) throws IOException, ServletException {
+        HttpServletRequest httpRequest = (HttpServletRequest) servletRequest;
+
+        // same endpoint classes as the concurrency limit; export and import stream far too much to buffer
+        AdaptiveConcurrencyLimiter.Priority endpoint = ConcurrencyLimitFilter.classify(httpRequest);
+        if (endpoint == null) {
+            filterChain.doFilter(servletRequest, servletResponse);
+            return;
+        }
+
+        // headers must be set before the body commits the response, so it is buffered in debug mode;
+        // the batch endpoint streams its body after this filter returns and goes without them
+        ContentCachingResponseWrapper wrapper = debugHeaders && !isMetadataBatch(httpRequest)
+                ? new ContentCachingResponseWrapper((HttpServletResponse) servletResponse)
+                : null;
+        try (SqlStatementStats.Scope scope = SqlStatementStats.open()) {
+            filterChain.doFilter(servletRequest, wrapper != null ? wrapper : servletResponse);
+
+            // shares the metadata concurrency class, but not its budget
+            EndpointMeters endpointMeters = isMetadataBatch(httpRequest) ? metadataBatchMeters : meters.get(endpoint);
+            endpointMeters.record(scope, httpRequest.getRequestURI());
+            if (wrapper != null) {
+                wrapper.setHeader(STATEMENTS_HEADER, Integer.toString(scope.statements()));
+                wrapper.setHeader(TIME_HEADER, Long.toString(scope.nanos() / 1000));
+            }
+        } finally {
+            if (wrapper != null) {
+                wrapper.copyBodyToResponse();
+            }
+        }
+    }
+
+    private static boolean isMetadataBatch(HttpServletRequest request) {
+        return "POST".equals(request.getMethod()) && "/api/urls/metadata".equals(request.getRequestURI());
+    }
+
+    private final class EndpointMeters {
+        private final String endpoint;
+        private final int budget;
+        private final DistributionSummary statements;
+        private final Timer time;
+        private final Counter overBudget;
+
+        private EndpointMeters(String endpoint, int budget) {
+            this.endpoint = endpoint;
+            this.budget = budget;
+            this.statements = DistributionSummary.builder("shortener_sql_statements")
+                    .description("SQL statements executed per request")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            this.time = Timer.builder("shortener_sql_time")
+                    .description("Time spent executing SQL per request")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+            this.overBudget = Counter.builder("shortener_sql_budget_exceeded_total")
+                    .description("Requests that executed more statements than the endpoint budget")
+                    .tag("endpoint", endpoint)
+                    .register(meterRegistry);
+        }
+
+        private void record(SqlStatementStats.Scope scope, String path) {
+            statements.record(scope.statements());
+            time.record(scope.nanos(), TimeUnit.NANOSECONDS);
+            if (scope.statements() > budget) {
+                overBudget.increment();
+                log.warn("{} ran {} SQL statements, budget for {} is {}", path, scope.statements(), endpoint, budget);
+            }
+        }
+    }
+}
@@ -0,0 +1,120 @@
+package com.maliroso.url_shortener.jdbc;
+
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Set;
+
+/**
+ * Wraps the pool so every statement Hibernate or JdbcTemplate prepares passes through the
+ * {@link SampledSqlLogger} before reaching the driver, and every execution is counted and timed
+ * in the thread's {@link SqlStatementStats} scope.
+ */
+public class InstrumentedDataSource extends DelegatingDataSource {
+
+    // a JDBC batch is one round trip, so executeBatch counts once however many rows it carries
+    private static final Set<String> EXECUTE_METHODS = Set.of(
+            "execute", "executeQuery", "executeUpdate", "executeLargeUpdate", "executeBatch", "executeLargeBatch");
+
+    private final SampledSqlLogger sqlLogger;
+
+    private final boolean countStatements;
+
+    public InstrumentedDataSource(DataSource target, SampledSqlLogger sqlLogger) {
+        this(target, sqlLogger, false);
+    }
+
+    /**
+     * @param sqlLogger null to skip logging
+     */
+    public InstrumentedDataSource(DataSource target, SampledSqlLogger sqlLogger, boolean countStatements) {
+        super(target);
+        this.sqlLogger = sqlLogger;
+        this.countStatements = countStatements;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return wrap(super.getConnection());
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return wrap(super.getConnection(username, password));
+    }
+
+    private Connection wrap(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(
+                InstrumentedDataSource.class.getClassLoader(),
+                new Class<?>[]{Connection.class},
+                new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getTargetException();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (sqlLogger != null && (name.equals("prepareStatement") || name.equals("prepareCall"))
+                    && args != null && args.length > 0 && args[0] instanceof String sql) {
+                sqlLogger.log(sql);
+            }
+            Object result = InstrumentedDataSource.invoke(target, method, args);
+            if (countStatements && result instanceof Statement statement) {
+                Class<?> type = switch (name) {
+                    case "prepareCall" -> CallableStatement.class;
+                    case "prepareStatement" -> PreparedStatement.class;
+                    default -> Statement.class;
+                };
+                return Proxy.newProxyInstance(
+                        InstrumentedDataSource.class.getClassLoader(),
+                        new Class<?>[]{type},
+                        new StatementHandler(statement));
+            }
+            return result;
+        }
+    }
+
+    private static final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+
+        private StatementHandler(Statement target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (!EXECUTE_METHODS.contains(method.getName())) {
+                return InstrumentedDataSource.invoke(target, method, args);
+            }
+            long started = System.nanoTime();
+            try {
+                return InstrumentedDataSource.invoke(target, method, args);
+            } finally {
+                SqlStatementStats.record(System.nanoTime() - started);
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.maliroso.url_shortener.jdbc;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Logs a random sample of SQL statements. Replaces {@code spring.jpa.show-sql}, which writes every
+ * statement synchronously to stdout.
+ */
+@Slf4j
+public class SampledSqlLogger {
+
+    private final double sampleRate;
+
+    public SampledSqlLogger(double sampleRate) {
+        this.sampleRate = sampleRate;
+    }
+
+    public void log(String sql) {
+        if (sampleRate > 0 && (sampleRate >= 1 || ThreadLocalRandom.current().nextDouble() < sampleRate)) {
+            log.info("{}", sql);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package com.maliroso.url_shortener.jdbc;
+
+/**
+ * Counts the statements a thread executes through an {@link InstrumentedDataSource} and the time
+ * spent in the driver. A scope is opened per request by the SQL stats filter; tests open their own
+ * to assert a statement budget around a single call.
+ *
+ * <p>Only the opening thread is counted, so work handed to another thread (the group-commit writer,
+ * the hit-count flush) does not show up in the request that caused it.
+ */
+public final class SqlStatementStats {
+
+    private static final ThreadLocal<Scope> CURRENT = new ThreadLocal<>();
+
+    private SqlStatementStats() {
+    }
+
+    /**
+     * Starts counting on this thread. Scopes nest: statements counted by an inner scope are also
+     * counted by the enclosing one.
+     */
+    public static Scope open() {
+        Scope scope = new Scope(CURRENT.get());
+        CURRENT.set(scope);
+        return scope;
+    }
+
+    static void record(long nanos) {
+        Scope scope = CURRENT.get();
+        if (scope != null) {
+            scope.add(nanos);
+        }
+    }
+
+    public static final class Scope implements AutoCloseable {
+
+        private final Scope parent;
+
+        private int statements;
+
+        private long nanos;
+
+        private Scope(Scope parent) {
+            this.parent = parent;
+        }
+
+        private void add(long nanos) {
+            for (Scope scope = this; scope != null; scope = scope.parent) {
+                scope.statements++;
+                scope.nanos += nanos;
+            }
+        }
+
+        public int statements() {
+            return statements;
+        }
+
+        public long nanos() {
+            return nanos;
+        }
+
+        @Override
+        public void close() {
+            if (CURRENT.get() == this) {
+                if (parent == null) {
+                    CURRENT.remove();
+                } else {
+                    CURRENT.set(parent);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,33 @@
+package com.maliroso.url_shortener.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * A generated code that was already taken; the duration is the probe that found it.
+ */
+@Name("com.maliroso.url_shortener.CollisionRetry")
+@Label("Code Collision")
+@Category({"URL Shortener", "Create"})
+@Description("Generated code already in use, a new one is generated")
+@StackTrace(false)
+public class CollisionRetryEvent extends jdk.jfr.Event {
+
+    @Label("Code")
+    String code;
+
+    @Label("Attempt")
+    int attempt;
+
+    public void finish(String code, int attempt) {
+        end();
+        if (shouldCommit()) {
+            this.code = code;
+            this.attempt = attempt;
+            commit();
+        }
+    }
+}
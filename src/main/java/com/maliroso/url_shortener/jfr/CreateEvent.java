@@ -0,0 +1,42 @@
+package com.maliroso.url_shortener.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Creation of one short code, including collision probes and the insert.
+ */
+@Name("com.maliroso.url_shortener.Create")
+@Label("Create Short Code")
+@Category({"URL Shortener", "Create"})
+@Description("Short code generated and stored by UrlService")
+@StackTrace(false)
+public class CreateEvent extends jdk.jfr.Event {
+
+    @Label("Code")
+    String code;
+
+    @Label("Shard")
+    String shard;
+
+    @Label("Collisions")
+    @Description("Generated codes that were already taken before this one")
+    int collisions;
+
+    @Label("Group Commit")
+    boolean groupCommit;
+
+    public void finish(String code, String shard, int collisions, boolean groupCommit) {
+        end();
+        if (shouldCommit()) {
+            this.code = code;
+            this.shard = shard;
+            this.collisions = collisions;
+            this.groupCommit = groupCommit;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,37 @@
+package com.maliroso.url_shortener.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One batch of buffered hit counts written to a shard.
+ */
+@Name("com.maliroso.url_shortener.HitCountFlush")
+@Label("Hit Count Flush")
+@Category({"URL Shortener", "Persistence"})
+@Description("Buffered hit-count increments written by HitCountBuffer")
+@StackTrace(false)
+public class HitCountFlushEvent extends jdk.jfr.Event {
+
+    @Label("Shard")
+    String shard;
+
+    @Label("Codes")
+    int codes;
+
+    @Label("Hits")
+    long hits;
+
+    public void finish(String shard, int codes, long hits) {
+        end();
+        if (shouldCommit()) {
+            this.shard = shard;
+            this.codes = codes;
+            this.hits = hits;
+            commit();
+        }
+    }
+}
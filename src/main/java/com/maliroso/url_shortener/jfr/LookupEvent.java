@@ -0,0 +1,42 @@
+package com.maliroso.url_shortener.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * Resolution of a code on the redirect path, from the cache check to the answer.
+ */
+@Name("com.maliroso.url_shortener.Lookup")
+@Label("Code Lookup")
+@Category({"URL Shortener", "Redirect"})
+@Description("Code resolved by UrlService for a redirect")
+@StackTrace(false)
+@Threshold("1 ms")
+public class LookupEvent extends jdk.jfr.Event {
+
+    public static final String CACHE = "cache";
+    public static final String DATABASE = "database";
+    public static final String STALE = "stale";
+    public static final String PEER = "peer";
+    public static final String NONE = "none";
+
+    @Label("Code")
+    String code;
+
+    @Label("Source")
+    @Description("cache, peer (the owning node), database, stale (database unavailable) or none (not found or failed)")
+    String source;
+
+    public void finish(String code, String source) {
+        end();
+        if (shouldCommit()) {
+            this.code = code;
+            this.source = source;
+            commit();
+        }
+    }
+}
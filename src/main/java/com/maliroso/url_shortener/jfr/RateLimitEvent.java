@@ -0,0 +1,37 @@
+package com.maliroso.url_shortener.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Per-IP rate limit decision; the duration is the bucket lookup and token check.
+ */
+@Name("com.maliroso.url_shortener.RateLimit")
+@Label("Rate Limit Decision")
+@Category({"URL Shortener", "Filter"})
+@Description("Request admitted or rejected by RateLimitFilter")
+@StackTrace(false)
+public class RateLimitEvent extends jdk.jfr.Event {
+
+    @Label("Client IP")
+    String clientIp;
+
+    @Label("Path")
+    String path;
+
+    @Label("Allowed")
+    boolean allowed;
+
+    public void finish(String clientIp, String path, boolean allowed) {
+        end();
+        if (shouldCommit()) {
+            this.clientIp = clientIp;
+            this.path = path;
+            this.allowed = allowed;
+            commit();
+        }
+    }
+}
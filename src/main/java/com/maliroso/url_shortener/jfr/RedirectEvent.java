@@ -0,0 +1,36 @@
+package com.maliroso.url_shortener.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * One {@code GET /r/{code}} as handled by the controller. The nested {@link LookupEvent} on the
+ * same thread tells where the mapping came from.
+ */
+@Name("com.maliroso.url_shortener.Redirect")
+@Label("Redirect")
+@Category({"URL Shortener", "Redirect"})
+@Description("Redirect request handled by UrlController")
+@StackTrace(false)
+@Threshold("10 ms")
+public class RedirectEvent extends jdk.jfr.Event {
+
+    @Label("Code")
+    String code;
+
+    @Label("Status")
+    int status;
+
+    public void finish(String code, int status) {
+        end();
+        if (shouldCommit()) {
+            this.code = code;
+            this.status = status;
+            commit();
+        }
+    }
+}
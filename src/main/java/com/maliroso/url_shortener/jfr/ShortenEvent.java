@@ -0,0 +1,38 @@
+package com.maliroso.url_shortener.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * One {@code POST /api/urls} as handled by the controller, dedup lookup included.
+ */
+@Name("com.maliroso.url_shortener.Shorten")
+@Label("Shorten Request")
+@Category({"URL Shortener", "Create"})
+@Description("Create request handled by UrlController")
+@StackTrace(false)
+public class ShortenEvent extends jdk.jfr.Event {
+
+    @Label("Code")
+    String code;
+
+    @Label("Deduplicated")
+    @Description("An active mapping for the long url already existed")
+    boolean deduplicated;
+
+    @Label("Status")
+    int status;
+
+    public void finish(String code, boolean deduplicated, int status) {
+        end();
+        if (shouldCommit()) {
+            this.code = code;
+            this.deduplicated = deduplicated;
+            this.status = status;
+            commit();
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.maliroso.url_shortener.model;
+
+import com.maliroso.url_shortener.utils.CompactUrlCodec;
+
+import java.time.Instant;
+import java.util.Objects;
+
+/**
+ * Immutable, detached copy of the fields a redirect needs, safe to share between request threads.
+ * The long url is held in {@link CompactUrlCodec} form together with the codec that wrote it, so
+ * the dictionary can be replaced while older entries are still cached.
+ */
+public final class CachedUrlMapping {
+
+    private final String code;
+
+    private final byte[] encodedLongUrl;
+
+    private final CompactUrlCodec codec;
+
+    private final Instant expiresAt;
+
+    public CachedUrlMapping(String code, String longUrl, Instant expiresAt) {
+        this(code, longUrl, expiresAt, CompactUrlCodec.IDENTITY);
+    }
+
+    public CachedUrlMapping(String code, String longUrl, Instant expiresAt, CompactUrlCodec codec) {
+        this.code = code;
+        this.encodedLongUrl = codec.encode(longUrl);
+        this.codec = codec;
+        this.expiresAt = expiresAt;
+    }
+
+    public static CachedUrlMapping from(UrlMapping urlMapping, CompactUrlCodec codec) {
+        return new CachedUrlMapping(urlMapping.getCode(), urlMapping.getLongUrl(), urlMapping.getExpiresAt(), codec);
+    }
+
+    public String code() {
+        return code;
+    }
+
+    /**
+     * Decodes the long url; allocates only the returned string for ASCII urls.
+     */
+    public String longUrl() {
+        return codec.decode(encodedLongUrl);
+    }
+
+    public Instant expiresAt() {
+        return expiresAt;
+    }
+
+    /**
+     * Bytes held for the long url, for footprint accounting.
+     */
+    public int encodedSize() {
+        return encodedLongUrl.length;
+    }
+
+    public boolean isActiveAt(Instant instant) {
+        return expiresAt == null || ! expiresAt.isBefore(instant);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof CachedUrlMapping other)) {
+            return false;
+        }
+        return code.equals(other.code) && longUrl().equals(other.longUrl()) && Objects.equals(expiresAt, other.expiresAt);
+    }
+
+    @Override
+    public int hashCode() {
+        // the url is left out: equal urls may be encoded differently by two dictionaries
+        return Objects.hash(code, expiresAt);
+    }
+
+    @Override
+    public String toString() {
+        return "CachedUrlMapping[code=" + code + ", longUrl=" + longUrl() + ", expiresAt=" + expiresAt + "]";
+    }
+}
@@ -0,0 +1,28 @@
+package com.maliroso.url_shortener.model;
+
+import jakarta.persistence.*;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.Instant;
+
+/**
+ * Long-url dedup index for sharded storage. Lives on the shard owning the digest, which is
+ * usually not the shard owning the code it points to.
+ */
+@Entity
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Table(name = "url_digests")
+public class UrlDigest {
+    @Id
+    @Column(length = 64)
+    private String digest;
+
+    @Column(nullable = false)
+    private String code;
+
+    private Instant expiresAt;
+}
@@ -1,10 +1,13 @@
 package com.maliroso.url_shortener.model;
 
+import com.maliroso.url_shortener.sharding.ShardSequenceGenerator;
 import jakarta.persistence.*;
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 import java.time.Instant;
 
@@ -13,11 +16,19 @@ import java.time.Instant;
 @AllArgsConstructor
 @NoArgsConstructor
 @Table(name = "url_mappings", indexes = {
-        @Index(name = "idx_code", columnList = "code")
+        @Index(name = "idx_code", columnList = "code"),
+        // expired rows are reclaimed oldest first
+        @Index(name = "idx_expires_at", columnList = "expiresAt")
 })
 public class UrlMapping {
+    // each shard's rows take ids from that shard's own sequence, see ShardSequenceGenerator
     @Id
-    @GeneratedValue(strategy = GenerationType.AUTO)
+    @GeneratedValue(generator = "url_mappings_seq")
+    @GenericGenerator(name = "url_mappings_seq", type = ShardSequenceGenerator.class, parameters = {
+            @Parameter(name = "sequence_name", value = "url_mappings_seq"),
+            @Parameter(name = "increment_size", value = "50"),
+            @Parameter(name = "optimizer", value = "pooled")
+    })
     private Long id;
 
     @Column(nullable = false, unique = true)
@@ -0,0 +1,31 @@
+package com.maliroso.url_shortener.repository;
+
+import com.maliroso.url_shortener.model.UrlDigest;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Instant;
+import java.util.Optional;
+
+@Repository
+public interface UrlDigestRepository extends JpaRepository<UrlDigest, String> {
+
+    Optional<UrlDigest> findByDigestAndExpiresAtGreaterThanEqual(String digest, Instant currentDateTime);
+
+    /**
+     * {@code save} on an entity with an assigned id merges, which selects the row before inserting
+     * it. This is the single statement; an expired digest of the same url is pointed at the new code.
+     */
+    @Modifying
+    @Transactional
+    @Query(nativeQuery = true, value = """
+            insert into url_digests (digest, code, expires_at)
+            values (:digest, :code, :expiresAt)
+            on conflict (digest) do update set code = excluded.code, expires_at = excluded.expires_at
+            """)
+    int upsert(@Param("digest") String digest, @Param("code") String code, @Param("expiresAt") Instant expiresAt);
+}
@@ -1,16 +1,78 @@
 package com.maliroso.url_shortener.repository;
 
+import com.maliroso.url_shortener.dto.response.UrlMappingExportRow;
 import com.maliroso.url_shortener.model.UrlMapping;
+import jakarta.persistence.QueryHint;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
 
 import java.time.Instant;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 @Repository
 public interface UrlMappingRepository extends JpaRepository<UrlMapping, Long> {
 
+    /**
+     * Timeout of the lookups on the redirect path, in milliseconds. Bulk queries such as the export
+     * pages and import probes are not bound by it.
+     */
+    String REDIRECT_QUERY_TIMEOUT_MS = "500";
+
+    @QueryHints(@QueryHint(name = "jakarta.persistence.query.timeout", value = REDIRECT_QUERY_TIMEOUT_MS))
     Optional<UrlMapping> findByCodeAndExpiresAtGreaterThanEqual(String code, Instant currentDateTime);
 
     Optional<UrlMapping> findByLongUrlAndExpiresAtGreaterThanEqual(String longUrl, Instant currentDateTime);
+
+    /**
+     * Whether any row holds the code, expired or not; the unique constraint does not care either.
+     */
+    @QueryHints(@QueryHint(name = "jakarta.persistence.query.timeout", value = REDIRECT_QUERY_TIMEOUT_MS))
+    boolean existsByCode(String code);
+
+    @Query("select m.code from UrlMapping m where m.code in :codes")
+    List<String> findExistingCodes(@Param("codes") Collection<String> codes);
+
+    /**
+     * Active rows for a batch of codes in one statement, in a read-only transaction and without
+     * managed entities.
+     */
+    @Transactional(readOnly = true)
+    @Query("""
+            select new com.maliroso.url_shortener.dto.response.UrlMappingExportRow(
+                m.id, m.code, m.longUrl, m.hitCount, m.createdAt, m.expiresAt)
+            from UrlMapping m
+            where m.code in :codes and m.expiresAt >= :instant
+            """)
+    List<UrlMappingExportRow> findActiveRows(@Param("codes") Collection<String> codes, @Param("instant") Instant instant);
+
+    /**
+     * One keyset page of the export, ordered by id. Runs in a read-only transaction with a fetch
+     * size so the Postgres driver streams the page through a server-side cursor.
+     */
+    @Transactional(readOnly = true)
+    @QueryHints(@QueryHint(name = "org.hibernate.fetchSize", value = "250"))
+    @Query("""
+            select new com.maliroso.url_shortener.dto.response.UrlMappingExportRow(
+                m.id, m.code, m.longUrl, m.hitCount, m.createdAt, m.expiresAt)
+            from UrlMapping m
+            where m.id > :afterId
+              and m.createdAt >= :createdFrom and m.createdAt < :createdTo
+              and m.expiresAt >= :expiresFrom and m.expiresAt < :expiresTo
+            order by m.id
+            """)
+    List<UrlMappingExportRow> findExportPage(
+            @Param("afterId") long afterId,
+            @Param("createdFrom") Instant createdFrom,
+            @Param("createdTo") Instant createdTo,
+            @Param("expiresFrom") Instant expiresFrom,
+            @Param("expiresTo") Instant expiresTo,
+            Pageable pageable
+    );
 }
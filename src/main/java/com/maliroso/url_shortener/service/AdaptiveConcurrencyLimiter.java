@@ -0,0 +1,155 @@
+package com.maliroso.url_shortener.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Latency-driven limit on concurrent requests, shared by all priority classes. The limit follows
+ * the gradient between the long-term and the recent average response time: it grows while recent
+ * latency stays close to the long-term level and shrinks once requests start queueing. Metadata
+ * reads and creates are capped at their share of the limit ({@code metadata-share} and
+ * {@code create-share}), so they are turned away first. Redirects may use the whole limit,
+ * including the reserve the other classes cannot reach.
+ */
+@Service
+public class AdaptiveConcurrencyLimiter {
+
+    public enum Priority {
+        REDIRECT, METADATA, CREATE
+    }
+
+    // samples averaged into the recent and long-term response time
+    private static final double SHORT_WINDOW = 10;
+    private static final double LONG_WINDOW = 600;
+
+    // recent latency may exceed the long-term level by this factor before the limit shrinks
+    private static final double TOLERANCE = 1.5;
+
+    private static final double SMOOTHING = 0.2;
+
+    private final AtomicInteger inflight = new AtomicInteger();
+
+    private final Map<Priority, Double> shares = new EnumMap<>(Priority.class);
+
+    private final Map<Priority, Counter> rejected = new EnumMap<>(Priority.class);
+
+    private final int minLimit;
+
+    private final int maxLimit;
+
+    private volatile int limit;
+
+    // guarded by this
+    private double estimatedLimit;
+    private double shortRttNanos;
+    private double longRttNanos;
+    private long samples;
+
+    public AdaptiveConcurrencyLimiter(
+            @Value("${shortener.concurrency.initial-limit:20}") int initialLimit,
+            @Value("${shortener.concurrency.min-limit:4}") int minLimit,
+            @Value("${shortener.concurrency.max-limit:200}") int maxLimit,
+            @Value("${shortener.concurrency.metadata-share:0.8}") double metadataShare,
+            @Value("${shortener.concurrency.create-share:0.6}") double createShare,
+            MeterRegistry meterRegistry
+    ){
+        this.minLimit = minLimit;
+        this.maxLimit = maxLimit;
+        this.estimatedLimit = Math.clamp(initialLimit, minLimit, maxLimit);
+        this.limit = (int) estimatedLimit;
+        shares.put(Priority.REDIRECT, 1.0);
+        shares.put(Priority.METADATA, metadataShare);
+        shares.put(Priority.CREATE, createShare);
+
+        for(Priority priority : Priority.values()){
+            rejected.put(priority, Counter.builder("shortener_concurrency_rejected_total")
+                    .description("Requests shed by the adaptive concurrency limiter")
+                    .tag("priority", priority.name().toLowerCase())
+                    .register(meterRegistry));
+        }
+        Gauge.builder("shortener_concurrency_limit", this, AdaptiveConcurrencyLimiter::limit)
+                .description("Current adaptive concurrency limit")
+                .register(meterRegistry);
+        Gauge.builder("shortener_concurrency_inflight", inflight, AtomicInteger::get)
+                .description("Requests currently holding a concurrency slot")
+                .register(meterRegistry);
+    }
+
+    /**
+     * A slot held by one request. Must be released exactly once.
+     */
+    public final class Token {
+        private final long startedAt = System.nanoTime();
+        private final int inflightAtStart;
+
+        private Token(int inflightAtStart){
+            this.inflightAtStart = inflightAtStart;
+        }
+
+        /**
+         * Frees the slot; the response time only feeds the limit if {@code sample} is set, so fast
+         * failures do not make the service look healthier than it is.
+         */
+        public void release(boolean sample){
+            inflight.decrementAndGet();
+            if(sample){
+                onSample(System.nanoTime() - startedAt, inflightAtStart);
+            }
+        }
+    }
+
+    public Optional<Token> tryAcquire(Priority priority){
+        int allowed = allowed(priority);
+        while(true){
+            int current = inflight.get();
+            if(current >= allowed){
+                rejected.get(priority).increment();
+                return Optional.empty();
+            }
+            if(inflight.compareAndSet(current, current + 1)){
+                return Optional.of(new Token(current + 1));
+            }
+        }
+    }
+
+    public int limit(){
+        return limit;
+    }
+
+    int allowed(Priority priority){
+        return Math.max(1, (int) (limit * shares.get(priority)));
+    }
+
+    synchronized void onSample(long rttNanos, int inflightAtStart){
+        if(samples++ == 0){
+            shortRttNanos = rttNanos;
+            longRttNanos = rttNanos;
+            return;
+        }
+        shortRttNanos += (rttNanos - shortRttNanos) / SHORT_WINDOW;
+        longRttNanos += (rttNanos - longRttNanos) / LONG_WINDOW;
+        // after a long stretch of high latency, let the baseline come back down quickly
+        if(longRttNanos > 2 * shortRttNanos){
+            longRttNanos = (longRttNanos + shortRttNanos) / 2;
+        }
+
+        double gradient = Math.clamp(TOLERANCE * longRttNanos / shortRttNanos, 0.5, 1.0);
+        // a limit that is not being used says nothing about whether more would be fine
+        if(gradient == 1.0 && inflightAtStart < estimatedLimit / 2){
+            return;
+        }
+
+        double queueAllowance = Math.sqrt(estimatedLimit);
+        double target = estimatedLimit * gradient + queueAllowance;
+        estimatedLimit = Math.clamp(estimatedLimit * (1 - SMOOTHING) + target * SMOOTHING, minLimit, maxLimit);
+        limit = (int) estimatedLimit;
+    }
+}
@@ -0,0 +1,257 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.utils.UrlHashUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Keeps the keyspace sparse: mappings expired for longer than the grace period are deleted in
+ * batches and their codes go into an in-memory pool that creates draw from before generating a
+ * random code, so a recycled code needs no existence probe.
+ *
+ * <p>Also publishes keyspace occupancy and the observed collision rate of random codes; when
+ * either climbs towards a few percent the code length should grow.
+ */
+@Service
+public class CodeRecyclingService {
+
+    // oldest first, matching idx_expires_at
+    private static final String SELECT_EXPIRED_SQL = "select id, code from url_mappings where expires_at < ? order by expires_at limit ?";
+
+    // re-checks the expiry, so a row extended since the select is left alone
+    private static final String DELETE_SQL = "delete from url_mappings where id = ? and expires_at < ?";
+
+    private static final String DELETE_DIGESTS_SQL = "delete from url_digests where digest in (select digest from url_digests where expires_at < ? limit ?)";
+
+    private static final String COUNT_SQL = "select count(*) from url_mappings";
+
+    // weight of the latest probe in the collision rate, roughly the last thousand creates
+    private static final double COLLISION_RATE_WEIGHT = 0.001;
+
+    private final boolean enabled;
+
+    private final Duration gracePeriod;
+
+    private final int batchSize;
+
+    private final int maxPerRun;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionOperations transactionOperations;
+
+    private final ShardRouter shardRouter;
+
+    private final BlockingQueue<String> pool;
+
+    private final long keyspaceSize = UrlHashUtil.keyspaceSize();
+
+    // -1 until the first count has run
+    private volatile long storedCodes = -1;
+
+    private double collisionRate;
+
+    private final Counter reclaimedCounter;
+
+    private final Counter randomCounter;
+
+    private final Counter recycledCounter;
+
+    private final Counter collisionCounter;
+
+    public CodeRecyclingService(
+            @Value("${shortener.code-recycling.enabled:false}") boolean enabled,
+            @Value("${shortener.code-recycling.grace-period-ms:2592000000}") long gracePeriodMs,
+            @Value("${shortener.code-recycling.batch-size:1000}") int batchSize,
+            @Value("${shortener.code-recycling.max-per-run:100000}") int maxPerRun,
+            @Value("${shortener.code-recycling.pool-capacity:100000}") int poolCapacity,
+            JdbcTemplate jdbcTemplate,
+            TransactionOperations transactionOperations,
+            ShardRouter shardRouter,
+            MeterRegistry meterRegistry
+    ){
+        this.enabled = enabled;
+        this.gracePeriod = Duration.ofMillis(gracePeriodMs);
+        this.batchSize = batchSize;
+        this.maxPerRun = maxPerRun;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.shardRouter = shardRouter;
+        this.pool = new ArrayBlockingQueue<>(poolCapacity);
+
+        this.reclaimedCounter = Counter.builder("shortener_codes_reclaimed_total")
+                .description("Expired mappings deleted and their codes returned to the pool")
+                .register(meterRegistry);
+        this.randomCounter = Counter.builder("shortener_code_generated_total")
+                .description("Codes handed to creates, by where they came from")
+                .tag("source", "random")
+                .register(meterRegistry);
+        this.recycledCounter = Counter.builder("shortener_code_generated_total")
+                .description("Codes handed to creates, by where they came from")
+                .tag("source", "recycled")
+                .register(meterRegistry);
+        this.collisionCounter = Counter.builder("shortener_code_collisions_total")
+                .description("Random codes that were already taken")
+                .register(meterRegistry);
+        Gauge.builder("shortener_code_pool_size", pool, BlockingQueue::size)
+                .description("Reclaimed codes waiting to be reused")
+                .register(meterRegistry);
+        Gauge.builder("shortener_keyspace_size", this, service -> service.keyspaceSize)
+                .description("Distinct codes of the generated length")
+                .register(meterRegistry);
+        Gauge.builder("shortener_keyspace_codes", this, service -> service.storedCodes)
+                .description("Mappings stored across all shards, expired ones included")
+                .register(meterRegistry);
+        Gauge.builder("shortener_keyspace_occupancy", this, CodeRecyclingService::occupancy)
+                .description("Share of the keyspace held by stored mappings; the chance a random code is taken")
+                .register(meterRegistry);
+        Gauge.builder("shortener_code_collision_probability", this, CodeRecyclingService::collisionRate)
+                .description("Observed share of random codes that collided, over recent creates")
+                .register(meterRegistry);
+    }
+
+    /**
+     * A reclaimed code, if the pool has one. It was deleted by this node and has not been handed
+     * out since, so it is free unless another node generated it at random in the meantime.
+     */
+    public Optional<String> poll(){
+        String code = pool.poll();
+        if(code != null){
+            recycledCounter.increment();
+        }
+        return Optional.ofNullable(code);
+    }
+
+    /**
+     * Called once for every random code checked against the database.
+     */
+    public void recordProbe(boolean collided){
+        if(collided){
+            collisionCounter.increment();
+        } else {
+            randomCounter.increment();
+        }
+        synchronized (this) {
+            collisionRate += COLLISION_RATE_WEIGHT * ((collided ? 1.0 : 0.0) - collisionRate);
+        }
+    }
+
+    double occupancy(){
+        return storedCodes < 0 ? Double.NaN : (double) storedCodes / keyspaceSize;
+    }
+
+    synchronized double collisionRate(){
+        return collisionRate;
+    }
+
+    int poolSize(){
+        return pool.size();
+    }
+
+    @Scheduled(fixedDelayString = "${shortener.code-recycling.interval-ms:3600000}",
+            initialDelayString = "${shortener.code-recycling.initial-delay-ms:60000}")
+    public void run(){
+        if(enabled){
+            reclaim(Instant.now());
+        }
+        countCodes();
+    }
+
+    /**
+     * Deletes mappings and digest rows that expired before {@code instant} minus the grace period,
+     * at most {@code max-per-run} of each per shard. Returns the number of mappings deleted.
+     */
+    public int reclaim(Instant instant){
+        Timestamp cutoff = Timestamp.from(instant.minus(gracePeriod));
+        int reclaimed = 0;
+        for(String shard : shardRouter.shardNames()){
+            reclaimed += reclaimMappings(shard, cutoff);
+            deleteDigests(shard, cutoff);
+        }
+        reclaimedCounter.increment(reclaimed);
+        return reclaimed;
+    }
+
+    private int reclaimMappings(String shard, Timestamp cutoff){
+        int reclaimed = 0;
+        while(reclaimed < maxPerRun){
+            List<ExpiredRow> rows = shardRouter.onShard(shard, () -> jdbcTemplate.query(SELECT_EXPIRED_SQL,
+                    (rs, rowNum) -> new ExpiredRow(rs.getLong("id"), rs.getString("code")),
+                    cutoff, Math.min(batchSize, maxPerRun - reclaimed)));
+            if(rows.isEmpty()){
+                break;
+            }
+
+            List<Object[]> args = new ArrayList<>(rows.size());
+            for(ExpiredRow row : rows){
+                args.add(new Object[]{row.id(), cutoff});
+            }
+            int[] counts = shardRouter.onShard(shard,
+                    () -> transactionOperations.execute(status -> jdbcTemplate.batchUpdate(DELETE_SQL, args)));
+
+            int deleted = 0;
+            for(int i = 0; i < rows.size(); i++){
+                // drivers may report SUCCESS_NO_INFO (-2); only a confirmed delete frees the code
+                if(counts != null && counts[i] == 1){
+                    deleted++;
+                    offer(shard, rows.get(i).code());
+                }
+            }
+            reclaimed += deleted;
+            if(deleted == 0 || rows.size() < batchSize){
+                break;
+            }
+        }
+        return reclaimed;
+    }
+
+    private void offer(String shard, String code){
+        // a code read from a shard it no longer belongs to may have a copy on its new owner
+        if(! shardRouter.shardForCode(code).equals(shard) || ! UrlHashUtil.isGeneratedCode(code)){
+            return;
+        }
+        // a full pool drops the code; it is still free for random generation
+        pool.offer(code);
+    }
+
+    private void deleteDigests(String shard, Timestamp cutoff){
+        int deleted = 0;
+        while(deleted < maxPerRun){
+            int limit = Math.min(batchSize, maxPerRun - deleted);
+            Integer count = shardRouter.onShard(shard,
+                    () -> transactionOperations.execute(status -> jdbcTemplate.update(DELETE_DIGESTS_SQL, cutoff, limit)));
+            if(count == null || count < limit){
+                break;
+            }
+            deleted += count;
+        }
+    }
+
+    private void countCodes(){
+        long total = 0;
+        for(String shard : shardRouter.shardNames()){
+            Long count = shardRouter.onShard(shard, () -> jdbcTemplate.queryForObject(COUNT_SQL, Long.class));
+            total += count == null ? 0 : count;
+        }
+        storedCodes = total;
+    }
+
+    record ExpiredRow(long id, String code) {
+    }
+}
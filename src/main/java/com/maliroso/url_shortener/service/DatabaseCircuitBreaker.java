@@ -0,0 +1,158 @@
+package com.maliroso.url_shortener.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * One circuit breaker per shard around repository calls. After {@code failure-threshold}
+ * consecutive database failures (timeouts, no connection) the breaker opens and calls fail fast
+ * for {@code open-duration-ms}; then a single probe is let through, which closes the breaker on
+ * success or reopens it on failure. Constraint violations and other errors caused by the data
+ * rather than by the database's health pass through untouched.
+ */
+@Service
+public class DatabaseCircuitBreaker {
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final Map<String, Breaker> breakers = new ConcurrentHashMap<>();
+
+    private final int failureThreshold;
+
+    private final long openDurationNanos;
+
+    private final LongSupplier nanoClock;
+
+    private final MeterRegistry meterRegistry;
+
+    @Autowired
+    public DatabaseCircuitBreaker(
+            @Value("${shortener.db-breaker.failure-threshold:5}") int failureThreshold,
+            @Value("${shortener.db-breaker.open-duration-ms:5000}") long openDurationMs,
+            MeterRegistry meterRegistry
+    ){
+        this(failureThreshold, openDurationMs, meterRegistry, System::nanoTime);
+    }
+
+    DatabaseCircuitBreaker(int failureThreshold, long openDurationMs, MeterRegistry meterRegistry, LongSupplier nanoClock){
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = TimeUnit.MILLISECONDS.toNanos(openDurationMs);
+        this.meterRegistry = meterRegistry;
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Runs the call unless the shard's breaker is open. Database failures are rethrown as
+     * {@link DatabaseUnavailableException}, as is the refusal to call while open.
+     */
+    public <T> T call(String shard, Supplier<T> action){
+        Breaker breaker = breakers.computeIfAbsent(shard, Breaker::new);
+        if(! breaker.tryAcquire()){
+            breaker.rejected.increment();
+            throw new DatabaseUnavailableException("Circuit breaker open for shard " + shard);
+        }
+
+        T result;
+        try {
+            result = action.get();
+        } catch (DataIntegrityViolationException e) {
+            breaker.onSuccess();
+            throw e;
+        } catch (DataAccessException | TransactionException e) {
+            breaker.onFailure();
+            throw new DatabaseUnavailableException("Database call failed on shard " + shard, e);
+        } catch (RuntimeException | Error e) {
+            // not a health signal, but a half-open probe must still be released
+            breaker.onSuccess();
+            throw e;
+        }
+        breaker.onSuccess();
+        return result;
+    }
+
+    public State state(String shard){
+        Breaker breaker = breakers.get(shard);
+        return breaker == null ? State.CLOSED : breaker.state;
+    }
+
+    private final class Breaker {
+
+        private final Counter rejected;
+
+        private final String shard;
+
+        private volatile State state = State.CLOSED;
+
+        private int consecutiveFailures;
+
+        private long openedAt;
+
+        private boolean probing;
+
+        private Breaker(String shard){
+            this.shard = shard;
+            this.rejected = Counter.builder("shortener_db_breaker_rejected_total")
+                    .description("Repository calls refused because the shard's circuit breaker was open")
+                    .tag("shard", shard)
+                    .register(meterRegistry);
+            Gauge.builder("shortener_db_breaker_state", this, b -> b.state.ordinal())
+                    .description("Circuit breaker state per shard: 0 closed, 1 open, 2 half-open")
+                    .tag("shard", shard)
+                    .register(meterRegistry);
+        }
+
+        private synchronized boolean tryAcquire(){
+            if(state == State.OPEN){
+                if(nanoClock.getAsLong() - openedAt < openDurationNanos){
+                    return false;
+                }
+                transition(State.HALF_OPEN);
+            }
+            if(state == State.HALF_OPEN){
+                if(probing){
+                    return false;
+                }
+                probing = true;
+            }
+            return true;
+        }
+
+        private synchronized void onSuccess(){
+            consecutiveFailures = 0;
+            probing = false;
+            if(state != State.CLOSED){
+                transition(State.CLOSED);
+            }
+        }
+
+        private synchronized void onFailure(){
+            probing = false;
+            consecutiveFailures++;
+            if(state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)){
+                openedAt = nanoClock.getAsLong();
+                transition(State.OPEN);
+            }
+        }
+
+        private void transition(State next){
+            state = next;
+            meterRegistry.counter("shortener_db_breaker_transitions_total", "shard", shard, "to", next.name().toLowerCase())
+                    .increment();
+        }
+    }
+}
@@ -0,0 +1,16 @@
+package com.maliroso.url_shortener.service;
+
+/**
+ * A repository call failed because the database is slow or unreachable, or was not attempted
+ * because the shard's circuit breaker is open.
+ */
+public class DatabaseUnavailableException extends RuntimeException {
+
+    public DatabaseUnavailableException(String message){
+        super(message);
+    }
+
+    public DatabaseUnavailableException(String message, Throwable cause){
+        super(message, cause);
+    }
+}
@@ -0,0 +1,145 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.dto.request.RecordFormat;
+import com.maliroso.url_shortener.dto.response.UrlMappingExportRow;
+import com.maliroso.url_shortener.repository.UrlMappingRepository;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.utils.ExportCursor;
+import com.maliroso.url_shortener.utils.RecordFormatUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+
+/**
+ * Streams url mappings page by page with keyset pagination on the id. Only one page of
+ * projections is held at a time, so memory stays flat regardless of table size. With several
+ * shards they are read one after another, each in id order.
+ */
+@Service
+public class ExportService {
+
+    // upper bound used when no window end is given; well past any realistic expiry
+    private static final Instant FAR_FUTURE = Instant.parse("9999-12-31T23:59:59Z");
+
+    private static final String CSV_HEADER = "cursor,id,code,long_url,hit_count,created_at,expires_at\n";
+
+    private final UrlMappingRepository urlMappingRepository;
+
+    private final ShardRouter shardRouter;
+
+    private final int pageSize;
+
+    public ExportService(
+            UrlMappingRepository urlMappingRepository,
+            ShardRouter shardRouter,
+            @Value("${shortener.export.page-size:1000}") int pageSize
+    ){
+        this.urlMappingRepository = urlMappingRepository;
+        this.shardRouter = shardRouter;
+        this.pageSize = pageSize;
+    }
+
+    public record Filter(Instant createdFrom, Instant createdTo, Instant expiresFrom, Instant expiresTo) {
+    }
+
+    /**
+     * Writes every mapping matching the filter after the given cursor and returns the number of rows written.
+     */
+    public long export(RecordFormat format, Filter filter, String cursor, OutputStream outputStream) throws IOException {
+        List<String> shards = shardRouter.shardNames();
+        ExportCursor.Position start = cursor == null || cursor.isBlank()
+                ? new ExportCursor.Position(0, 0L)
+                : ExportCursor.decode(cursor);
+        if(start.shard() >= shards.size()){
+            throw new IllegalArgumentException("Invalid export cursor");
+        }
+
+        Writer writer = new OutputStreamWriter(outputStream, StandardCharsets.UTF_8);
+        StringBuilder line = new StringBuilder(256);
+        long written = 0;
+
+        if(format == RecordFormat.CSV){
+            writer.write(CSV_HEADER);
+        }
+
+        for(int shard = start.shard(); shard < shards.size(); shard++){
+            long afterId = shard == start.shard() ? start.lastId() : 0L;
+            while(true){
+                long after = afterId;
+                List<UrlMappingExportRow> page = shardRouter.onShard(shards.get(shard), () -> urlMappingRepository.findExportPage(
+                        after,
+                        orDefault(filter.createdFrom(), Instant.EPOCH),
+                        orDefault(filter.createdTo(), FAR_FUTURE),
+                        orDefault(filter.expiresFrom(), Instant.EPOCH),
+                        orDefault(filter.expiresTo(), FAR_FUTURE),
+                        PageRequest.of(0, pageSize)
+                ));
+
+                for(UrlMappingExportRow row : page){
+                    String rowCursor = ExportCursor.encode(shard, row.id());
+                    line.setLength(0);
+                    if(format == RecordFormat.CSV){
+                        appendCsv(line, rowCursor, row);
+                    } else {
+                        appendNdjson(line, rowCursor, row);
+                    }
+                    writer.append(line);
+                    afterId = row.id();
+                    written++;
+                }
+                // hand each page to the client before fetching the next one
+                writer.flush();
+
+                if(page.size() < pageSize){
+                    break;
+                }
+            }
+        }
+        return written;
+    }
+
+    private static void appendNdjson(StringBuilder sb, String cursor, UrlMappingExportRow row){
+        sb.append("{\"cursor\":");
+        RecordFormatUtil.appendJsonString(sb, cursor);
+        sb.append(",\"id\":").append(row.id());
+        sb.append(",\"code\":");
+        RecordFormatUtil.appendJsonString(sb, row.code());
+        sb.append(",\"longUrl\":");
+        RecordFormatUtil.appendJsonString(sb, row.longUrl());
+        sb.append(",\"hitCount\":").append(row.hitCount());
+        sb.append(",\"createdAt\":");
+        RecordFormatUtil.appendJsonString(sb, toText(row.createdAt()));
+        sb.append(",\"expiresAt\":");
+        RecordFormatUtil.appendJsonString(sb, toText(row.expiresAt()));
+        sb.append("}\n");
+    }
+
+    private static void appendCsv(StringBuilder sb, String cursor, UrlMappingExportRow row){
+        sb.append(cursor).append(',');
+        sb.append(row.id()).append(',');
+        RecordFormatUtil.appendCsvField(sb, row.code());
+        sb.append(',');
+        RecordFormatUtil.appendCsvField(sb, row.longUrl());
+        sb.append(',').append(row.hitCount()).append(',');
+        RecordFormatUtil.appendCsvField(sb, toText(row.createdAt()));
+        sb.append(',');
+        RecordFormatUtil.appendCsvField(sb, toText(row.expiresAt()));
+        sb.append('\n');
+    }
+
+    private static String toText(Instant instant){
+        return instant == null ? null : instant.toString();
+    }
+
+    private static Instant orDefault(Instant value, Instant fallback){
+        return value == null ? fallback : value;
+    }
+}
@@ -0,0 +1,309 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.model.UrlMapping;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.utils.UrlHashUtil;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Group commit for creates. Request threads queue their new mapping and wait; a single writer
+ * thread collects whatever arrives within the flush window (or until the batch is full) and
+ * writes it as one multi-row insert per shard in one transaction, so N concurrent creates cost
+ * one commit instead of N. A caller is released only after the transaction holding its row
+ * has committed.
+ */
+@Slf4j
+@Service
+public class GroupCommitWriter {
+
+    private static final String INSERT_PREFIX = "insert into url_mappings (id, code, long_url, hit_count, created_at, expires_at) values ";
+
+    private static final String INSERT_ROW = "(nextval('url_mappings_seq'), ?, ?, 0, ?, ?)";
+
+    // codes taken by a concurrent create come back missing and the caller picks a new one
+    private static final String INSERT_SUFFIX = " on conflict (code) do nothing returning id, code";
+
+    // same upsert as UrlDigestRepository: a digest left by an expired mapping moves to the new code
+    private static final String INSERT_DIGEST_SQL = """
+            insert into url_digests (digest, code, expires_at)
+            values (?, ?, ?)
+            on conflict (digest) do update set code = excluded.code, expires_at = excluded.expires_at
+            """;
+
+    private record Pending(UrlMapping mapping, CompletableFuture<Optional<UrlMapping>> result, AtomicBoolean claimed) {
+
+        private Pending(UrlMapping mapping) {
+            this(mapping, new CompletableFuture<>(), new AtomicBoolean());
+        }
+
+        /**
+         * Whoever claims the entry first decides its fate: the writer stores it, or the caller that
+         * gave up waiting abandons it so the writer never does.
+         */
+        private boolean claim() {
+            return claimed.compareAndSet(false, true);
+        }
+    }
+
+    private final BlockingQueue<Pending> queue = new LinkedBlockingQueue<>();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionOperations transactionOperations;
+
+    private final ShardRouter shardRouter;
+
+    private final boolean enabled;
+
+    private final long windowNanos;
+
+    private final int maxBatch;
+
+    private final long awaitTimeoutMs;
+
+    private final Timer flushTimer;
+
+    private final DistributionSummary batchSizes;
+
+    private volatile boolean running;
+
+    private Thread thread;
+
+    public GroupCommitWriter(
+            JdbcTemplate jdbcTemplate,
+            TransactionOperations transactionOperations,
+            ShardRouter shardRouter,
+            @Value("${shortener.group-commit.enabled:true}") boolean enabled,
+            @Value("${shortener.group-commit.window-ms:2}") long windowMs,
+            @Value("${shortener.group-commit.max-batch:256}") int maxBatch,
+            @Value("${shortener.group-commit.await-timeout-ms:5000}") long awaitTimeoutMs,
+            MeterRegistry meterRegistry
+    ){
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.shardRouter = shardRouter;
+        this.enabled = enabled;
+        this.windowNanos = TimeUnit.MILLISECONDS.toNanos(windowMs);
+        this.maxBatch = maxBatch;
+        this.awaitTimeoutMs = awaitTimeoutMs;
+
+        this.flushTimer = Timer.builder("shortener_group_commit_flush")
+                .description("Time to write and commit one group of creates")
+                .register(meterRegistry);
+        this.batchSizes = DistributionSummary.builder("shortener_group_commit_batch_size")
+                .description("Creates committed together in one group")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start(){
+        if(! enabled){
+            return;
+        }
+        running = true;
+        thread = Thread.ofPlatform().daemon().name("group-commit-writer").start(this::run);
+    }
+
+    @PreDestroy
+    public void stop() throws InterruptedException {
+        running = false;
+        if(thread != null){
+            thread.join(TimeUnit.SECONDS.toMillis(5));
+        }
+    }
+
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+     * Queues the mapping and blocks until its group has committed. Returns the stored mapping, or
+     * empty if its code was taken by a concurrent create in the meantime.
+     */
+    public Optional<UrlMapping> insert(UrlMapping mapping){
+        if(! running){
+            throw new IllegalStateException("Group commit writer is not running");
+        }
+        Pending pending = new Pending(mapping);
+        queue.add(pending);
+        try {
+            try {
+                return pending.result().get(awaitTimeoutMs, TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if(pending.claim()){
+                    // the writer skips it, so no row appears after the caller was told it failed
+                    pending.result().cancel(false);
+                    throw new QueryTimeoutException("Group commit did not complete within " + awaitTimeoutMs + " ms", e);
+                }
+                // already in a transaction; flush completes every entry it claimed, either way
+                return pending.result().get();
+            }
+        } catch (ExecutionException e) {
+            if(e.getCause() instanceof RuntimeException cause){
+                throw cause;
+            }
+            throw new IllegalStateException(e.getCause());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for group commit", e);
+        }
+    }
+
+    private void run(){
+        List<Pending> batch = new ArrayList<>(maxBatch);
+        while(running || ! queue.isEmpty()){
+            try {
+                Pending first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if(first == null){
+                    continue;
+                }
+                batch.add(first);
+                long deadline = System.nanoTime() + windowNanos;
+                while(batch.size() < maxBatch){
+                    queue.drainTo(batch, maxBatch - batch.size());
+                    long remaining = deadline - System.nanoTime();
+                    if(batch.size() >= maxBatch || remaining <= 0){
+                        break;
+                    }
+                    Pending next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+                    if(next == null){
+                        break;
+                    }
+                    batch.add(next);
+                }
+                flush(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // flush has already failed the callers; keep the writer alive for the next group
+                log.warn("Group commit failed", e);
+            } finally {
+                batch.clear();
+            }
+        }
+    }
+
+    /**
+     * Writes one group: one transaction per shard holding mappings, then the digest rows when
+     * sharded. Every caller in the group is completed, successfully or not; entries whose caller
+     * already timed out are dropped.
+     */
+    void flush(List<Pending> batch){
+        long started = System.nanoTime();
+        Map<String, List<Pending>> byShard = new LinkedHashMap<>();
+        int claimed = 0;
+        for(Pending pending : batch){
+            if(! pending.claim()){
+                continue;
+            }
+            claimed++;
+            byShard.computeIfAbsent(shardRouter.shardForCode(pending.mapping().getCode()), shard -> new ArrayList<>())
+                    .add(pending);
+        }
+
+        Map<String, List<Object[]>> digestsByShard = new HashMap<>();
+        List<Pending> inserted = new ArrayList<>(batch.size());
+        byShard.forEach((shard, group) -> {
+            try {
+                List<Pending> stored = shardRouter.onShard(shard, () -> transactionOperations.execute(status -> insertGroup(group)));
+                inserted.addAll(stored);
+                if(shardRouter.isSharded()){
+                    for(Pending pending : stored){
+                        UrlMapping mapping = pending.mapping();
+                        String digest = UrlHashUtil.digest(mapping.getLongUrl());
+                        digestsByShard.computeIfAbsent(shardRouter.shardForDigest(digest), digestShard -> new ArrayList<>())
+                                .add(new Object[]{digest, mapping.getCode(), Timestamp.from(mapping.getExpiresAt())});
+                    }
+                }
+            } catch (RuntimeException e) {
+                group.forEach(pending -> pending.result().completeExceptionally(e));
+            }
+        });
+
+        // digest rows only feed long-url dedup; a failure here must not fail creates that already committed
+        digestsByShard.forEach((shard, args) -> {
+            try {
+                shardRouter.runOnShard(shard, () -> transactionOperations.executeWithoutResult(
+                        status -> jdbcTemplate.batchUpdate(INSERT_DIGEST_SQL, args)));
+            } catch (RuntimeException e) {
+                log.warn("Writing {} url digests to shard {} failed", args.size(), shard, e);
+            }
+        });
+
+        inserted.forEach(pending -> pending.result().complete(Optional.of(pending.mapping())));
+        if(claimed > 0){
+            flushTimer.record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+            batchSizes.record(claimed);
+        }
+    }
+
+    /**
+     * Inserts the group as one statement and returns the entries that were stored; entries whose
+     * code already existed are completed empty right away.
+     */
+    private List<Pending> insertGroup(List<Pending> group){
+        Instant createdAt = Instant.now();
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + group.size() * (INSERT_ROW.length() + 2) + INSERT_SUFFIX.length());
+        sql.append(INSERT_PREFIX);
+        Object[] args = new Object[group.size() * 4];
+        int i = 0;
+        for(Pending pending : group){
+            if(i > 0){
+                sql.append(", ");
+            }
+            sql.append(INSERT_ROW);
+            UrlMapping mapping = pending.mapping();
+            args[i++] = mapping.getCode();
+            args[i++] = mapping.getLongUrl();
+            args[i++] = Timestamp.from(createdAt);
+            args[i++] = Timestamp.from(mapping.getExpiresAt());
+        }
+        sql.append(INSERT_SUFFIX);
+
+        Map<String, Long> ids = new HashMap<>();
+        RowCallbackHandler collectIds = rs -> ids.put(rs.getString("code"), rs.getLong("id"));
+        jdbcTemplate.query(sql.toString(), new ArgumentPreparedStatementSetter(args), collectIds);
+
+        List<Pending> stored = new ArrayList<>(ids.size());
+        for(Pending pending : group){
+            Long id = ids.remove(pending.mapping().getCode());
+            if(id == null){
+                pending.result().complete(Optional.empty());
+            } else {
+                pending.mapping().setId(id);
+                pending.mapping().setCreatedAt(createdAt);
+                stored.add(pending);
+            }
+        }
+        return stored;
+    }
+}
@@ -0,0 +1,66 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.dto.response.HeavyHitterResponse;
+import com.maliroso.url_shortener.utils.SpaceSavingSketch;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+
+/**
+ * Tracks the codes driving redirect load in a fixed-size sketch instead of per-code metric tags,
+ * and keeps the current top codes pinned in the {@link UrlMappingCache}.
+ */
+@Service
+public class HeavyHitterService {
+
+    private final SpaceSavingSketch sketch;
+
+    private final UrlMappingCache urlMappingCache;
+
+    private final int pinnedCount;
+
+    private final long refreshIntervalMs;
+
+    public HeavyHitterService(
+            UrlMappingCache urlMappingCache,
+            @Value("${shortener.heavy-hitters.capacity:256}") int capacity,
+            @Value("${shortener.heavy-hitters.pinned:32}") int pinnedCount,
+            @Value("${shortener.heavy-hitters.refresh-interval-ms:10000}") long refreshIntervalMs
+    ){
+        this.sketch = new SpaceSavingSketch(capacity);
+        this.urlMappingCache = urlMappingCache;
+        this.pinnedCount = pinnedCount;
+        this.refreshIntervalMs = refreshIntervalMs;
+    }
+
+    public void recordRedirect(String code){
+        sketch.offer(code);
+    }
+
+    /**
+     * Pins the current heavy hitters, then halves the counters so the ranking follows the recent rate.
+     */
+    @Scheduled(fixedRateString = "${shortener.heavy-hitters.refresh-interval-ms:10000}")
+    public void refresh(){
+        urlMappingCache.pin(sketch.top(pinnedCount).stream()
+                .map(SpaceSavingSketch.Entry::item)
+                .toList());
+        sketch.decay();
+    }
+
+    public List<HeavyHitterResponse> topHitters(int limit){
+        // halving every interval makes a steady rate r settle at a count of 2 * r * interval
+        double windowSeconds = 2 * refreshIntervalMs / 1000.0;
+        return sketch.top(limit).stream()
+                .map(entry -> new HeavyHitterResponse(
+                        entry.item(),
+                        entry.count(),
+                        entry.error(),
+                        entry.count() / windowSeconds,
+                        urlMappingCache.isPinned(entry.item())
+                ))
+                .toList();
+    }
+}
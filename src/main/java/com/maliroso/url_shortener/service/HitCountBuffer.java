@@ -0,0 +1,116 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.jfr.HitCountFlushEvent;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Collects hit-count increments in memory and writes them as one JDBC batch per flush interval,
+ * so neither redirects nor metadata reads issue an UPDATE of their own.
+ */
+@Slf4j
+@Service
+public class HitCountBuffer {
+
+    private static final String UPDATE_SQL = "update url_mappings set hit_count = hit_count + ? where code = ?";
+
+    private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionOperations transactionOperations;
+
+    private final ShardRouter shardRouter;
+
+    public HitCountBuffer(JdbcTemplate jdbcTemplate, TransactionOperations transactionOperations, ShardRouter shardRouter){
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.shardRouter = shardRouter;
+    }
+
+    public void increment(String code){
+        pending.merge(code, 1L, Long::sum);
+    }
+
+    /**
+     * Hits recorded for the code that have not reached the database yet.
+     */
+    public long pending(String code){
+        return pending.getOrDefault(code, 0L);
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${shortener.hit-count.flush-interval-ms:1000}")
+    public void flush(){
+        if(pending.isEmpty()){
+            return;
+        }
+
+        // one batch per shard, each in its own transaction
+        Map<String, List<Object[]>> argsByShard = new HashMap<>();
+        for(String code : pending.keySet()){
+            // remove is atomic with merge, so a concurrent increment lands in a fresh entry
+            Long delta = pending.remove(code);
+            if(delta != null){
+                argsByShard.computeIfAbsent(shardRouter.shardForCode(code), shard -> new ArrayList<>())
+                        .add(new Object[]{delta, code});
+            }
+        }
+
+        // while shards are rebalancing, a row the update missed may still sit on its previous shard
+        Map<String, List<Object[]>> missedByShard = new HashMap<>();
+        argsByShard.forEach((shard, args) -> {
+            for(Object[] row : flushShard(shard, args)){
+                shardRouter.previousShardFor((String) row[1]).ifPresent(previous ->
+                        missedByShard.computeIfAbsent(previous, key -> new ArrayList<>()).add(row));
+            }
+        });
+        missedByShard.forEach(this::flushShard);
+    }
+
+    /**
+     * Writes one shard's batch and returns the rows that matched no mapping there. A failed batch
+     * goes back into the buffer, so its hits are written by a later flush.
+     */
+    private List<Object[]> flushShard(String shard, List<Object[]> args){
+        HitCountFlushEvent event = new HitCountFlushEvent();
+        event.begin();
+        int[] counts;
+        try {
+            counts = shardRouter.onShard(shard,
+                    () -> transactionOperations.execute(status -> jdbcTemplate.batchUpdate(UPDATE_SQL, args)));
+        } catch (RuntimeException e) {
+            for(Object[] row : args){
+                pending.merge((String) row[1], (Long) row[0], Long::sum);
+            }
+            log.warn("Flushing {} hit counts to shard {} failed, retrying with the next flush: {}", args.size(), shard, e.getMessage());
+            return List.of();
+        }
+        if(event.isEnabled()){
+            long hits = 0;
+            for(Object[] row : args){
+                hits += (Long) row[0];
+            }
+            event.finish(shard, args.size(), hits);
+        }
+
+        List<Object[]> missed = new ArrayList<>();
+        for(int i = 0; i < counts.length; i++){
+            if(counts[i] == 0){
+                missed.add(args.get(i));
+            }
+        }
+        return missed;
+    }
+}
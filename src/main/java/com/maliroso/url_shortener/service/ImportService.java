@@ -0,0 +1,285 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.dto.request.ImportRecord;
+import com.maliroso.url_shortener.dto.request.RecordFormat;
+import com.maliroso.url_shortener.dto.response.ImportProgress;
+import com.maliroso.url_shortener.repository.UrlMappingRepository;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.utils.RecordFormatUtil;
+import com.maliroso.url_shortener.utils.UrlHashUtil;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+import tools.jackson.core.JacksonException;
+import tools.jackson.databind.ObjectMapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.DateTimeException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * Streams existing code -> url pairs into url_mappings. The input is read line by line and written
+ * in JDBC batches, so only one batch is ever held in memory; since the next line is not read until
+ * the current batch has committed, a fast client is slowed down to the database's pace by TCP flow
+ * control rather than by buffering.
+ */
+@Service
+public class ImportService {
+
+    // default column length of url_mappings.long_url
+    private static final int MAX_LONG_URL_LENGTH = 255;
+
+    // ids come from the shard's own sequence; every nextval reserves a whole pooled block, so these
+    // rows can never reuse an id that Hibernate hands out to regular creates on that shard
+    private static final String INSERT_SQL = """
+            insert into url_mappings (id, code, long_url, hit_count, created_at, expires_at)
+            values (nextval('url_mappings_seq'), ?, ?, 0, ?, ?)
+            on conflict (code) do nothing
+            """;
+
+    // same upsert as UrlDigestRepository: a digest left by an expired mapping moves to the imported code
+    private static final String INSERT_DIGEST_SQL = """
+            insert into url_digests (digest, code, expires_at)
+            values (?, ?, ?)
+            on conflict (digest) do update set code = excluded.code, expires_at = excluded.expires_at
+            """;
+
+    private final UrlMappingRepository urlMappingRepository;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionOperations transactionOperations;
+
+    private final ObjectMapper objectMapper;
+
+    private final ShardRouter shardRouter;
+
+    private final int batchSize;
+
+    public ImportService(
+            UrlMappingRepository urlMappingRepository,
+            JdbcTemplate jdbcTemplate,
+            TransactionOperations transactionOperations,
+            ObjectMapper objectMapper,
+            ShardRouter shardRouter,
+            @Value("${shortener.import.batch-size:5000}") int batchSize
+    ){
+        this.urlMappingRepository = urlMappingRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.objectMapper = objectMapper;
+        this.shardRouter = shardRouter;
+        this.batchSize = batchSize;
+    }
+
+    public interface Listener {
+        void onInvalid(long line, String reason);
+
+        void onProgress(ImportProgress progress);
+    }
+
+    private record Row(String code, String longUrl, Instant expiresAt) {
+    }
+
+    private static final class Counters {
+        private long checkpoint;
+        private long imported;
+        private long conflicts;
+        private long invalid;
+
+        private ImportProgress snapshot(){
+            return new ImportProgress(checkpoint, imported, conflicts, invalid);
+        }
+    }
+
+    /**
+     * Imports every data line after the first {@code skip} ones. CSV input must start with a header
+     * naming at least the code and long_url columns; the header is not counted as a data line.
+     */
+    public ImportProgress importMappings(RecordFormat format, InputStream inputStream, long skip, Listener listener) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream, StandardCharsets.UTF_8));
+        Function<String, ImportRecord> parser = format == RecordFormat.CSV
+                ? csvParser(reader.readLine())
+                : this::parseNdjson;
+
+        Counters counters = new Counters();
+        Map<String, Row> batch = new LinkedHashMap<>();
+        long line = 0;
+        String text;
+        while((text = reader.readLine()) != null){
+            line++;
+            if(line <= skip || text.isBlank()){
+                continue;
+            }
+
+            try {
+                Row row = validate(parser.apply(text), Instant.now());
+                if(batch.putIfAbsent(row.code(), row) != null){
+                    counters.conflicts++;
+                }
+            } catch (IllegalArgumentException | JacksonException e) {
+                counters.invalid++;
+                listener.onInvalid(line, e.getMessage());
+            }
+
+            if(batch.size() >= batchSize){
+                flush(batch, counters);
+                counters.checkpoint = line;
+                listener.onProgress(counters.snapshot());
+            }
+        }
+
+        flush(batch, counters);
+        counters.checkpoint = Math.max(line, skip);
+        return counters.snapshot();
+    }
+
+    private void flush(Map<String, Row> batch, Counters counters){
+        if(batch.isEmpty()){
+            return;
+        }
+
+        Map<String, List<Row>> rowsByShard = new LinkedHashMap<>();
+        for(Row row : batch.values()){
+            rowsByShard.computeIfAbsent(shardRouter.shardForCode(row.code()), shard -> new ArrayList<>()).add(row);
+        }
+        batch.clear();
+
+        Timestamp createdAt = Timestamp.from(Instant.now());
+        Map<String, List<Object[]>> digestsByShard = new LinkedHashMap<>();
+        rowsByShard.forEach((shard, rows) -> shardRouter.runOnShard(shard, () -> {
+            List<Row> inserted = insertRows(rows, createdAt, counters);
+            if(shardRouter.isSharded()){
+                for(Row row : inserted){
+                    String digest = UrlHashUtil.digest(row.longUrl());
+                    digestsByShard.computeIfAbsent(shardRouter.shardForDigest(digest), digestShard -> new ArrayList<>())
+                            .add(new Object[]{digest, row.code(), Timestamp.from(row.expiresAt())});
+                }
+            }
+        }));
+
+        // digest rows only feed long-url dedup; the url now resolves to the imported code
+        digestsByShard.forEach((shard, args) -> shardRouter.runOnShard(shard,
+                () -> transactionOperations.executeWithoutResult(status -> jdbcTemplate.batchUpdate(INSERT_DIGEST_SQL, args))));
+    }
+
+    /**
+     * Inserts rows owned by the current shard and returns the ones that were actually written.
+     */
+    private List<Row> insertRows(List<Row> rows, Timestamp createdAt, Counters counters){
+        // one query for the whole batch instead of a probe per row
+        List<String> codes = rows.stream().map(Row::code).toList();
+        Set<String> existing = new HashSet<>(urlMappingRepository.findExistingCodes(codes));
+        counters.conflicts += existing.size();
+
+        List<Row> candidates = new ArrayList<>(rows.size());
+        List<Object[]> args = new ArrayList<>(rows.size());
+        for(Row row : rows){
+            if(! existing.contains(row.code())){
+                candidates.add(row);
+                args.add(new Object[]{row.code(), row.longUrl(), createdAt, Timestamp.from(row.expiresAt())});
+            }
+        }
+        if(args.isEmpty()){
+            return List.of();
+        }
+
+        int[] counts = transactionOperations.execute(status -> jdbcTemplate.batchUpdate(INSERT_SQL, args));
+        List<Row> inserted = new ArrayList<>(counts.length);
+        for(int i = 0; i < counts.length; i++){
+            // rows that lost a race with a concurrent create are skipped by "on conflict do nothing"
+            if(counts[i] == 0){
+                counters.conflicts++;
+            } else if(counts[i] > 0 || counts[i] == Statement.SUCCESS_NO_INFO){
+                counters.imported++;
+                inserted.add(candidates.get(i));
+            }
+        }
+        return inserted;
+    }
+
+    private ImportRecord parseNdjson(String line){
+        ImportRecord record = objectMapper.readValue(line, ImportRecord.class);
+        // a literal null line reads as no record at all
+        if(record == null){
+            throw new IllegalArgumentException("Expected a JSON object");
+        }
+        return record;
+    }
+
+    private Function<String, ImportRecord> csvParser(String header){
+        if(header == null){
+            throw new IllegalArgumentException("CSV input must start with a header line");
+        }
+        List<String> columns = RecordFormatUtil.parseCsvLine(header);
+        int codeIndex = columns.indexOf("code");
+        int longUrlIndex = columns.indexOf("long_url");
+        int expiresAtIndex = columns.indexOf("expires_at");
+        if(codeIndex < 0 || longUrlIndex < 0){
+            throw new IllegalArgumentException("CSV header must contain code and long_url columns");
+        }
+
+        return line -> {
+            List<String> fields = RecordFormatUtil.parseCsvLine(line);
+            if(fields.size() != columns.size()){
+                throw new IllegalArgumentException("Expected " + columns.size() + " fields but found " + fields.size());
+            }
+            return new ImportRecord(
+                    fields.get(codeIndex),
+                    fields.get(longUrlIndex),
+                    expiresAtIndex < 0 ? null : fields.get(expiresAtIndex)
+            );
+        };
+    }
+
+    private Row validate(ImportRecord record, Instant now){
+        if(! UrlHashUtil.isValidCode(record.code())){
+            throw new IllegalArgumentException("Invalid code");
+        }
+
+        String longUrl = record.longUrl();
+        if(longUrl == null || longUrl.isBlank() || longUrl.length() > MAX_LONG_URL_LENGTH){
+            throw new IllegalArgumentException("Invalid URL length");
+        }
+        try {
+            URI uri = new URI(longUrl);
+            if(uri.getHost() == null || ! ("http".equalsIgnoreCase(uri.getScheme()) || "https".equalsIgnoreCase(uri.getScheme()))){
+                throw new IllegalArgumentException("Invalid URL format");
+            }
+        } catch (URISyntaxException e) {
+            throw new IllegalArgumentException("Invalid URL format");
+        }
+
+        Instant expiresAt;
+        if(record.expiresAt() == null || record.expiresAt().isBlank()){
+            expiresAt = UrlHashUtil.calculateExpiresAt();
+        } else {
+            try {
+                expiresAt = Instant.parse(record.expiresAt());
+            } catch (DateTimeException e) {
+                throw new IllegalArgumentException("Invalid expiresAt");
+            }
+        }
+        if(expiresAt.isBefore(now)){
+            throw new IllegalArgumentException("Already expired");
+        }
+
+        return new Row(record.code(), longUrl, expiresAt);
+    }
+}
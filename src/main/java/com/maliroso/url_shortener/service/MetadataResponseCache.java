@@ -0,0 +1,96 @@
+package com.maliroso.url_shortener.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Serialized metadata responses per code. An entry is reused until the mapping expires, is
+ * invalidated, or enough hits have arrived since it was built that the reported hit count is
+ * noticeably stale: at least {@code min-hit-delta} and at least {@code relative-hit-delta} of the
+ * count it was built with.
+ */
+@Service
+public class MetadataResponseCache {
+
+    public record Snapshot(byte[] body, String etag, Instant lastModified) {
+    }
+
+    private static final class Entry {
+        private final Snapshot snapshot;
+        private final Instant expiresAt;
+        private final long refreshAfterHits;
+        private final AtomicLong hitsSinceBuilt = new AtomicLong();
+
+        private Entry(Snapshot snapshot, Instant expiresAt, long refreshAfterHits){
+            this.snapshot = snapshot;
+            this.expiresAt = expiresAt;
+            this.refreshAfterHits = refreshAfterHits;
+        }
+    }
+
+    private final Map<String, Entry> entries;
+
+    private final long minHitDelta;
+
+    private final double relativeHitDelta;
+
+    public MetadataResponseCache(
+            @Value("${shortener.metadata-cache.capacity:10000}") int capacity,
+            @Value("${shortener.metadata-cache.min-hit-delta:10}") long minHitDelta,
+            @Value("${shortener.metadata-cache.relative-hit-delta:0.01}") double relativeHitDelta
+    ){
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+                return size() > capacity;
+            }
+        };
+        this.minHitDelta = minHitDelta;
+        this.relativeHitDelta = relativeHitDelta;
+    }
+
+    public Snapshot get(String code, Instant instant){
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(code);
+        }
+        if(entry == null){
+            return null;
+        }
+        if((entry.expiresAt != null && entry.expiresAt.isBefore(instant))
+                || entry.hitsSinceBuilt.get() >= entry.refreshAfterHits){
+            invalidate(code);
+            return null;
+        }
+        return entry.snapshot;
+    }
+
+    public void put(String code, Snapshot snapshot, Instant expiresAt, long hitCount){
+        long refreshAfterHits = Math.max(minHitDelta, (long) (hitCount * relativeHitDelta));
+        Entry entry = new Entry(snapshot, expiresAt, refreshAfterHits);
+        synchronized (entries) {
+            entries.put(code, entry);
+        }
+    }
+
+    public void recordHit(String code){
+        Entry entry;
+        synchronized (entries) {
+            entry = entries.get(code);
+        }
+        if(entry != null){
+            entry.hitsSinceBuilt.incrementAndGet();
+        }
+    }
+
+    public void invalidate(String code){
+        synchronized (entries) {
+            entries.remove(code);
+        }
+    }
+}
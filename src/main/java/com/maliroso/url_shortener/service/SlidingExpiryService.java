@@ -0,0 +1,174 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.utils.UrlHashUtil;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Optional sliding expiry: a redirected link is pushed to {@code extension} past the access, so
+ * links in use never lapse. Redirects only record the new expiry in memory; the writes go out as
+ * one batch per shard per flush interval, and each code is extended at most once per
+ * {@code min-write-interval}.
+ *
+ * <p>Cached copies keep their old expiry. When it passes they miss, reload the row and pick up
+ * the extended one, so no cache has to be touched here.
+ */
+@Service
+public class SlidingExpiryService {
+
+    // never shortens: a concurrent longer extension or a re-created code wins
+    private static final String EXTEND_SQL = "update url_mappings set expires_at = ? where code = ? and expires_at < ?";
+
+    private static final String EXTEND_DIGEST_SQL = "update url_digests set expires_at = ? where digest = ? and code = ? and expires_at < ?";
+
+    private final boolean enabled;
+
+    private final Duration extension;
+
+    private final Duration minWriteInterval;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final TransactionOperations transactionOperations;
+
+    private final ShardRouter shardRouter;
+
+    private final Map<String, Extension> pending = new ConcurrentHashMap<>();
+
+    // when each code was last scheduled, so one hot link costs one write per interval
+    private final Map<String, Instant> lastScheduled;
+
+    private final Counter scheduledCounter;
+
+    private final Counter extendedCounter;
+
+    public SlidingExpiryService(
+            @Value("${shortener.sliding-expiry.enabled:false}") boolean enabled,
+            @Value("${shortener.sliding-expiry.extension-ms:604800000}") long extensionMs,
+            @Value("${shortener.sliding-expiry.min-write-interval-ms:3600000}") long minWriteIntervalMs,
+            @Value("${shortener.sliding-expiry.tracked-codes:100000}") int trackedCodes,
+            JdbcTemplate jdbcTemplate,
+            TransactionOperations transactionOperations,
+            ShardRouter shardRouter,
+            MeterRegistry meterRegistry
+    ){
+        this.enabled = enabled;
+        this.extension = Duration.ofMillis(extensionMs);
+        this.minWriteInterval = Duration.ofMillis(minWriteIntervalMs);
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionOperations = transactionOperations;
+        this.shardRouter = shardRouter;
+        this.lastScheduled = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Instant> eldest) {
+                return size() > trackedCodes;
+            }
+        };
+
+        this.scheduledCounter = Counter.builder("shortener_sliding_expiry_scheduled_total")
+                .description("Expiry extensions queued by redirects")
+                .register(meterRegistry);
+        this.extendedCounter = Counter.builder("shortener_sliding_expiry_extended_total")
+                .description("Mappings whose expiry was extended in the database")
+                .register(meterRegistry);
+        Gauge.builder("shortener_sliding_expiry_pending", pending, Map::size)
+                .description("Expiry extensions waiting for the next flush")
+                .register(meterRegistry);
+    }
+
+    public boolean isEnabled(){
+        return enabled;
+    }
+
+    /**
+     * Called for every redirect; does nothing unless the code is due for an extension.
+     */
+    public void touch(CachedUrlMapping mapping, Instant instant){
+        if(! enabled){
+            return;
+        }
+        Instant extendedTo = instant.plus(extension);
+        // extended or created within the interval already
+        if(mapping.expiresAt() != null && mapping.expiresAt().isAfter(extendedTo.minus(minWriteInterval))){
+            return;
+        }
+        synchronized (lastScheduled) {
+            Instant last = lastScheduled.get(mapping.code());
+            if(last != null && last.isAfter(instant.minus(minWriteInterval))){
+                return;
+            }
+            lastScheduled.put(mapping.code(), instant);
+        }
+
+        // the digest row expires with the mapping, otherwise long-url dedup stops finding it
+        String digest = shardRouter.isSharded() ? UrlHashUtil.digest(mapping.longUrl()) : null;
+        pending.put(mapping.code(), new Extension(extendedTo, digest));
+        scheduledCounter.increment();
+    }
+
+    int pending(){
+        return pending.size();
+    }
+
+    @PreDestroy
+    @Scheduled(fixedDelayString = "${shortener.sliding-expiry.flush-interval-ms:5000}")
+    public void flush(){
+        if(pending.isEmpty()){
+            return;
+        }
+
+        Map<String, List<Object[]>> mappingArgs = new HashMap<>();
+        Map<String, List<Object[]>> digestArgs = new HashMap<>();
+        for(String code : pending.keySet()){
+            Extension extension = pending.remove(code);
+            if(extension == null){
+                continue;
+            }
+            Timestamp expiresAt = Timestamp.from(extension.expiresAt());
+            mappingArgs.computeIfAbsent(shardRouter.shardForCode(code), shard -> new ArrayList<>())
+                    .add(new Object[]{expiresAt, code, expiresAt});
+            if(extension.digest() != null){
+                digestArgs.computeIfAbsent(shardRouter.shardForDigest(extension.digest()), shard -> new ArrayList<>())
+                        .add(new Object[]{expiresAt, extension.digest(), code, expiresAt});
+            }
+        }
+
+        mappingArgs.forEach((shard, args) -> extendedCounter.increment(update(shard, EXTEND_SQL, args)));
+        digestArgs.forEach((shard, args) -> update(shard, EXTEND_DIGEST_SQL, args));
+    }
+
+    private int update(String shard, String sql, List<Object[]> args){
+        int[] counts = shardRouter.onShard(shard,
+                () -> transactionOperations.execute(status -> jdbcTemplate.batchUpdate(sql, args)));
+        int updated = 0;
+        if(counts != null){
+            for(int count : counts){
+                // drivers may report SUCCESS_NO_INFO (-2) for batched rows
+                updated += Math.max(count, 0);
+            }
+        }
+        return updated;
+    }
+
+    private record Extension(Instant expiresAt, String digest) {
+    }
+}
@@ -0,0 +1,80 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Last known mapping of every code loaded from the database, kept well beyond the redirect
+ * cache's capacity. Only read when the database cannot answer, so that links served a moment
+ * ago keep redirecting through an outage; expiry is still honoured.
+ */
+@Service
+public class StaleMappingStore {
+
+    private final Map<String, CachedUrlMapping> mappings;
+
+    private final Counter servedCounter;
+
+    private final Counter missedCounter;
+
+    public StaleMappingStore(
+            @Value("${shortener.stale-cache.capacity:100000}") int capacity,
+            MeterRegistry meterRegistry
+    ){
+        this.mappings = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUrlMapping> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        this.servedCounter = Counter.builder("shortener_redirect_fallback_total")
+                .description("Redirect lookups answered from the stale store while the database was unavailable")
+                .tag("result", "served")
+                .register(meterRegistry);
+        this.missedCounter = Counter.builder("shortener_redirect_fallback_total")
+                .description("Redirect lookups answered from the stale store while the database was unavailable")
+                .tag("result", "miss")
+                .register(meterRegistry);
+        Gauge.builder("shortener_stale_cache_size", this, StaleMappingStore::size)
+                .description("Last known mappings kept for redirects during database outages")
+                .register(meterRegistry);
+    }
+
+    public void put(CachedUrlMapping mapping){
+        synchronized (mappings) {
+            mappings.put(mapping.code(), mapping);
+        }
+    }
+
+    /**
+     * Fallback lookup; counts whether the outage could be bridged for this code.
+     */
+    public Optional<CachedUrlMapping> fallback(String code, Instant instant){
+        CachedUrlMapping mapping;
+        synchronized (mappings) {
+            mapping = mappings.get(code);
+        }
+        if(mapping == null || ! mapping.isActiveAt(instant)){
+            missedCounter.increment();
+            return Optional.empty();
+        }
+        servedCounter.increment();
+        return Optional.of(mapping);
+    }
+
+    public int size(){
+        synchronized (mappings) {
+            return mappings.size();
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.dto.response.UrlCodecReport;
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import com.maliroso.url_shortener.model.UrlMapping;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.utils.CompactUrlCodec;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Owns the url dictionary used for in-memory copies of long urls. The dictionary starts from the
+ * configured prefixes and, if a sample size is set, is extended at startup with prefixes learned
+ * from the most recent rows. Raw and compact byte counts of everything encoded are kept as
+ * metrics, and {@link #report(int)} estimates the saving a compact column would give.
+ */
+@Slf4j
+@Service
+public class UrlCodecService {
+
+    private static final String SAMPLE_SQL = "select long_url from url_mappings order by id desc limit ?";
+
+    private final List<String> configuredPrefixes;
+
+    private final int learnSampleSize;
+
+    private final int maxPrefixes;
+
+    private final int minCount;
+
+    private final JdbcTemplate jdbcTemplate;
+
+    private final ShardRouter shardRouter;
+
+    private final Counter encodedCounter;
+
+    private final Counter rawBytesCounter;
+
+    private final Counter compactBytesCounter;
+
+    private volatile CompactUrlCodec codec;
+
+    public UrlCodecService(
+            @Value("${shortener.url-codec.prefixes:}") List<String> configuredPrefixes,
+            @Value("${shortener.url-codec.learn-sample-size:10000}") int learnSampleSize,
+            @Value("${shortener.url-codec.max-prefixes:64}") int maxPrefixes,
+            @Value("${shortener.url-codec.min-count:20}") int minCount,
+            JdbcTemplate jdbcTemplate,
+            ShardRouter shardRouter,
+            MeterRegistry meterRegistry
+    ){
+        this.configuredPrefixes = List.copyOf(configuredPrefixes);
+        this.learnSampleSize = learnSampleSize;
+        this.maxPrefixes = Math.min(maxPrefixes, CompactUrlCodec.MAX_PREFIXES);
+        this.minCount = minCount;
+        this.jdbcTemplate = jdbcTemplate;
+        this.shardRouter = shardRouter;
+        this.codec = new CompactUrlCodec(this.configuredPrefixes);
+
+        this.encodedCounter = Counter.builder("shortener_url_codec_encoded_total")
+                .description("Long urls encoded for in-memory copies")
+                .register(meterRegistry);
+        this.rawBytesCounter = Counter.builder("shortener_url_codec_raw_bytes_total")
+                .description("Bytes the encoded long urls take as plain strings")
+                .register(meterRegistry);
+        this.compactBytesCounter = Counter.builder("shortener_url_codec_compact_bytes_total")
+                .description("Bytes the encoded long urls take in compact form")
+                .register(meterRegistry);
+        Gauge.builder("shortener_url_codec_prefixes", this, service -> service.codec.prefixes().size())
+                .description("Prefixes in the url dictionary")
+                .register(meterRegistry);
+    }
+
+    public CachedUrlMapping toCached(UrlMapping urlMapping){
+        CachedUrlMapping cached = CachedUrlMapping.from(urlMapping, codec);
+        encodedCounter.increment();
+        // Latin-1 strings hold one byte per char, which is what ASCII urls take on the heap
+        rawBytesCounter.increment(urlMapping.getLongUrl().length());
+        compactBytesCounter.increment(cached.encodedSize());
+        return cached;
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void learnOnStartup(){
+        if(learnSampleSize <= 0){
+            return;
+        }
+        try {
+            List<String> prefixes = learn();
+            log.info("Url dictionary has {} prefixes", prefixes.size());
+        } catch (RuntimeException e) {
+            // the configured dictionary keeps working, just with less compression
+            log.warn("Could not learn url prefixes, keeping the configured ones", e);
+        }
+    }
+
+    /**
+     * Rebuilds the dictionary from the configured prefixes plus ones learned from recent rows.
+     * Entries encoded with the previous dictionary stay readable, they keep their own codec.
+     */
+    public List<String> learn(){
+        int room = Math.max(0, maxPrefixes - configuredPrefixes.size());
+        if(room == 0){
+            // the configured prefixes already fill the dictionary, so there is nothing to sample for
+            codec = new CompactUrlCodec(configuredPrefixes);
+            return codec.prefixes();
+        }
+        List<String> learned = CompactUrlCodec.learn(sampleLongUrls(learnSampleSize), room, minCount);
+        List<String> prefixes = new ArrayList<>(configuredPrefixes);
+        prefixes.addAll(learned);
+        codec = new CompactUrlCodec(prefixes);
+        return codec.prefixes();
+    }
+
+    /**
+     * In-memory totals so far, plus what the current dictionary would save on a sample of stored urls.
+     */
+    public UrlCodecReport report(int sampleSize){
+        CompactUrlCodec current = codec;
+        List<String> sample = sampleLongUrls(sampleSize);
+        long raw = 0;
+        long compact = 0;
+        for(String longUrl : sample){
+            raw += longUrl.getBytes(StandardCharsets.UTF_8).length;
+            compact += current.encode(longUrl).length;
+        }
+        return new UrlCodecReport(
+                current.prefixes(),
+                (long) encodedCounter.count(),
+                (long) rawBytesCounter.count(),
+                (long) compactBytesCounter.count(),
+                sample.size(),
+                raw,
+                compact
+        );
+    }
+
+    private List<String> sampleLongUrls(int sampleSize){
+        List<String> shards = shardRouter.shardNames();
+        int perShard = Math.max(1, sampleSize / shards.size());
+        List<String> sample = new ArrayList<>(sampleSize);
+        for(String shard : shards){
+            sample.addAll(shardRouter.onShard(shard,
+                    () -> jdbcTemplate.queryForList(SAMPLE_SQL, String.class, perShard)));
+        }
+        return sample;
+    }
+}
@@ -0,0 +1,124 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Instant;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Bounded LRU cache of code lookups for the redirect path. Pinned codes live outside the LRU
+ * so that a burst of one-off codes can never evict them.
+ */
+@Service
+public class UrlMappingCache {
+
+    private final Map<String, CachedUrlMapping> lru;
+
+    private final Map<String, CachedUrlMapping> pinned = new ConcurrentHashMap<>();
+
+    private volatile Set<String> pinnedCodes = Set.of();
+
+    public UrlMappingCache(
+            @Value("${shortener.cache.capacity:10000}") int capacity,
+            MeterRegistry meterRegistry
+    ){
+        this.lru = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedUrlMapping> eldest) {
+                return size() > capacity;
+            }
+        };
+
+        Gauge.builder("shortener_cache_size", this, UrlMappingCache::size)
+                .description("Code lookups held in the redirect cache")
+                .register(meterRegistry);
+        Gauge.builder("shortener_cache_pinned", pinned, Map::size)
+                .description("Heavy-hitter codes pinned in the redirect cache")
+                .register(meterRegistry);
+    }
+
+    public Optional<CachedUrlMapping> get(String code, Instant instant){
+        CachedUrlMapping mapping = pinned.get(code);
+        if(mapping == null){
+            synchronized (lru) {
+                mapping = lru.get(code);
+            }
+        }
+        if(mapping == null){
+            return Optional.empty();
+        }
+        if(! mapping.isActiveAt(instant)){
+            invalidate(code);
+            return Optional.empty();
+        }
+        return Optional.of(mapping);
+    }
+
+    public void put(CachedUrlMapping mapping){
+        if(pinnedCodes.contains(mapping.code())){
+            pinned.put(mapping.code(), mapping);
+            return;
+        }
+        synchronized (lru) {
+            lru.put(mapping.code(), mapping);
+        }
+    }
+
+    public void invalidate(String code){
+        pinned.remove(code);
+        synchronized (lru) {
+            lru.remove(code);
+        }
+    }
+
+    /**
+     * Replaces the pinned set. Codes that drop out go back to the LRU; newly pinned codes that are
+     * not cached yet are pinned as soon as they are next put.
+     */
+    public synchronized void pin(Collection<String> codes){
+        Set<String> next = new HashSet<>(codes);
+
+        for(String code : pinnedCodes){
+            if(! next.contains(code)){
+                CachedUrlMapping mapping = pinned.remove(code);
+                if(mapping != null){
+                    synchronized (lru) {
+                        lru.put(code, mapping);
+                    }
+                }
+            }
+        }
+
+        for(String code : next){
+            CachedUrlMapping mapping;
+            synchronized (lru) {
+                mapping = lru.remove(code);
+            }
+            if(mapping != null){
+                pinned.put(code, mapping);
+            }
+        }
+
+        pinnedCodes = Set.copyOf(next);
+    }
+
+    public boolean isPinned(String code){
+        return pinnedCodes.contains(code);
+    }
+
+    public int size(){
+        synchronized (lru) {
+            return lru.size() + pinned.size();
+        }
+    }
+}
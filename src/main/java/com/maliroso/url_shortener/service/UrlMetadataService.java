@@ -0,0 +1,125 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.dto.response.ShortUrlMetadataResponse;
+import com.maliroso.url_shortener.dto.response.UrlMappingExportRow;
+import com.maliroso.url_shortener.model.UrlMapping;
+import org.springframework.stereotype.Service;
+import org.springframework.util.DigestUtils;
+import tools.jackson.databind.ObjectMapper;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Serves metadata from pre-serialized JSON so repeated polls skip the lookup, the Jackson pass and
+ * any write; the database is only read when the cached entry has gone stale.
+ */
+@Service
+public class UrlMetadataService {
+
+    private final UrlService urlService;
+
+    private final HitCountBuffer hitCountBuffer;
+
+    private final MetadataResponseCache metadataResponseCache;
+
+    private final ObjectMapper objectMapper;
+
+    public UrlMetadataService(
+            UrlService urlService,
+            HitCountBuffer hitCountBuffer,
+            MetadataResponseCache metadataResponseCache,
+            ObjectMapper objectMapper
+    ){
+        this.urlService = urlService;
+        this.hitCountBuffer = hitCountBuffer;
+        this.metadataResponseCache = metadataResponseCache;
+        this.objectMapper = objectMapper;
+    }
+
+    /**
+     * Returns the serialized metadata for the code and counts the call as a hit, as the endpoint always has.
+     * The reported hit count is the one before this call.
+     */
+    public Optional<MetadataResponseCache.Snapshot> lookup(String code, Instant instant, String shortUrlPrefix){
+        MetadataResponseCache.Snapshot snapshot = metadataResponseCache.get(code, instant);
+        if(snapshot == null){
+            Optional<UrlMapping> urlMapSearch = urlService.fetchUrlMapping(code, instant);
+            if(urlMapSearch.isEmpty()){
+                return Optional.empty();
+            }
+
+            UrlMapping urlMap = urlMapSearch.get();
+            snapshot = build(urlMap.getCode(), urlMap.getLongUrl(), urlMap.getCreatedAt(), urlMap.getHitCount(),
+                    urlMap.getExpiresAt(), instant, shortUrlPrefix);
+        }
+
+        urlService.recordHit(code);
+        return Optional.of(snapshot);
+    }
+
+    /**
+     * Serialized metadata for every code with an active mapping, in request order. Cached entries
+     * are used as they are and all misses are read together, one query per shard. Unlike
+     * {@link #lookup} this is not a hit and writes nothing.
+     */
+    public List<MetadataResponseCache.Snapshot> lookupAll(Collection<String> codes, Instant instant, String shortUrlPrefix){
+        Set<String> unique = new LinkedHashSet<>(codes);
+        Map<String, MetadataResponseCache.Snapshot> found = new HashMap<>();
+        List<String> misses = new ArrayList<>();
+        for(String code : unique){
+            MetadataResponseCache.Snapshot snapshot = metadataResponseCache.get(code, instant);
+            if(snapshot != null){
+                found.put(code, snapshot);
+            } else {
+                misses.add(code);
+            }
+        }
+
+        if(! misses.isEmpty()){
+            for(UrlMappingExportRow row : urlService.fetchActiveRows(misses, instant)){
+                found.put(row.code(), build(row.code(), row.longUrl(), row.createdAt(), row.hitCount(),
+                        row.expiresAt(), instant, shortUrlPrefix));
+            }
+        }
+
+        List<MetadataResponseCache.Snapshot> snapshots = new ArrayList<>(found.size());
+        for(String code : unique){
+            MetadataResponseCache.Snapshot snapshot = found.get(code);
+            if(snapshot != null){
+                snapshots.add(snapshot);
+            }
+        }
+        return snapshots;
+    }
+
+    private MetadataResponseCache.Snapshot build(String code, String longUrl, Instant createdAt, long storedHitCount,
+                                                 Instant expiresAt, Instant instant, String shortUrlPrefix){
+        long hitCount = storedHitCount + hitCountBuffer.pending(code);
+        ShortUrlMetadataResponse response = new ShortUrlMetadataResponse(
+                code,
+                shortUrlPrefix + code,
+                longUrl,
+                createdAt,
+                hitCount
+        );
+
+        byte[] body = objectMapper.writeValueAsBytes(response);
+        MetadataResponseCache.Snapshot snapshot = new MetadataResponseCache.Snapshot(
+                body,
+                "\"" + DigestUtils.md5DigestAsHex(body) + "\"",
+                // HTTP dates only carry whole seconds
+                instant.truncatedTo(ChronoUnit.SECONDS)
+        );
+        metadataResponseCache.put(code, snapshot, expiresAt, hitCount);
+        return snapshot;
+    }
+}
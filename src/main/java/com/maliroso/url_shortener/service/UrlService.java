@@ -1,39 +1,263 @@
 package com.maliroso.url_shortener.service;
 
+import com.maliroso.url_shortener.cluster.ClusterMembership;
+import com.maliroso.url_shortener.cluster.PeerLookupClient;
+import com.maliroso.url_shortener.cluster.PeerUnavailableException;
 import com.maliroso.url_shortener.dto.request.ShortenUrlRequest;
+import com.maliroso.url_shortener.dto.response.UrlMappingExportRow;
+import com.maliroso.url_shortener.jfr.CollisionRetryEvent;
+import com.maliroso.url_shortener.jfr.CreateEvent;
+import com.maliroso.url_shortener.jfr.LookupEvent;
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import com.maliroso.url_shortener.model.UrlDigest;
 import com.maliroso.url_shortener.model.UrlMapping;
+import com.maliroso.url_shortener.repository.UrlDigestRepository;
 import com.maliroso.url_shortener.repository.UrlMappingRepository;
+import com.maliroso.url_shortener.sharding.ShardRouter;
 import com.maliroso.url_shortener.utils.UrlHashUtil;
 import jdk.jshell.execution.Util;
 import lombok.AllArgsConstructor;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 @AllArgsConstructor
 @Service
 public class UrlService {
+    // a lost code is rare; several in a row mean something other than bad luck
+    private static final int MAX_CREATE_ATTEMPTS = 5;
+
     @Autowired
     private UrlMappingRepository urlMappingRepository;
 
+    @Autowired
+    private UrlMappingCache urlMappingCache;
+
+    @Autowired
+    private HitCountBuffer hitCountBuffer;
+
+    @Autowired
+    private MetadataResponseCache metadataResponseCache;
+
+    @Autowired
+    private ShardRouter shardRouter;
+
+    @Autowired
+    private UrlDigestRepository urlDigestRepository;
+
+    @Autowired
+    private DatabaseCircuitBreaker databaseCircuitBreaker;
+
+    @Autowired
+    private StaleMappingStore staleMappingStore;
+
+    @Autowired
+    private GroupCommitWriter groupCommitWriter;
+
+    @Autowired
+    private UrlCodecService urlCodecService;
+
+    @Autowired
+    private SlidingExpiryService slidingExpiryService;
+
+    @Autowired
+    private CodeRecyclingService codeRecyclingService;
+
+    @Autowired
+    private ClusterMembership clusterMembership;
+
+    @Autowired
+    private PeerLookupClient peerLookupClient;
+
     public Optional<UrlMapping> fetchUrlMapping(String code, Instant instant){
-        return urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(code, instant);
+        Optional<UrlMapping> urlMapping = onShard(shardRouter.shardForCode(code),
+                () -> urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(code, instant));
+        if(urlMapping.isPresent()){
+            return urlMapping;
+        }
+        // while a rebalance is running the row may still sit on its old shard
+        return shardRouter.previousShardFor(code)
+                .flatMap(shard -> onShard(shard,
+                        () -> urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(code, instant)));
+    }
+
+    /**
+     * Active mappings for many codes: one query per shard holding any of them, plus one per previous
+     * shard for codes a running rebalance has not moved yet. Codes without a mapping are left out.
+     */
+    public List<UrlMappingExportRow> fetchActiveRows(Collection<String> codes, Instant instant){
+        List<UrlMappingExportRow> rows = new ArrayList<>();
+        groupByShard(codes, shardRouter::shardForCode).forEach((shard, shardCodes) ->
+                rows.addAll(onShard(shard, () -> urlMappingRepository.findActiveRows(shardCodes, instant))));
+        if(rows.size() == codes.size()){
+            return rows;
+        }
+
+        Set<String> found = new HashSet<>();
+        rows.forEach(row -> found.add(row.code()));
+        Map<String, List<String>> moving = new HashMap<>();
+        for(String code : codes){
+            if(! found.contains(code)){
+                shardRouter.previousShardFor(code)
+                        .ifPresent(shard -> moving.computeIfAbsent(shard, key -> new ArrayList<>()).add(code));
+            }
+        }
+        moving.forEach((shard, shardCodes) ->
+                rows.addAll(onShard(shard, () -> urlMappingRepository.findActiveRows(shardCodes, instant))));
+        return rows;
     }
 
+    private static Map<String, List<String>> groupByShard(Collection<String> codes, Function<String, String> shardFor){
+        Map<String, List<String>> byShard = new HashMap<>();
+        for(String code : codes){
+            byShard.computeIfAbsent(shardFor.apply(code), shard -> new ArrayList<>()).add(code);
+        }
+        return byShard;
+    }
+
+    /**
+     * Resolves a code for the redirect path, going to the database only on a cache miss. A code
+     * another node owns on the affinity ring is asked of that node first, so each code is cached
+     * on one node only. If the database is unavailable the last known mapping is served instead,
+     * as long as it has not expired.
+     */
+    public Optional<CachedUrlMapping> resolveRedirect(String code, Instant instant){
+        return resolve(code, instant, true);
+    }
+
+    /**
+     * Same as {@link #resolveRedirect} for a lookup another node routed here, but never routed on:
+     * two nodes with different views of the ring must not bounce a code between them.
+     */
+    public Optional<CachedUrlMapping> resolveForPeer(String code, Instant instant){
+        return resolve(code, instant, false);
+    }
+
+    private Optional<CachedUrlMapping> resolve(String code, Instant instant, boolean routeToOwner){
+        LookupEvent event = new LookupEvent();
+        event.begin();
+        String source = LookupEvent.NONE;
+        try {
+            Optional<CachedUrlMapping> cached = urlMappingCache.get(code, instant);
+            if(cached.isPresent()){
+                source = LookupEvent.CACHE;
+                slidingExpiryService.touch(cached.get(), instant);
+                return cached;
+            }
+
+            Optional<ClusterMembership.Peer> owner = routeToOwner ? clusterMembership.ownerOf(code) : Optional.empty();
+            if(owner.isPresent()){
+                try {
+                    // the owner caches it and extends its expiry; only pinned heavy hitters are kept here too
+                    Optional<CachedUrlMapping> remote = peerLookupClient.lookup(owner.get(), code)
+                            .filter(mapping -> mapping.isActiveAt(instant));
+                    remote.filter(mapping -> urlMappingCache.isPinned(code)).ifPresent(urlMappingCache::put);
+                    if(remote.isPresent()){
+                        source = LookupEvent.PEER;
+                    }
+                    return remote;
+                } catch (PeerUnavailableException e) {
+                    // read the database as if affinity were off
+                }
+            }
+
+            Optional<CachedUrlMapping> loaded;
+            try {
+                loaded = fetchUrlMapping(code, instant).map(urlCodecService::toCached);
+            } catch (DatabaseUnavailableException e) {
+                Optional<CachedUrlMapping> stale = staleMappingStore.fallback(code, instant);
+                if(stale.isPresent()){
+                    source = LookupEvent.STALE;
+                    return stale;
+                }
+                throw e;
+            }
+            loaded.ifPresent(mapping -> {
+                urlMappingCache.put(mapping);
+                staleMappingStore.put(mapping);
+                slidingExpiryService.touch(mapping, instant);
+            });
+            if(loaded.isPresent()){
+                source = LookupEvent.DATABASE;
+            }
+            return loaded;
+        } finally {
+            event.finish(code, source);
+        }
+    }
+
+    /**
+     * With several shards the long url cannot be searched everywhere, so the digest table on the
+     * shard owning the url's digest points at the code, which is then read from its own shard.
+     */
     public Optional<UrlMapping> fetchByLongUrl(String longUrl, Instant instant){
-        return urlMappingRepository.findByLongUrlAndExpiresAtGreaterThanEqual(longUrl, instant);
+        if(! shardRouter.isSharded()){
+            return onShard(ShardRouter.DEFAULT_SHARD,
+                    () -> urlMappingRepository.findByLongUrlAndExpiresAtGreaterThanEqual(longUrl, instant));
+        }
+
+        String digest = UrlHashUtil.digest(longUrl);
+        Optional<UrlDigest> urlDigest = onShard(shardRouter.shardForDigest(digest),
+                () -> urlDigestRepository.findByDigestAndExpiresAtGreaterThanEqual(digest, instant));
+        if(urlDigest.isEmpty()){
+            urlDigest = shardRouter.previousShardFor(digest)
+                    .flatMap(shard -> onShard(shard,
+                            () -> urlDigestRepository.findByDigestAndExpiresAtGreaterThanEqual(digest, instant)));
+        }
+        return urlDigest
+                .flatMap(found -> fetchUrlMapping(found.getCode(), instant))
+                .filter(urlMapping -> urlMapping.getLongUrl().equals(longUrl));
     }
 
+    /**
+     * Stores a new mapping under a fresh code. A code can still be lost to a concurrent create after
+     * the probe; the create then starts over with another code, a bounded number of times.
+     */
     public UrlMapping createShortUrlCode(ShortenUrlRequest request){
-        boolean isValidHash = false;
-        String code = "";
-        while(! isValidHash){
-            code = UrlHashUtil.generateMd5Hash(request.longUrl());
-            Instant instant = Instant.now();
-            if(fetchUrlMapping(code, instant).isEmpty()){
-                isValidHash = true;
+        for(int attempt = 1; attempt <= MAX_CREATE_ATTEMPTS; attempt++){
+            Optional<UrlMapping> created = tryCreate(request);
+            if(created.isPresent()){
+                return created.get();
+            }
+        }
+        throw new IllegalStateException("No free code found in " + MAX_CREATE_ATTEMPTS + " attempts");
+    }
+
+    /**
+     * One create with one code; empty if that code was taken by someone else before it was stored.
+     */
+    private Optional<UrlMapping> tryCreate(ShortenUrlRequest request){
+        CreateEvent event = new CreateEvent();
+        event.begin();
+        int collisions = 0;
+        // a reclaimed code was confirmed deleted, so it skips the probe
+        Optional<String> recycled = codeRecyclingService.poll();
+        String code;
+        if(recycled.isPresent()){
+            code = recycled.get();
+        } else {
+            while(true){
+                CollisionRetryEvent probe = new CollisionRetryEvent();
+                probe.begin();
+                code = UrlHashUtil.generateMd5Hash(request.longUrl());
+                boolean taken = codeTaken(code);
+                codeRecyclingService.recordProbe(taken);
+                if(! taken){
+                    break;
+                }
+                probe.finish(code, ++collisions);
             }
         }
 
@@ -41,11 +265,60 @@ public class UrlService {
         newUrlMapping.setCode(code);
         newUrlMapping.setLongUrl(request.longUrl());
         newUrlMapping.setExpiresAt(UrlHashUtil.calculateExpiresAt());
+        String shard = shardRouter.shardForCode(code);
 
-        return urlMappingRepository.save(newUrlMapping);
+        if(groupCommitWriter.isEnabled()){
+            // the writer stores the digest row too; empty means the code was taken since the probe
+            Optional<UrlMapping> stored = databaseCircuitBreaker.call(shard, () -> groupCommitWriter.insert(newUrlMapping));
+            event.finish(code, shard, collisions, true);
+            return stored;
+        }
+
+        UrlMapping saved;
+        try {
+            saved = onShard(shard, () -> urlMappingRepository.save(newUrlMapping));
+        } catch (DataIntegrityViolationException e) {
+            // another node generated the recycled code at random since it was reclaimed
+            if(recycled.isEmpty()){
+                throw e;
+            }
+            return Optional.empty();
+        }
+        if(shardRouter.isSharded()){
+            // written after the mapping, so a digest never points at a code that does not exist yet
+            String digest = UrlHashUtil.digest(saved.getLongUrl());
+            onShard(shardRouter.shardForDigest(digest),
+                    () -> urlDigestRepository.upsert(digest, saved.getCode(), saved.getExpiresAt()));
+        }
+        event.finish(code, shard, collisions, false);
+        return Optional.of(saved);
+    }
+
+    /**
+     * Expired rows count too: the unique constraint on code does not look at expires_at.
+     */
+    private boolean codeTaken(String code){
+        if(onShard(shardRouter.shardForCode(code), () -> urlMappingRepository.existsByCode(code))){
+            return true;
+        }
+        return shardRouter.previousShardFor(code)
+                .map(shard -> onShard(shard, () -> urlMappingRepository.existsByCode(code)))
+                .orElse(false);
     }
 
     public void updateHitCount(UrlMapping urlMap) {
-        urlMappingRepository.save(urlMap);
+        onShard(shardRouter.shardForCode(urlMap.getCode()), () -> urlMappingRepository.save(urlMap));
+    }
+
+    public void recordHit(String code) {
+        hitCountBuffer.increment(code);
+        metadataResponseCache.recordHit(code);
+    }
+
+    /**
+     * Every repository call goes through here: scoped to one shard and guarded by that shard's breaker.
+     */
+    private <T> T onShard(String shard, Supplier<T> action){
+        return databaseCircuitBreaker.call(shard, () -> shardRouter.onShard(shard, action));
     }
 }
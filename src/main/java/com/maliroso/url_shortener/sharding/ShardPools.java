@@ -0,0 +1,10 @@
+package com.maliroso.url_shortener.sharding;
+
+import javax.sql.DataSource;
+import java.util.Map;
+
+/**
+ * The per-shard pools by shard name, for tools such as the rebalancer that address shards directly.
+ */
+public record ShardPools(Map<String, DataSource> dataSources) {
+}
@@ -0,0 +1,239 @@
+package com.maliroso.url_shortener.sharding;
+
+import com.maliroso.url_shortener.dto.response.ShardRebalanceStatus;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Moves rows whose owner changed after the shard list was edited. Every shard is scanned by id
+ * (by digest for url_digests) in small batches; the rows of a batch owned elsewhere are copied to
+ * each owner with one insert and then deleted from the scanned shard with one delete. Reads keep
+ * working meanwhile because lookups fall back to the {@code previous-shards} ring, and a run that
+ * fails half-way can simply be started again.
+ */
+@Slf4j
+@Component
+@ConditionalOnProperty(name = "shortener.sharding.enabled", havingValue = "true")
+public class ShardRebalancer {
+
+    private static final String SELECT_MAPPINGS_SQL = """
+            select id, code, long_url, hit_count, created_at, expires_at
+            from url_mappings where id > ? order by id limit ?
+            """;
+
+    private static final String INSERT_MAPPINGS_PREFIX = "insert into url_mappings (id, code, long_url, hit_count, created_at, expires_at) values ";
+
+    // the target shard's own sequence hands out the id, since ids are only unique per shard
+    private static final String INSERT_MAPPING_ROW = "(nextval('url_mappings_seq'), ?, ?, ?, ?, ?)";
+
+    private static final String DELETE_MAPPINGS_SQL = "delete from url_mappings where id = any(?)";
+
+    private static final String SELECT_DIGESTS_SQL = """
+            select digest, code, expires_at
+            from url_digests where digest > ? order by digest limit ?
+            """;
+
+    private static final String INSERT_DIGESTS_PREFIX = "insert into url_digests (digest, code, expires_at) values ";
+
+    private static final String INSERT_DIGEST_ROW = "(?, ?, ?)";
+
+    private static final String DELETE_DIGESTS_SQL = "delete from url_digests where digest = any(?)";
+
+    // a row copied by an earlier, interrupted run is already there
+    private static final String INSERT_SUFFIX = " on conflict do nothing";
+
+    private record MappingRow(long id, String code, String longUrl, long hitCount, Timestamp createdAt, Timestamp expiresAt) {
+    }
+
+    private record DigestRow(String digest, String code, Timestamp expiresAt) {
+    }
+
+    private final Map<String, JdbcTemplate> shards = new LinkedHashMap<>();
+
+    private final ShardRouter shardRouter;
+
+    private final List<String> previousShards;
+
+    private final int batchSize;
+
+    private final AtomicBoolean running = new AtomicBoolean();
+
+    private final AtomicLong scanned = new AtomicLong();
+
+    private final AtomicLong moved = new AtomicLong();
+
+    private volatile String state = "idle";
+
+    private volatile Instant startedAt;
+
+    private volatile Instant finishedAt;
+
+    private volatile String error;
+
+    public ShardRebalancer(
+            ShardPools shardPools,
+            ShardRouter shardRouter,
+            ShardingProperties properties,
+            @Value("${shortener.sharding.rebalance-batch-size:500}") int batchSize
+    ){
+        shardPools.dataSources().forEach((name, dataSource) -> shards.put(name, new JdbcTemplate(dataSource)));
+        this.shardRouter = shardRouter;
+        this.previousShards = properties.previousShards();
+        this.batchSize = batchSize;
+    }
+
+    /**
+     * Starts a rebalance on a background thread. Returns false if one is already running.
+     */
+    public boolean start(){
+        if(! running.compareAndSet(false, true)){
+            return false;
+        }
+        Thread thread = new Thread(this::runExclusively, "shard-rebalancer");
+        thread.setDaemon(true);
+        thread.start();
+        return true;
+    }
+
+    /**
+     * Runs a rebalance on the calling thread.
+     */
+    public ShardRebalanceStatus rebalance(){
+        if(! running.compareAndSet(false, true)){
+            throw new IllegalStateException("A rebalance is already running");
+        }
+        runExclusively();
+        return status();
+    }
+
+    public ShardRebalanceStatus status(){
+        return new ShardRebalanceStatus(state, shardRouter.shardNames(), previousShards,
+                scanned.get(), moved.get(), startedAt, finishedAt, error);
+    }
+
+    private void runExclusively(){
+        scanned.set(0);
+        moved.set(0);
+        error = null;
+        finishedAt = null;
+        startedAt = Instant.now();
+        state = "running";
+        try {
+            for(String shard : shards.keySet()){
+                moveMappings(shard);
+                moveDigests(shard);
+            }
+            state = "done";
+            log.info("Shard rebalance scanned {} rows and moved {}", scanned.get(), moved.get());
+        } catch (RuntimeException e) {
+            state = "failed";
+            error = e.getMessage();
+            log.error("Shard rebalance failed", e);
+        } finally {
+            finishedAt = Instant.now();
+            running.set(false);
+        }
+    }
+
+    private void moveMappings(String shard){
+        JdbcTemplate source = shards.get(shard);
+        long afterId = 0;
+        while(true){
+            List<MappingRow> page = source.query(SELECT_MAPPINGS_SQL, (rs, i) -> new MappingRow(
+                    rs.getLong("id"), rs.getString("code"), rs.getString("long_url"), rs.getLong("hit_count"),
+                    rs.getTimestamp("created_at"), rs.getTimestamp("expires_at")
+            ), afterId, batchSize);
+
+            Map<String, List<MappingRow>> byOwner = new LinkedHashMap<>();
+            for(MappingRow row : page){
+                afterId = row.id();
+                String owner = shardRouter.shardForCode(row.code());
+                if(! owner.equals(shard)){
+                    byOwner.computeIfAbsent(owner, key -> new ArrayList<>()).add(row);
+                }
+            }
+            scanned.addAndGet(page.size());
+
+            byOwner.forEach((owner, rows) -> {
+                List<Object> args = new ArrayList<>(rows.size() * 5);
+                for(MappingRow row : rows){
+                    Collections.addAll(args, row.code(), row.longUrl(), row.hitCount(), row.createdAt(), row.expiresAt());
+                }
+                target(owner).update(multiRowInsert(INSERT_MAPPINGS_PREFIX, INSERT_MAPPING_ROW, rows.size()), args.toArray());
+                source.update(DELETE_MAPPINGS_SQL, (Object) rows.stream().map(MappingRow::id).toArray(Long[]::new));
+                moved.addAndGet(rows.size());
+            });
+
+            if(page.size() < batchSize){
+                return;
+            }
+        }
+    }
+
+    private void moveDigests(String shard){
+        JdbcTemplate source = shards.get(shard);
+        String afterDigest = "";
+        while(true){
+            List<DigestRow> page = source.query(SELECT_DIGESTS_SQL, (rs, i) -> new DigestRow(
+                    rs.getString("digest"), rs.getString("code"), rs.getTimestamp("expires_at")
+            ), afterDigest, batchSize);
+
+            Map<String, List<DigestRow>> byOwner = new LinkedHashMap<>();
+            for(DigestRow row : page){
+                afterDigest = row.digest();
+                String owner = shardRouter.shardForDigest(row.digest());
+                if(! owner.equals(shard)){
+                    byOwner.computeIfAbsent(owner, key -> new ArrayList<>()).add(row);
+                }
+            }
+            scanned.addAndGet(page.size());
+
+            byOwner.forEach((owner, rows) -> {
+                List<Object> args = new ArrayList<>(rows.size() * 3);
+                for(DigestRow row : rows){
+                    Collections.addAll(args, row.digest(), row.code(), row.expiresAt());
+                }
+                target(owner).update(multiRowInsert(INSERT_DIGESTS_PREFIX, INSERT_DIGEST_ROW, rows.size()), args.toArray());
+                source.update(DELETE_DIGESTS_SQL, (Object) rows.stream().map(DigestRow::digest).toArray(String[]::new));
+                moved.addAndGet(rows.size());
+            });
+
+            if(page.size() < batchSize){
+                return;
+            }
+        }
+    }
+
+    private JdbcTemplate target(String shard){
+        JdbcTemplate target = shards.get(shard);
+        if(target == null){
+            throw new IllegalStateException("No pool configured for shard " + shard);
+        }
+        return target;
+    }
+
+    private static String multiRowInsert(String prefix, String row, int rows){
+        StringBuilder sql = new StringBuilder(prefix.length() + rows * (row.length() + 2) + INSERT_SUFFIX.length());
+        sql.append(prefix);
+        for(int i = 0; i < rows; i++){
+            if(i > 0){
+                sql.append(", ");
+            }
+            sql.append(row);
+        }
+        return sql.append(INSERT_SUFFIX).toString();
+    }
+}
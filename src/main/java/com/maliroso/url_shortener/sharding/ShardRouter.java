@@ -0,0 +1,93 @@
+package com.maliroso.url_shortener.sharding;
+
+import com.maliroso.url_shortener.utils.ConsistentHashRing;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+/**
+ * Maps codes and long-url digests to shards and scopes work to one shard. The shard chosen by
+ * {@link #onShard} is held in a thread local that {@link ShardRoutingDataSource} reads when a
+ * transaction obtains its connection, so every repository call must run inside {@code onShard}
+ * and no transaction may span two shards.
+ */
+public class ShardRouter {
+
+    public static final String DEFAULT_SHARD = "default";
+
+    private static final ThreadLocal<String> currentShard = new ThreadLocal<>();
+
+    private final ConsistentHashRing ring;
+
+    private final ConsistentHashRing previousRing;
+
+    private final boolean sharded;
+
+    public ShardRouter(List<String> shards, List<String> previousShards, int virtualNodes) {
+        this.ring = new ConsistentHashRing(shards, virtualNodes);
+        this.previousRing = previousShards == null || previousShards.isEmpty()
+                ? null
+                : new ConsistentHashRing(previousShards, virtualNodes);
+        this.sharded = shards.size() > 1 || previousRing != null;
+    }
+
+    /**
+     * Router for the plain single-database setup.
+     */
+    public static ShardRouter single() {
+        return new ShardRouter(List.of(DEFAULT_SHARD), List.of(), 1);
+    }
+
+    public static String currentShard() {
+        return currentShard.get();
+    }
+
+    public boolean isSharded() {
+        return sharded;
+    }
+
+    public List<String> shardNames() {
+        return ring.nodes();
+    }
+
+    public String shardForCode(String code) {
+        return ring.nodeFor(code);
+    }
+
+    public String shardForDigest(String digest) {
+        return ring.nodeFor(digest);
+    }
+
+    /**
+     * Where a code or digest lived before the last change of shard count, if that differs from its owner now.
+     */
+    public Optional<String> previousShardFor(String key) {
+        if (previousRing == null) {
+            return Optional.empty();
+        }
+        String previous = previousRing.nodeFor(key);
+        return previous.equals(ring.nodeFor(key)) ? Optional.empty() : Optional.of(previous);
+    }
+
+    public <T> T onShard(String shard, Supplier<T> action) {
+        String outer = currentShard.get();
+        currentShard.set(shard);
+        try {
+            return action.get();
+        } finally {
+            if (outer == null) {
+                currentShard.remove();
+            } else {
+                currentShard.set(outer);
+            }
+        }
+    }
+
+    public void runOnShard(String shard, Runnable action) {
+        onShard(shard, () -> {
+            action.run();
+            return null;
+        });
+    }
+}
@@ -0,0 +1,16 @@
+package com.maliroso.url_shortener.sharding;
+
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Picks the shard pool from the thread's {@link ShardRouter#currentShard()}. It is wrapped in a
+ * {@code LazyConnectionDataSourceProxy}, so the choice is made at the first statement of a
+ * transaction rather than when the transaction begins.
+ */
+public class ShardRoutingDataSource extends AbstractRoutingDataSource {
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+        return ShardRouter.currentShard();
+    }
+}
@@ -0,0 +1,36 @@
+package com.maliroso.url_shortener.sharding;
+
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.PooledOptimizer;
+import org.hibernate.id.enhanced.SequenceStyleGenerator;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Hibernate's sequence generator with one pooled block per shard. The stock generator keeps a
+ * single block for the whole data source, so ids fetched from one shard's sequence were handed to
+ * inserts routed to another, where that shard's own sequence hands out the same values.
+ *
+ * <p>The next value is read on the session's connection, which the routing data source has
+ * already pointed at the current shard, so every id comes from the sequence of the shard it is
+ * stored on, as it does for the plain {@code nextval} inserts.
+ */
+public class ShardSequenceGenerator extends SequenceStyleGenerator {
+
+    private final Map<String, Optimizer> optimizers = new ConcurrentHashMap<>();
+
+    @Override
+    public Object generate(SharedSessionContractImplementor session, Object object) {
+        String shard = ShardRouter.currentShard();
+        return generate(shard == null ? ShardRouter.DEFAULT_SHARD : shard, getDatabaseStructure().buildCallback(session));
+    }
+
+    Object generate(String shard, AccessCallback callback) {
+        Optimizer optimizer = optimizers.computeIfAbsent(shard,
+                name -> new PooledOptimizer(Long.class, getOptimizer().getIncrementSize()));
+        return optimizer.generate(callback);
+    }
+}
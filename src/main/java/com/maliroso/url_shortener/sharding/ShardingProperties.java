@@ -0,0 +1,38 @@
+package com.maliroso.url_shortener.sharding;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.bind.DefaultValue;
+
+import java.util.List;
+
+/**
+ * {@code shortener.sharding.*}. When {@code previous-shards} is set, the ring it describes is
+ * still consulted on lookup misses until the rebalancer has moved every row to its new owner.
+ * A shard being removed stays listed with {@code retired: true}: it keeps its pool for those
+ * lookups and for the rebalancer to drain, but owns nothing on the current ring.
+ */
+@ConfigurationProperties(prefix = "shortener.sharding")
+public record ShardingProperties(
+        @DefaultValue("false") boolean enabled,
+        @DefaultValue("128") int virtualNodes,
+        @DefaultValue("10") int maximumPoolSize,
+        @DefaultValue("1000") long connectionTimeoutMs,
+        @DefaultValue List<Shard> shards,
+        @DefaultValue List<String> previousShards
+) {
+    public record Shard(
+            String name,
+            String url,
+            String username,
+            String password,
+            @DefaultValue("false") boolean retired
+    ) {
+    }
+
+    /**
+     * The shards on the current ring, in configured order.
+     */
+    public List<String> shardNames() {
+        return shards.stream().filter(shard -> ! shard.retired()).map(Shard::name).toList();
+    }
+}
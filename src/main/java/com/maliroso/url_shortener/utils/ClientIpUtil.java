@@ -0,0 +1,14 @@
+package com.maliroso.url_shortener.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+public class ClientIpUtil {
+
+    public static String resolve(HttpServletRequest request){
+        String ip = request.getHeader("X-Forwarded-For");
+        if (ip == null || ip.isEmpty() || "unknown".equalsIgnoreCase(ip)) {
+            ip = request.getRemoteAddr();
+        }
+        return ip;
+    }
+}
@@ -0,0 +1,139 @@
+package com.maliroso.url_shortener.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Compact byte form of long urls: one header byte naming a shared prefix from the dictionary,
+ * followed by the rest of the url as bytes. Plain ASCII urls, the usual case, decode with a
+ * single copy into a per-thread scratch buffer and one Latin-1 string allocation.
+ *
+ * <p>Header layout: the low 7 bits hold the prefix index plus one (0 = no prefix), the high bit
+ * is set when the url contains non-ASCII characters and was stored as UTF-8.
+ */
+public class CompactUrlCodec {
+
+    public static final int MAX_PREFIXES = 127;
+
+    public static final CompactUrlCodec IDENTITY = new CompactUrlCodec(List.of());
+
+    private static final int NON_ASCII = 0x80;
+
+    private static final int MAX_SCRATCH = 8192;
+
+    private static final ThreadLocal<byte[]> scratch = ThreadLocal.withInitial(() -> new byte[512]);
+
+    private final List<String> prefixes;
+
+    private final byte[][] prefixBytes;
+
+    // indexes into prefixes, longest first, so the longest matching prefix wins
+    private final int[] matchOrder;
+
+    public CompactUrlCodec(List<String> prefixes) {
+        List<String> unique = new ArrayList<>(new LinkedHashSet<>(prefixes));
+        unique.removeIf(String::isEmpty);
+        if (unique.size() > MAX_PREFIXES) {
+            throw new IllegalArgumentException("At most " + MAX_PREFIXES + " prefixes are supported");
+        }
+        this.prefixes = List.copyOf(unique);
+        this.prefixBytes = new byte[unique.size()][];
+        for (int i = 0; i < unique.size(); i++) {
+            prefixBytes[i] = unique.get(i).getBytes(StandardCharsets.UTF_8);
+        }
+        List<Integer> order = new ArrayList<>();
+        for (int i = 0; i < unique.size(); i++) {
+            order.add(i);
+        }
+        order.sort(Comparator.comparingInt((Integer i) -> unique.get(i).length()).reversed());
+        this.matchOrder = order.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    public List<String> prefixes() {
+        return prefixes;
+    }
+
+    public byte[] encode(String url) {
+        int prefix = -1;
+        for (int i : matchOrder) {
+            if (url.startsWith(prefixes.get(i))) {
+                prefix = i;
+                break;
+            }
+        }
+
+        String rest = prefix < 0 ? url : url.substring(prefixes.get(prefix).length());
+        boolean ascii = isAscii(url);
+        byte[] restBytes = rest.getBytes(ascii ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+        byte[] encoded = new byte[restBytes.length + 1];
+        encoded[0] = (byte) ((prefix + 1) | (ascii ? 0 : NON_ASCII));
+        System.arraycopy(restBytes, 0, encoded, 1, restBytes.length);
+        return encoded;
+    }
+
+    public String decode(byte[] encoded) {
+        int header = encoded[0] & 0xff;
+        int prefix = (header & ~NON_ASCII) - 1;
+        int restLength = encoded.length - 1;
+        int prefixLength = prefix < 0 ? 0 : prefixBytes[prefix].length;
+        int length = prefixLength + restLength;
+
+        byte[] buffer = scratch.get();
+        if (buffer.length < length) {
+            if (length > MAX_SCRATCH) {
+                buffer = new byte[length];
+            } else {
+                buffer = new byte[Math.min(MAX_SCRATCH, Math.max(length, buffer.length * 2))];
+                scratch.set(buffer);
+            }
+        }
+        if (prefixLength > 0) {
+            System.arraycopy(prefixBytes[prefix], 0, buffer, 0, prefixLength);
+        }
+        System.arraycopy(encoded, 1, buffer, prefixLength, restLength);
+        return new String(buffer, 0, length,
+                (header & NON_ASCII) == 0 ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Proposes a dictionary from sample urls: candidate prefixes are the origin and the first one
+     * and two path segments of each url, ranked by the bytes they would save across the sample.
+     */
+    public static List<String> learn(Iterable<String> sample, int maxPrefixes, int minCount) {
+        Map<String, Integer> counts = new HashMap<>();
+        for (String url : sample) {
+            int schemeEnd = url.indexOf("://");
+            if (schemeEnd < 0) {
+                continue;
+            }
+            int cut = url.indexOf('/', schemeEnd + 3);
+            for (int depth = 0; depth < 3 && cut >= 0; depth++) {
+                counts.merge(url.substring(0, cut + 1), 1, Integer::sum);
+                cut = url.indexOf('/', cut + 1);
+            }
+        }
+
+        return counts.entrySet().stream()
+                .filter(entry -> entry.getValue() >= minCount)
+                .sorted(Comparator.comparingLong((Map.Entry<String, Integer> entry) ->
+                        (long) entry.getValue() * entry.getKey().length()).reversed()
+                        .thenComparing(Map.Entry::getKey))
+                .limit(Math.min(maxPrefixes, MAX_PREFIXES))
+                .map(Map.Entry::getKey)
+                .toList();
+    }
+
+    private static boolean isAscii(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (value.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
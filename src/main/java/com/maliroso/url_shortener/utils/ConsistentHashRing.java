@@ -0,0 +1,74 @@
+package com.maliroso.url_shortener.utils;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Consistent-hash ring over named nodes with virtual nodes. The hash is computed here rather than
+ * with {@link String#hashCode()} so every process, including the edge server, agrees on placement.
+ * Adding or removing one of N nodes moves only about 1/N of the keys.
+ */
+public class ConsistentHashRing {
+
+    private final List<String> nodes;
+    private final long[] points;
+    private final String[] owners;
+
+    public ConsistentHashRing(List<String> nodes, int virtualNodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("ring needs at least one node");
+        }
+        if (virtualNodes <= 0) {
+            throw new IllegalArgumentException("virtualNodes must be positive");
+        }
+        this.nodes = List.copyOf(nodes);
+
+        int size = nodes.size() * virtualNodes;
+        long[][] entries = new long[size][2];
+        int i = 0;
+        for (int n = 0; n < nodes.size(); n++) {
+            for (int v = 0; v < virtualNodes; v++) {
+                entries[i][0] = hash(nodes.get(n) + "#" + v);
+                entries[i][1] = n;
+                i++;
+            }
+        }
+        // ties broken by node index so the ring does not depend on input order of equal points
+        Arrays.sort(entries, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+
+        this.points = new long[size];
+        this.owners = new String[size];
+        for (int p = 0; p < size; p++) {
+            points[p] = entries[p][0];
+            owners[p] = nodes.get((int) entries[p][1]);
+        }
+    }
+
+    public String nodeFor(String key) {
+        long h = hash(key);
+        int index = Arrays.binarySearch(points, h);
+        if (index < 0) {
+            index = -index - 1;
+        }
+        return owners[index == points.length ? 0 : index];
+    }
+
+    public List<String> nodes() {
+        return nodes;
+    }
+
+    // FNV-1a over the UTF-16 chars followed by the SplitMix64 finalizer for avalanche
+    static long hash(String key) {
+        long h = 0xcbf29ce484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            h ^= key.charAt(i);
+            h *= 0x100000001b3L;
+        }
+        h ^= h >>> 30;
+        h *= 0xbf58476d1ce4e5b9L;
+        h ^= h >>> 27;
+        h *= 0x94d049bb133111ebL;
+        h ^= h >>> 31;
+        return h;
+    }
+}
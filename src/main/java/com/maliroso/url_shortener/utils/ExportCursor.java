@@ -0,0 +1,51 @@
+package com.maliroso.url_shortener.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque resume token for the export: the index of the shard being read and the last row id
+ * written from it. Tokens for the first shard keep the plain {@code id:<n>} form, so cursors
+ * issued before sharding still resume.
+ */
+public class ExportCursor {
+    private static final String PREFIX = "id:";
+
+    public record Position(int shard, long lastId) {
+    }
+
+    public static String encode(long lastId){
+        return encode(0, lastId);
+    }
+
+    public static String encode(int shard, long lastId){
+        String text = shard == 0 ? PREFIX + lastId : PREFIX + shard + "/" + lastId;
+        return Base64.getUrlEncoder().withoutPadding()
+                .encodeToString(text.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    public static Position decode(String token){
+        String decoded;
+        try {
+            decoded = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid export cursor", e);
+        }
+        if(! decoded.startsWith(PREFIX)){
+            throw new IllegalArgumentException("Invalid export cursor");
+        }
+        String body = decoded.substring(PREFIX.length());
+        int slash = body.indexOf('/');
+        try {
+            Position position = slash < 0
+                    ? new Position(0, Long.parseLong(body))
+                    : new Position(Integer.parseInt(body.substring(0, slash)), Long.parseLong(body.substring(slash + 1)));
+            if(position.shard() < 0){
+                throw new IllegalArgumentException("Invalid export cursor");
+            }
+            return position;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid export cursor", e);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.maliroso.url_shortener.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Escaping helpers for the NDJSON and CSV record formats used by export and import.
+ */
+public class RecordFormatUtil {
+
+    public static void appendJsonString(StringBuilder sb, String value){
+        if(value == null){
+            sb.append("null");
+            return;
+        }
+        sb.append('"');
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> sb.append("\\\"");
+                case '\\' -> sb.append("\\\\");
+                case '\n' -> sb.append("\\n");
+                case '\r' -> sb.append("\\r");
+                case '\t' -> sb.append("\\t");
+                default -> {
+                    if(c < 0x20){
+                        sb.append(String.format("\\u%04x", (int) c));
+                    } else {
+                        sb.append(c);
+                    }
+                }
+            }
+        }
+        sb.append('"');
+    }
+
+    public static void appendCsvField(StringBuilder sb, String value){
+        if(value == null){
+            return;
+        }
+        boolean quote = false;
+        for(int i = 0; i < value.length() && ! quote; i++){
+            char c = value.charAt(i);
+            quote = c == ',' || c == '"' || c == '\n' || c == '\r';
+        }
+        if(! quote){
+            sb.append(value);
+            return;
+        }
+        sb.append('"');
+        for(int i = 0; i < value.length(); i++){
+            char c = value.charAt(i);
+            if(c == '"'){
+                sb.append('"');
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+
+    /**
+     * Splits one CSV line, honouring double-quoted fields with "" escapes. Fields spanning several
+     * lines are not supported and are reported as malformed.
+     */
+    public static List<String> parseCsvLine(String line){
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        int i = 0;
+        while(i < line.length()){
+            char c = line.charAt(i);
+            if(quoted){
+                if(c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"'){
+                    field.append('"');
+                    i++;
+                } else if(c == '"'){
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if(c == '"' && field.isEmpty()){
+                quoted = true;
+            } else if(c == ','){
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+            i++;
+        }
+        if(quoted){
+            throw new IllegalArgumentException("Unterminated quoted field");
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
@@ -0,0 +1,192 @@
+package com.maliroso.url_shortener.utils;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Space-Saving top-K sketch (Metwally et al.). Keeps at most {@code capacity} counters no matter
+ * how many distinct items are offered; any item whose true frequency exceeds N / capacity is
+ * guaranteed to be tracked. Counts are over-estimates by at most the reported error.
+ *
+ * <p>Counters sit in the paper's stream-summary layout: a list of buckets in ascending count
+ * order, each holding the counters with that count. An increment moves a counter to the
+ * neighbouring bucket and the eviction victim is any counter of the first bucket, so
+ * {@link #offer} is O(1) however large the capacity.
+ */
+public class SpaceSavingSketch {
+
+    private final int capacity;
+    private final Map<String, Counter> counters;
+
+    // lowest count first
+    private Bucket minBucket;
+
+    public SpaceSavingSketch(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.counters = new HashMap<>(capacity * 2);
+    }
+
+    public synchronized void offer(String item) {
+        Counter counter = counters.get(item);
+        if (counter != null) {
+            increment(counter);
+            return;
+        }
+
+        if (counters.size() < capacity) {
+            counter = new Counter(item);
+            counters.put(item, counter);
+            if (minBucket == null || minBucket.count != 1) {
+                Bucket ones = new Bucket(1);
+                ones.next = minBucket;
+                if (minBucket != null) {
+                    minBucket.prev = ones;
+                }
+                minBucket = ones;
+            }
+            minBucket.add(counter);
+            return;
+        }
+
+        // evict a smallest counter and hand its count over to the newcomer as error
+        Counter min = minBucket.first;
+        counters.remove(min.item);
+        min.item = item;
+        min.error = minBucket.count;
+        counters.put(item, min);
+        increment(min);
+    }
+
+    private void increment(Counter counter) {
+        Bucket from = counter.bucket;
+        Bucket to = from.next;
+        if (to == null || to.count != from.count + 1) {
+            to = new Bucket(from.count + 1);
+            to.prev = from;
+            to.next = from.next;
+            if (from.next != null) {
+                from.next.prev = to;
+            }
+            from.next = to;
+        }
+        from.remove(counter);
+        to.add(counter);
+        if (from.first == null) {
+            unlink(from);
+        }
+    }
+
+    private void unlink(Bucket bucket) {
+        if (bucket.prev == null) {
+            minBucket = bucket.next;
+        } else {
+            bucket.prev.next = bucket.next;
+        }
+        if (bucket.next != null) {
+            bucket.next.prev = bucket.prev;
+        }
+    }
+
+    /**
+     * Halves every counter so the sketch follows the recent rate rather than the all-time total.
+     * Halving keeps the order, so buckets that land on the same count are simply merged.
+     */
+    public synchronized void decay() {
+        Bucket bucket = minBucket;
+        while (bucket != null) {
+            Bucket next = bucket.next;
+            bucket.count >>= 1;
+            for (Counter counter = bucket.first; counter != null; counter = counter.next) {
+                counter.error >>= 1;
+            }
+            if (bucket.count == 0) {
+                for (Counter counter = bucket.first; counter != null; counter = counter.next) {
+                    counters.remove(counter.item);
+                }
+                unlink(bucket);
+            } else if (bucket.prev != null && bucket.prev.count == bucket.count) {
+                Bucket merged = bucket.prev;
+                while (bucket.first != null) {
+                    Counter counter = bucket.first;
+                    bucket.remove(counter);
+                    merged.add(counter);
+                }
+                unlink(bucket);
+            }
+            bucket = next;
+        }
+    }
+
+    public synchronized List<Entry> top(int limit) {
+        List<Bucket> ascending = new ArrayList<>();
+        for (Bucket bucket = minBucket; bucket != null; bucket = bucket.next) {
+            ascending.add(bucket);
+        }
+        List<Entry> entries = new ArrayList<>(Math.min(limit, counters.size()));
+        for (int i = ascending.size() - 1; i >= 0 && entries.size() < limit; i--) {
+            Bucket bucket = ascending.get(i);
+            for (Counter counter = bucket.first; counter != null && entries.size() < limit; counter = counter.next) {
+                entries.add(new Entry(counter.item, bucket.count, counter.error));
+            }
+        }
+        return entries;
+    }
+
+    public int capacity() {
+        return capacity;
+    }
+
+    public record Entry(String item, long count, long error) {
+    }
+
+    private static final class Bucket {
+        private long count;
+        private Bucket prev;
+        private Bucket next;
+        private Counter first;
+
+        private Bucket(long count) {
+            this.count = count;
+        }
+
+        private void add(Counter counter) {
+            counter.bucket = this;
+            counter.prev = null;
+            counter.next = first;
+            if (first != null) {
+                first.prev = counter;
+            }
+            first = counter;
+        }
+
+        private void remove(Counter counter) {
+            if (counter.prev == null) {
+                first = counter.next;
+            } else {
+                counter.prev.next = counter.next;
+            }
+            if (counter.next != null) {
+                counter.next.prev = counter.prev;
+            }
+            counter.prev = null;
+            counter.next = null;
+        }
+    }
+
+    private static final class Counter {
+        private String item;
+        private long error;
+        private Bucket bucket;
+        private Counter prev;
+        private Counter next;
+
+        private Counter(String item) {
+            this.item = item;
+        }
+    }
+}
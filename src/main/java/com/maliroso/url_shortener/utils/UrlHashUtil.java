@@ -1,14 +1,21 @@
 package com.maliroso.url_shortener.utils;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.security.SecureRandom;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.HexFormat;
 import java.util.Random;
+import java.util.regex.Pattern;
 
 public class UrlHashUtil {
     private static final int hashLength = 6;
     private static final String chars = "abcdefghijklmnopqrstuvwxyzABCDEFGHIJKLMNOPQRSTUVWXYZ0123456789";
     private static final Random random = new SecureRandom();;
+    // generated codes are base62; imported codes from other shorteners may also use '-' and '_'
+    private static final Pattern validCode = Pattern.compile("[A-Za-z0-9_-]{1,64}");
 
 
     public static String generateMd5Hash(String url){
@@ -24,6 +31,48 @@ public class UrlHashUtil {
         return sb.toString();
     }
 
+    /**
+     * SHA-256 of the long url, used to route long-url lookups to a shard without knowing the code.
+     */
+    public static String digest(String longUrl){
+        try {
+            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(sha256.digest(longUrl.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    /**
+     * Number of distinct generated codes, the denominator of keyspace occupancy.
+     */
+    public static long keyspaceSize(){
+        long size = 1;
+        for(int i = 0; i < hashLength; i++){
+            size *= chars.length();
+        }
+        return size;
+    }
+
+    /**
+     * Whether the code has the shape of a generated one, as opposed to an imported code.
+     */
+    public static boolean isGeneratedCode(String code){
+        if(code == null || code.length() != hashLength){
+            return false;
+        }
+        for(int i = 0; i < code.length(); i++){
+            if(chars.indexOf(code.charAt(i)) < 0){
+                return false;
+            }
+        }
+        return true;
+    }
+
+    public static boolean isValidCode(String code){
+        return code != null && validCode.matcher(code).matches();
+    }
+
     public static Instant calculateExpiresAt(){
         //Assume that short url codes are valid for 7 days
         Duration sevenDays = Duration.ofDays(7);
@@ -0,0 +1,22 @@
+-- Schema applied to every shard when shortener.sharding.enabled is set.
+-- Mirrors what Hibernate generates for UrlMapping and UrlDigest with ddl-auto.
+create sequence if not exists url_mappings_seq start with 1 increment by 50;
+
+create table if not exists url_mappings (
+    id bigint not null primary key,
+    code varchar(255) not null unique,
+    long_url varchar(255) not null,
+    hit_count bigint not null,
+    created_at timestamp(6) with time zone,
+    expires_at timestamp(6) with time zone
+);
+
+create index if not exists idx_code on url_mappings (code);
+
+create index if not exists idx_expires_at on url_mappings (expires_at);
+
+create table if not exists url_digests (
+    digest varchar(64) not null primary key,
+    code varchar(255) not null,
+    expires_at timestamp(6) with time zone
+);
@@ -0,0 +1,120 @@
+package com.maliroso.url_shortener;
+
+import com.maliroso.url_shortener.jdbc.SqlStatementStats;
+import com.maliroso.url_shortener.model.UrlMapping;
+import com.maliroso.url_shortener.repository.UrlMappingRepository;
+import com.maliroso.url_shortener.utils.UrlHashUtil;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+import org.springframework.test.web.servlet.RequestBuilder;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+
+/**
+ * Statement budgets of the hot endpoints, measured through the real controllers, services,
+ * repositories and Hibernate on H2, with the instrumented data source counting what reaches JDBC.
+ */
+@SpringBootTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:sql-budget;MODE=PostgreSQL;DB_CLOSE_DELAY=-1",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.datasource.username=sa",
+        "spring.datasource.password=",
+        "spring.jpa.database-platform=org.hibernate.dialect.H2Dialect",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.docker.compose.enabled=false",
+        // creates are written on the request thread, so their insert is counted too
+        "shortener.group-commit.enabled=false",
+        "shortener.access-log.enabled=false",
+        "shortener.url-codec.learn-sample-size=0",
+        "shortener.sql-stats.enabled=true"
+})
+@ActiveProfiles("test")
+@AutoConfigureMockMvc
+class EndpointSqlBudgetTests {
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private UrlMappingRepository urlMappingRepository;
+
+    @Autowired
+    private MeterRegistry meterRegistry;
+
+    @Value("${shortener.sql-stats.budget.redirect}")
+    private int redirectBudget;
+
+    @Value("${shortener.sql-stats.budget.metadata}")
+    private int metadataBudget;
+
+    @Value("${shortener.sql-stats.budget.create}")
+    private int createBudget;
+
+    @AfterEach
+    void noEndpointWentOverBudget() {
+        for (String endpoint : new String[]{"redirect", "metadata", "create"}) {
+            assertEquals(0.0, meterRegistry.get("shortener_sql_budget_exceeded_total").tag("endpoint", endpoint).counter().count(),
+                    endpoint + " went over its budget");
+        }
+    }
+
+    @Test
+    void redirect_cacheMissStaysWithinBudget() throws Exception {
+        String code = store("https://example.com/redirect");
+
+        int statements = statements(get("/r/" + code), 302);
+
+        assertTrue(statements >= 1, "a cache miss must reach the database");
+        assertTrue(statements <= redirectBudget, "redirect ran " + statements + " statements");
+    }
+
+    @Test
+    void metadata_cacheMissStaysWithinBudget() throws Exception {
+        String code = store("https://example.com/metadata");
+
+        int statements = statements(get("/api/urls/" + code), 200);
+
+        assertTrue(statements >= 1, "a cache miss must reach the database");
+        assertTrue(statements <= metadataBudget, "metadata ran " + statements + " statements");
+    }
+
+    @Test
+    void create_staysWithinBudget() throws Exception {
+        // the first save of the context fetches the sequence twice; creates after it share the block
+        store("https://example.com/warm-up");
+
+        int statements = statements(post("/api/urls")
+                .contentType(MediaType.APPLICATION_JSON)
+                .content("{\"longUrl\":\"https://example.com/create\"}"), 200);
+
+        assertTrue(statements <= createBudget, "create ran " + statements + " statements");
+    }
+
+    private String store(String longUrl) {
+        UrlMapping mapping = new UrlMapping();
+        mapping.setCode(UrlHashUtil.generateMd5Hash(longUrl));
+        mapping.setLongUrl(longUrl);
+        mapping.setExpiresAt(UrlHashUtil.calculateExpiresAt());
+        return urlMappingRepository.save(mapping).getCode();
+    }
+
+    private int statements(RequestBuilder request, int expectedStatus) throws Exception {
+        try (SqlStatementStats.Scope scope = SqlStatementStats.open()) {
+            MvcResult result = mockMvc.perform(request).andReturn();
+
+            assertEquals(expectedStatus, result.getResponse().getStatus());
+            return scope.statements();
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package com.maliroso.url_shortener.accesslog;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessLogRingBufferTest {
+
+    private String drainAll(AccessLogRingBuffer ringBuffer) {
+        ByteBuffer buffer = ByteBuffer.allocate(AccessLogRingBuffer.RECORD_SIZE * 16);
+        ringBuffer.drainTo(buffer);
+        buffer.flip();
+        return StandardCharsets.US_ASCII.decode(buffer).toString();
+    }
+
+    @Test
+    void tryAppend_writesFixedLayoutRecord() {
+        AccessLogRingBuffer ringBuffer = new AccessLogRingBuffer(4);
+
+        assertTrue(ringBuffer.tryAppend(1735689600000L, "GET", 302, 1234, "203.0.113.42", "/r/abc123"));
+
+        String record = drainAll(ringBuffer);
+        assertEquals(AccessLogRingBuffer.RECORD_SIZE, record.length());
+        assertTrue(record.startsWith("1735689600000 GET     302       1234 203.0.113.42 "));
+        assertEquals("/r/abc123", record.substring(83).trim());
+        assertTrue(record.endsWith("\n"));
+    }
+
+    @Test
+    void tryAppend_truncatesLongPathAndReplacesNonAscii() {
+        AccessLogRingBuffer ringBuffer = new AccessLogRingBuffer(1);
+
+        ringBuffer.tryAppend(1L, "GET", 404, 1, "::1", "/r/é" + "x".repeat(500));
+
+        String record = drainAll(ringBuffer);
+        assertEquals(AccessLogRingBuffer.RECORD_SIZE, record.length());
+        assertTrue(record.substring(83).startsWith("/r/?xxx"));
+    }
+
+    @Test
+    void tryAppend_dropsWhenFullAndResumesAfterDrain() {
+        AccessLogRingBuffer ringBuffer = new AccessLogRingBuffer(2);
+
+        assertTrue(ringBuffer.tryAppend(1L, "GET", 302, 1, "ip", "/r/a"));
+        assertTrue(ringBuffer.tryAppend(2L, "GET", 302, 1, "ip", "/r/b"));
+        assertFalse(ringBuffer.tryAppend(3L, "GET", 302, 1, "ip", "/r/c"));
+        assertEquals(1, ringBuffer.droppedCount());
+
+        String drained = drainAll(ringBuffer);
+        assertEquals(2 * AccessLogRingBuffer.RECORD_SIZE, drained.length());
+        assertTrue(ringBuffer.tryAppend(4L, "GET", 302, 1, "ip", "/r/d"));
+    }
+
+    @Test
+    void concurrentAppends_areAllDrainedInOrderOfClaim() throws InterruptedException {
+        AccessLogRingBuffer ringBuffer = new AccessLogRingBuffer(4096);
+        Thread[] threads = new Thread[8];
+        for (int t = 0; t < threads.length; t++) {
+            threads[t] = new Thread(() -> {
+                for (int i = 0; i < 500; i++) {
+                    ringBuffer.tryAppend(i, "GET", 302, i, "ip", "/r/x");
+                }
+            });
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(AccessLogRingBuffer.RECORD_SIZE * 4096);
+        assertEquals(4000, ringBuffer.drainTo(buffer));
+        assertEquals(0, ringBuffer.droppedCount());
+    }
+}
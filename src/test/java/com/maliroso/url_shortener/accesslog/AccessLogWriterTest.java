@@ -0,0 +1,36 @@
+package com.maliroso.url_shortener.accesslog;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AccessLogWriterTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void stop_flushesEverythingAppendedAndRotatesBySize() throws Exception {
+        Path file = dir.resolve("access.log");
+        AccessLogWriter writer = new AccessLogWriter(file.toString(), 1, 3, 8192, new SimpleMeterRegistry());
+        writer.start();
+
+        int records = 5000;
+        for (int i = 0; i < records; i++) {
+            assertTrue(writer.append(i, "GET", 302, 10, "127.0.0.1", "/r/code" + i));
+        }
+        writer.stop();
+
+        Path rotated = dir.resolve("access.log.1");
+        assertTrue(Files.exists(rotated));
+        assertTrue(Files.size(file) <= 1024 * 1024);
+        assertTrue(Files.size(rotated) <= 1024 * 1024);
+        long lines = Files.readAllLines(file).size() + Files.readAllLines(rotated).size();
+        assertEquals(records, lines);
+    }
+}
@@ -0,0 +1,112 @@
+package com.maliroso.url_shortener.cluster;
+
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ClusterMembershipTest {
+
+    private static final Map<String, String> NODES = Map.of(
+            "node-a", "http://localhost:8080",
+            "node-b", "http://localhost:8081",
+            "node-c", "http://localhost:8082");
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void ownerOf_isEmptyUntilTheFirstHeartbeat() {
+        assertEquals(Optional.empty(), membership("node-a", true).ownerOf("abc123"));
+    }
+
+    @Test
+    void nodesAgreeOnTheOwner_andEachOwnsAShare() {
+        List<ClusterMembership> members = NODES.keySet().stream().map(id -> membership(id, true)).toList();
+        // each node may read the rows in a different order
+        for(ClusterMembership member : members){
+            member.update(new HashMap<>(NODES));
+        }
+
+        Map<String, Integer> owned = new HashMap<>();
+        IntStream.range(0, 3000).mapToObj(i -> "code" + i).forEach(code -> {
+            String owner = null;
+            for(ClusterMembership member : members){
+                String seen = member.ownerOf(code).map(ClusterMembership.Peer::nodeId).orElse(member.nodeId());
+                if(owner == null){
+                    owner = seen;
+                }
+                assertEquals(owner, seen, code);
+            }
+            owned.merge(owner, 1, Integer::sum);
+        });
+        assertEquals(3, owned.size());
+        owned.values().forEach(count -> assertTrue(count > 600, owned.toString()));
+    }
+
+    @Test
+    void ownerOf_carriesThePeersUrl() {
+        ClusterMembership membership = membership("node-a", true);
+        membership.update(NODES);
+
+        String foreign = IntStream.range(0, 1000).mapToObj(i -> "code" + i)
+                .filter(code -> membership.ownerOf(code).isPresent())
+                .findFirst().orElseThrow();
+        ClusterMembership.Peer peer = membership.ownerOf(foreign).orElseThrow();
+
+        assertEquals(NODES.get(peer.nodeId()), peer.baseUrl());
+    }
+
+    @Test
+    void heartbeat_keepsTheLastRing_whenTheDatabaseFails() {
+        ClusterMembership membership = membership("node-a", true);
+        membership.update(NODES);
+        when(jdbcTemplate.update(anyString(), any(Object[].class))).thenThrow(new QueryTimeoutException("timeout"));
+
+        membership.heartbeat();
+
+        assertEquals(List.of("node-a", "node-b", "node-c"), membership.nodes());
+        assertEquals(3.0, meterRegistry.get("shortener_affinity_nodes").gauge().value());
+    }
+
+    @Test
+    void heartbeat_doesNothing_whenDisabled() {
+        ClusterMembership membership = membership("node-a", false);
+
+        membership.heartbeat();
+        membership.leave();
+
+        verifyNoInteractions(jdbcTemplate);
+        assertEquals(List.of(), membership.nodes());
+    }
+
+    @Test
+    void nodeId_defaultsToTheAdvertisedUrl() {
+        ClusterMembership membership = new ClusterMembership(true, "", "http://localhost:8081/", 6000, 16,
+                jdbcTemplate, ShardRouter.single(), meterRegistry);
+
+        assertEquals("http://localhost:8081", membership.nodeId());
+    }
+
+    private ClusterMembership membership(String nodeId, boolean enabled) {
+        return new ClusterMembership(enabled, nodeId, NODES.get(nodeId), 6000, 64,
+                jdbcTemplate, ShardRouter.single(), meterRegistry);
+    }
+}
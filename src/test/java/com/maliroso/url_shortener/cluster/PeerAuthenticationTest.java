@@ -0,0 +1,38 @@
+package com.maliroso.url_shortener.cluster;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeerAuthenticationTest {
+
+    @Test
+    void isPeer_acceptsOnlyTheClusterSecret() {
+        PeerAuthentication authentication = new PeerAuthentication(true, "s3cret");
+
+        MockHttpServletRequest peer = new MockHttpServletRequest();
+        peer.addHeader(PeerAuthentication.HEADER, "s3cret");
+        MockHttpServletRequest wrong = new MockHttpServletRequest();
+        wrong.addHeader(PeerAuthentication.HEADER, "s3cre");
+
+        assertTrue(authentication.isPeer(peer));
+        assertFalse(authentication.isPeer(wrong));
+        assertFalse(authentication.isPeer(new MockHttpServletRequest()));
+    }
+
+    @Test
+    void isPeer_isFalse_whenAffinityIsOff() {
+        PeerAuthentication authentication = new PeerAuthentication(false, "");
+
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader(PeerAuthentication.HEADER, "");
+
+        assertFalse(authentication.isPeer(request));
+    }
+
+    @Test
+    void constructor_refusesAffinityWithoutASecret() {
+        assertThrows(IllegalStateException.class, () -> new PeerAuthentication(true, " "));
+    }
+}
@@ -0,0 +1,100 @@
+package com.maliroso.url_shortener.cluster;
+
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PeerLookupClientTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final AtomicInteger requests = new AtomicInteger();
+
+    private HttpServer peerServer;
+
+    private ClusterMembership.Peer peer;
+
+    private PeerLookupClient client;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        peerServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        peerServer.createContext(PeerLookupClient.PATH, exchange -> {
+            requests.incrementAndGet();
+            if(! "s3cret".equals(exchange.getRequestHeaders().getFirst(PeerAuthentication.HEADER))){
+                respond(exchange, 403, "");
+                return;
+            }
+            String code = exchange.getRequestURI().getPath().substring(PeerLookupClient.PATH.length());
+            switch (code) {
+                case "abc123" -> respond(exchange, 200,
+                        "{\"code\":\"abc123\",\"longUrl\":\"https://example.com\",\"expiresAt\":\"2030-01-01T00:00:00Z\"}");
+                case "broken" -> respond(exchange, 503, "");
+                default -> respond(exchange, 404, "");
+            }
+        });
+        peerServer.start();
+        peer = new ClusterMembership.Peer("node-b", "http://127.0.0.1:" + peerServer.getAddress().getPort());
+        client = new PeerLookupClient(1000, 60_000, JsonMapper.builder().build(), new PeerAuthentication(true, "s3cret"), meterRegistry);
+    }
+
+    @AfterEach
+    void tearDown() {
+        peerServer.stop(0);
+    }
+
+    @Test
+    void lookup_returnsTheOwnersMapping() {
+        Optional<CachedUrlMapping> result = client.lookup(peer, "abc123");
+
+        assertTrue(result.isPresent());
+        assertEquals("https://example.com", result.get().longUrl());
+        assertEquals(Instant.parse("2030-01-01T00:00:00Z"), result.get().expiresAt());
+        assertEquals(1.0, meterRegistry.get("shortener_affinity_lookups_total").tag("result", "found").counter().count());
+    }
+
+    @Test
+    void lookup_isEmpty_whenTheOwnerHasNoMapping() {
+        assertEquals(Optional.empty(), client.lookup(peer, "missing"));
+    }
+
+    @Test
+    void lookup_backsOffFromAFailedPeer() {
+        assertThrows(PeerUnavailableException.class, () -> client.lookup(peer, "broken"));
+        // skipped without a request while backing off
+        assertThrows(PeerUnavailableException.class, () -> client.lookup(peer, "abc123"));
+
+        assertEquals(1, requests.get());
+        assertEquals(2.0, meterRegistry.get("shortener_affinity_lookups_total").tag("result", "unavailable").counter().count());
+    }
+
+    @Test
+    void lookup_failsFast_whenThePeerIsDown() {
+        peerServer.stop(0);
+
+        assertThrows(PeerUnavailableException.class, () -> client.lookup(peer, "abc123"));
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.sendResponseHeaders(status, bytes.length == 0 ? -1 : bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
@@ -1,10 +1,16 @@
 package com.maliroso.url_shortener.controller;
 
+import com.maliroso.url_shortener.dto.request.MetadataBatchRequest;
 import com.maliroso.url_shortener.dto.request.ShortenUrlRequest;
 import com.maliroso.url_shortener.dto.response.ShortUrlMetadataResponse;
 import com.maliroso.url_shortener.dto.response.ShortenUrlResponse;
+import com.maliroso.url_shortener.model.CachedUrlMapping;
 import com.maliroso.url_shortener.model.UrlMapping;
+import com.maliroso.url_shortener.service.DatabaseUnavailableException;
+import com.maliroso.url_shortener.service.HeavyHitterService;
+import com.maliroso.url_shortener.service.MetadataResponseCache;
 import com.maliroso.url_shortener.service.RedirectMetricsService;
+import com.maliroso.url_shortener.service.UrlMetadataService;
 import com.maliroso.url_shortener.service.UrlService;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
@@ -14,10 +20,14 @@ import org.mockito.Mock;
 import org.mockito.junit.jupiter.MockitoExtension;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.net.URI;
 import java.time.Instant;
+import java.util.List;
 
 import static org.junit.jupiter.api.Assertions.*;
 import static org.mockito.ArgumentMatchers.any;
@@ -32,6 +42,12 @@ class UrlControllerTest {
     @Mock
     private RedirectMetricsService metricsService;
 
+    @Mock
+    private HeavyHitterService heavyHitterService;
+
+    @Mock
+    private UrlMetadataService urlMetadataService;
+
     @InjectMocks
     private UrlController urlController;
 
@@ -46,6 +62,9 @@ class UrlControllerTest {
             java.lang.reflect.Field field = UrlController.class.getDeclaredField("baseUrl");
             field.setAccessible(true);
             field.set(urlController, baseUrl);
+            field = UrlController.class.getDeclaredField("breakerOpenDurationMs");
+            field.setAccessible(true);
+            field.set(urlController, 5000L);
         } catch (Exception e) {
             throw new RuntimeException("Failed to set baseUrl", e);
         }
@@ -125,7 +144,7 @@ class UrlControllerTest {
     void redirectToUrl_returnsNotFound_whenCodeNotFound() {
         String code = "missing";
 
-        when(urlService.fetchUrlMapping(eq(code), any(Instant.class)))
+        when(urlService.resolveRedirect(eq(code), any(Instant.class)))
                 .thenReturn(java.util.Optional.empty());
 
         ResponseEntity<?> response = urlController.redirectToUrl(code);
@@ -134,11 +153,38 @@ class UrlControllerTest {
         verify(metricsService, never()).recordRedirect();
     }
 
+    @Test
+    void redirectToUrl_returnsServiceUnavailable_whenDatabaseUnavailable() {
+        String code = "down";
+
+        when(urlService.resolveRedirect(eq(code), any(Instant.class)))
+                .thenThrow(new DatabaseUnavailableException("Circuit breaker open for shard default"));
+
+        ResponseEntity<?> response = urlController.redirectToUrl(code);
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("5", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+        verify(metricsService, never()).recordRedirect();
+    }
+
+    @Test
+    void redirectToUrl_asksForRetryOnceTheBreakerMayHaveClosed() throws Exception {
+        java.lang.reflect.Field field = UrlController.class.getDeclaredField("breakerOpenDurationMs");
+        field.setAccessible(true);
+        field.set(urlController, 2500L);
+        when(urlService.resolveRedirect(eq("down"), any(Instant.class)))
+                .thenThrow(new DatabaseUnavailableException("Circuit breaker open for shard default"));
+
+        ResponseEntity<?> response = urlController.redirectToUrl("down");
+
+        assertEquals("3", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
     @Test
     void redirectToUrl_returnsNotFound_whenExceptionThrown() {
         String code = "error";
 
-        when(urlService.fetchUrlMapping(eq(code), any(Instant.class)))
+        when(urlService.resolveRedirect(eq(code), any(Instant.class)))
                 .thenThrow(new RuntimeException("Unexpected"));
 
         ResponseEntity<?> response = urlController.redirectToUrl(code);
@@ -146,4 +192,85 @@ class UrlControllerTest {
         assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
         verify(metricsService, never()).recordRedirect();
     }
-}
\ No newline at end of file
+
+    @Test
+    void redirectToUrl_redirectsAndRecordsHit_whenCodeFound() {
+        String code = "abc123";
+        CachedUrlMapping mapping = new CachedUrlMapping(code, "https://example.com/landing", Instant.now().plusSeconds(3600));
+
+        when(urlService.resolveRedirect(eq(code), any(Instant.class)))
+                .thenReturn(java.util.Optional.of(mapping));
+
+        ResponseEntity<?> response = urlController.redirectToUrl(code);
+
+        assertEquals(HttpStatus.FOUND, response.getStatusCode());
+        assertEquals(URI.create("https://example.com/landing"), response.getHeaders().getLocation());
+        verify(urlService).recordHit(code);
+        verify(heavyHitterService).recordRedirect(code);
+        verify(metricsService).recordRedirect();
+    }
+
+    @Test
+    void getUrlMetadata_returnsSerializedBodyWithValidators() {
+        byte[] body = "{\"code\":\"abc123\"}".getBytes();
+        Instant lastModified = Instant.parse("2025-01-01T10:00:00Z");
+        when(urlMetadataService.lookup(eq("abc123"), any(Instant.class), eq(baseUrl + "r/")))
+                .thenReturn(java.util.Optional.of(new MetadataResponseCache.Snapshot(body, "\"abc\"", lastModified)));
+
+        ResponseEntity<?> response = urlController.getUrlMetadata("abc123");
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertSame(body, response.getBody());
+        assertEquals("\"abc\"", response.getHeaders().getETag());
+        assertEquals(lastModified.toEpochMilli(), response.getHeaders().getLastModified());
+    }
+
+    @Test
+    void getUrlMetadata_returnsNotFound_whenCodeNotFound() {
+        when(urlMetadataService.lookup(eq("missing"), any(Instant.class), anyString()))
+                .thenReturn(java.util.Optional.empty());
+
+        ResponseEntity<?> response = urlController.getUrlMetadata("missing");
+
+        assertEquals(HttpStatus.NOT_FOUND, response.getStatusCode());
+    }
+
+    @Test
+    void getUrlMetadataBatch_joinsTheCachedBodiesIntoOneArray() throws Exception {
+        List<String> codes = List.of("abc123", "missing", "def456");
+        when(urlMetadataService.lookupAll(eq(codes), any(Instant.class), eq(baseUrl + "r/"))).thenReturn(List.of(
+                new MetadataResponseCache.Snapshot("{\"code\":\"abc123\"}".getBytes(), "\"a\"", Instant.EPOCH),
+                new MetadataResponseCache.Snapshot("{\"code\":\"def456\"}".getBytes(), "\"d\"", Instant.EPOCH)));
+
+        ResponseEntity<?> response = urlController.getUrlMetadataBatch(new MetadataBatchRequest(codes));
+
+        assertEquals(HttpStatus.OK, response.getStatusCode());
+        assertEquals(MediaType.APPLICATION_JSON, response.getHeaders().getContentType());
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        ((StreamingResponseBody) response.getBody()).writeTo(body);
+        assertEquals("[{\"code\":\"abc123\"},{\"code\":\"def456\"}]", body.toString());
+        verify(urlService, never()).recordHit(anyString());
+    }
+
+    @Test
+    void getUrlMetadataBatch_returnsServiceUnavailable_whenDatabaseFails() {
+        when(urlMetadataService.lookupAll(anyList(), any(Instant.class), anyString()))
+                .thenThrow(new DatabaseUnavailableException("breaker open"));
+
+        ResponseEntity<?> response = urlController.getUrlMetadataBatch(new MetadataBatchRequest(List.of("abc123")));
+
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, response.getStatusCode());
+        assertEquals("5", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+    }
+
+    @Test
+    void getUrlMetadataBatch_returnsUnprocessableContent_whenLookupFails() {
+        when(urlMetadataService.lookupAll(anyList(), any(Instant.class), anyString()))
+                .thenThrow(new IllegalStateException("boom"));
+
+        ResponseEntity<?> response = urlController.getUrlMetadataBatch(new MetadataBatchRequest(List.of("abc123")));
+
+        assertEquals(HttpStatus.UNPROCESSABLE_CONTENT, response.getStatusCode());
+        assertEquals("boom", response.getBody());
+    }
+}
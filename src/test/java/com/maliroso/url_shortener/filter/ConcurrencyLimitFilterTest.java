@@ -0,0 +1,98 @@
+package com.maliroso.url_shortener.filter;
+
+import com.maliroso.url_shortener.service.AdaptiveConcurrencyLimiter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ConcurrencyLimitFilterTest {
+
+    @Mock
+    private HttpServletRequest request;
+
+    @Mock
+    private HttpServletResponse response;
+
+    @Mock
+    private FilterChain filterChain;
+
+    @Mock
+    private PrintWriter printWriter;
+
+    private AdaptiveConcurrencyLimiter limiter;
+
+    private ConcurrencyLimitFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        // a limit of 4 leaves 2 slots for creates
+        limiter = new AdaptiveConcurrencyLimiter(4, 4, 4, 0.75, 0.5, new SimpleMeterRegistry());
+        filter = new ConcurrencyLimitFilter();
+        ReflectionTestUtils.setField(filter, "limiter", limiter);
+    }
+
+    @Test
+    void classify_mapsEndpointsToPriorities() {
+        assertEquals(AdaptiveConcurrencyLimiter.Priority.REDIRECT, classify("GET", "/r/abc"));
+        assertEquals(AdaptiveConcurrencyLimiter.Priority.REDIRECT, classify("GET", "/internal/mappings/abc"));
+        assertEquals(AdaptiveConcurrencyLimiter.Priority.CREATE, classify("POST", "/api/urls"));
+        assertEquals(AdaptiveConcurrencyLimiter.Priority.METADATA, classify("GET", "/api/urls/abc"));
+        assertEquals(AdaptiveConcurrencyLimiter.Priority.METADATA, classify("POST", "/api/urls/metadata"));
+        assertNull(classify("GET", "/api/export/mappings"));
+        assertNull(classify("GET", "/actuator/health"));
+    }
+
+    private AdaptiveConcurrencyLimiter.Priority classify(String method, String path) {
+        HttpServletRequest r = mock(HttpServletRequest.class);
+        lenient().when(r.getMethod()).thenReturn(method);
+        when(r.getRequestURI()).thenReturn(path);
+        return ConcurrencyLimitFilter.classify(r);
+    }
+
+    @Test
+    void doFilter_shedsCreate_withRetryAfter_whenCreateShareIsUsed() throws ServletException, IOException {
+        limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.CREATE).orElseThrow();
+        limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.CREATE).orElseThrow();
+        when(request.getRequestURI()).thenReturn("/api/urls");
+        when(request.getMethod()).thenReturn("POST");
+        when(response.getWriter()).thenReturn(printWriter);
+
+        filter.doFilter(request, response, filterChain);
+
+        verify(response).setStatus(503);
+        verify(response).setHeader("Retry-After", "1");
+        verifyNoInteractions(filterChain);
+    }
+
+    @Test
+    void doFilter_admitsRedirect_fromReservedCapacity() throws ServletException, IOException {
+        limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.CREATE).orElseThrow();
+        limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.CREATE).orElseThrow();
+        when(request.getRequestURI()).thenReturn("/r/abc");
+        when(request.getMethod()).thenReturn("GET");
+        when(response.getStatus()).thenReturn(302);
+
+        filter.doFilter(request, response, filterChain);
+
+        verify(filterChain).doFilter(request, response);
+        verify(response, never()).setStatus(anyInt());
+        // the slot is released again, so two more redirects fit
+        assertTrue(limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.REDIRECT).isPresent());
+        assertTrue(limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.REDIRECT).isPresent());
+    }
+}
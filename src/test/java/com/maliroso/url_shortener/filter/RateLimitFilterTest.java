@@ -1,5 +1,6 @@
 package com.maliroso.url_shortener.filter;
 
+import com.maliroso.url_shortener.cluster.PeerAuthentication;
 import com.maliroso.url_shortener.service.RateLimiterService;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
@@ -49,6 +50,9 @@ class RateLimitFilterTest {
             java.lang.reflect.Field field = RateLimitFilter.class.getDeclaredField("rateLimiterService");
             field.setAccessible(true);
             field.set(rateLimitFilter, rateLimiterService);
+            java.lang.reflect.Field peerField = RateLimitFilter.class.getDeclaredField("peerAuthentication");
+            peerField.setAccessible(true);
+            peerField.set(rateLimitFilter, new PeerAuthentication(true, "s3cret"));
         } catch (Exception e) {
             throw new RuntimeException("Failed to inject rateLimiterService", e);
         }
@@ -73,6 +77,34 @@ class RateLimitFilterTest {
         verify(printWriter, never()).write(anyString());
     }
 
+    @Test
+    void doFilter_skipsPeerLookups() throws ServletException, IOException {
+        when(request.getRequestURI()).thenReturn("/internal/mappings/abc123");
+        when(request.getHeader(PeerAuthentication.HEADER)).thenReturn("s3cret");
+
+        rateLimitFilter.doFilter(request, response, filterChain);
+
+        verify(filterChain).doFilter(request, response);
+        verifyNoInteractions(rateLimiterService);
+    }
+
+    @Test
+    void doFilter_limitsPeerPath_withoutTheClusterSecret() throws ServletException, IOException {
+        String clientIp = "192.168.1.100";
+        when(request.getRequestURI()).thenReturn("/internal/mappings/abc123");
+        when(request.getHeader(PeerAuthentication.HEADER)).thenReturn("guess");
+        when(request.getHeader("X-Forwarded-For")).thenReturn(null);
+        when(request.getRemoteAddr()).thenReturn(clientIp);
+        when(rateLimiterService.resolveBucket(eq(clientIp), eq(10L), eq(java.time.Duration.ofMinutes(1))))
+                .thenReturn(bucket);
+        when(bucket.tryConsume(1)).thenReturn(true);
+
+        rateLimitFilter.doFilter(request, response, filterChain);
+
+        verify(rateLimiterService).resolveBucket(eq(clientIp), eq(10L), eq(java.time.Duration.ofMinutes(1)));
+        verify(filterChain).doFilter(request, response);
+    }
+
     @Test
     void getClientIp_usesXForwardedForHeader_whenPresent() throws ServletException, IOException {
         // Given
@@ -0,0 +1,141 @@
+package com.maliroso.url_shortener.filter;
+
+import com.maliroso.url_shortener.jdbc.InstrumentedDataSource;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.servlet.FilterChain;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SqlStatsFilterTest {
+
+    private MeterRegistry meterRegistry;
+
+    private JdbcTemplate jdbcTemplate;
+
+    private SqlStatsFilter filter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        jdbcTemplate = new JdbcTemplate(new InstrumentedDataSource(
+                new DriverManagerDataSource("jdbc:h2:mem:filter-" + UUID.randomUUID()), null, true));
+        filter = new SqlStatsFilter();
+        ReflectionTestUtils.setField(filter, "meterRegistry", meterRegistry);
+        ReflectionTestUtils.setField(filter, "redirectBudget", 1);
+        ReflectionTestUtils.setField(filter, "metadataBudget", 1);
+        ReflectionTestUtils.setField(filter, "createBudget", 4);
+        ReflectionTestUtils.setField(filter, "metadataBatchBudgetPerShard", 2);
+        ReflectionTestUtils.setField(filter, "shardRouter", new ShardRouter(List.of("s0", "s1", "s2"), List.of(), 16));
+    }
+
+    @Test
+    void recordsStatementsPerEndpoint() throws Exception {
+        filter.registerMeters();
+
+        filter.doFilter(request("GET", "/r/abc"), new MockHttpServletResponse(), statements(1));
+
+        assertEquals(1, meterRegistry.get("shortener_sql_statements").tag("endpoint", "redirect").summary().count());
+        assertEquals(1.0, meterRegistry.get("shortener_sql_statements").tag("endpoint", "redirect").summary().totalAmount());
+        assertEquals(1, meterRegistry.get("shortener_sql_time").tag("endpoint", "redirect").timer().count());
+        assertEquals(0.0, meterRegistry.get("shortener_sql_budget_exceeded_total").tag("endpoint", "redirect").counter().count());
+    }
+
+    @Test
+    void countsRequestsOverTheBudget() throws Exception {
+        filter.registerMeters();
+
+        filter.doFilter(request("GET", "/r/abc"), new MockHttpServletResponse(), statements(2));
+        filter.doFilter(request("POST", "/api/urls"), new MockHttpServletResponse(), statements(4));
+
+        assertEquals(1.0, meterRegistry.get("shortener_sql_budget_exceeded_total").tag("endpoint", "redirect").counter().count());
+        assertEquals(0.0, meterRegistry.get("shortener_sql_budget_exceeded_total").tag("endpoint", "create").counter().count());
+    }
+
+    @Test
+    void budgetsTheMetadataBatchPerShard() throws Exception {
+        filter.registerMeters();
+
+        // one query on each of the three shards and one on a previous shard
+        filter.doFilter(request("POST", "/api/urls/metadata"), new MockHttpServletResponse(), statements(4));
+        filter.doFilter(request("POST", "/api/urls/metadata"), new MockHttpServletResponse(), statements(7));
+
+        assertEquals(2, meterRegistry.get("shortener_sql_statements").tag("endpoint", "metadata_batch").summary().count());
+        assertEquals(1.0, meterRegistry.get("shortener_sql_budget_exceeded_total").tag("endpoint", "metadata_batch").counter().count());
+        assertEquals(0, meterRegistry.get("shortener_sql_statements").tag("endpoint", "metadata").summary().count());
+    }
+
+    @Test
+    void addsHeaders_inDebugMode() throws Exception {
+        ReflectionTestUtils.setField(filter, "debugHeaders", true);
+        filter.registerMeters();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("GET", "/api/urls/abc"), response, (req, res) -> {
+            jdbcTemplate.execute("select 1");
+            res.getWriter().write("{}");
+        });
+
+        assertEquals("1", response.getHeader(SqlStatsFilter.STATEMENTS_HEADER));
+        assertNotNull(response.getHeader(SqlStatsFilter.TIME_HEADER));
+        assertEquals("{}", response.getContentAsString());
+    }
+
+    @Test
+    void leavesTheStreamedBatchUnbuffered_inDebugMode() throws Exception {
+        ReflectionTestUtils.setField(filter, "debugHeaders", true);
+        filter.registerMeters();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("POST", "/api/urls/metadata"), response, (req, res) -> {
+            jdbcTemplate.execute("select 1");
+            assertSame(response, res);
+        });
+
+        assertNull(response.getHeader(SqlStatsFilter.STATEMENTS_HEADER));
+        assertEquals(1, meterRegistry.get("shortener_sql_statements").tag("endpoint", "metadata_batch").summary().count());
+    }
+
+    @Test
+    void leavesHeadersOut_byDefault() throws Exception {
+        filter.registerMeters();
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        filter.doFilter(request("GET", "/r/abc"), response, statements(1));
+
+        assertNull(response.getHeader(SqlStatsFilter.STATEMENTS_HEADER));
+    }
+
+    @Test
+    void skipsUnclassifiedRequests() throws Exception {
+        filter.registerMeters();
+
+        filter.doFilter(request("GET", "/api/export/mappings"), new MockHttpServletResponse(), statements(3));
+
+        assertEquals(0, meterRegistry.get("shortener_sql_statements").tag("endpoint", "redirect").summary().count());
+        assertEquals(0, meterRegistry.get("shortener_sql_statements").tag("endpoint", "create").summary().count());
+    }
+
+    private static MockHttpServletRequest request(String method, String path) {
+        return new MockHttpServletRequest(method, path);
+    }
+
+    private FilterChain statements(int count) {
+        return (req, res) -> {
+            for (int i = 0; i < count; i++) {
+                jdbcTemplate.execute("select 1");
+            }
+        };
+    }
+}
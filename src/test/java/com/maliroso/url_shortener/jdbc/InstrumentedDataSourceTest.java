@@ -0,0 +1,104 @@
+package com.maliroso.url_shortener.jdbc;
+
+import com.maliroso.url_shortener.service.HitCountBuffer;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class InstrumentedDataSourceTest {
+
+    private InstrumentedDataSource dataSource;
+
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    void setUp() {
+        DriverManagerDataSource h2 = new DriverManagerDataSource(
+                "jdbc:h2:mem:stats-" + UUID.randomUUID() + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+        new ResourceDatabasePopulator(new ClassPathResource("schema-shard.sql")).execute(h2);
+        dataSource = new InstrumentedDataSource(h2, null, true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        Timestamp expiresAt = Timestamp.from(Instant.now().plusSeconds(3600));
+        for (String code : List.of("a", "b", "c")) {
+            new JdbcTemplate(h2).update("""
+                    insert into url_mappings (id, code, long_url, hit_count, created_at, expires_at)
+                    values (nextval('url_mappings_seq'), ?, ?, 0, ?, ?)
+                    """, code, "https://example.com/" + code, expiresAt, expiresAt);
+        }
+    }
+
+    @Test
+    void countsEachExecutionInTheOpenScope() {
+        try (SqlStatementStats.Scope scope = SqlStatementStats.open()) {
+            jdbcTemplate.queryForObject("select count(*) from url_mappings", Integer.class);
+            jdbcTemplate.update("update url_mappings set hit_count = 1 where code = ?", "a");
+            jdbcTemplate.execute("select 1");
+
+            assertEquals(3, scope.statements());
+            assertTrue(scope.nanos() > 0);
+        }
+    }
+
+    @Test
+    void countsABatchAsOneStatement() {
+        try (SqlStatementStats.Scope scope = SqlStatementStats.open()) {
+            jdbcTemplate.batchUpdate("update url_mappings set hit_count = hit_count + 1 where code = ?",
+                    List.of(new Object[]{"a"}, new Object[]{"b"}, new Object[]{"c"}));
+
+            assertEquals(1, scope.statements());
+        }
+    }
+
+    @Test
+    void nestedScopesAlsoCountTowardsTheEnclosingOne() {
+        try (SqlStatementStats.Scope outer = SqlStatementStats.open()) {
+            jdbcTemplate.execute("select 1");
+            try (SqlStatementStats.Scope inner = SqlStatementStats.open()) {
+                jdbcTemplate.execute("select 1");
+                assertEquals(1, inner.statements());
+            }
+            jdbcTemplate.execute("select 1");
+
+            assertEquals(3, outer.statements());
+        }
+    }
+
+    @Test
+    void statementsOutsideAScopeAreNotCounted() {
+        jdbcTemplate.execute("select 1");
+
+        try (SqlStatementStats.Scope scope = SqlStatementStats.open()) {
+            assertEquals(0, scope.statements());
+        }
+    }
+
+    @Test
+    void hitCountFlush_staysWithinOneStatement() {
+        HitCountBuffer buffer = new HitCountBuffer(jdbcTemplate,
+                new TransactionTemplate(new DataSourceTransactionManager(dataSource)), ShardRouter.single());
+        buffer.increment("a");
+        buffer.increment("b");
+        buffer.increment("b");
+
+        try (SqlStatementStats.Scope scope = SqlStatementStats.open()) {
+            buffer.flush();
+
+            assertEquals(1, scope.statements());
+        }
+        assertEquals(2, jdbcTemplate.queryForObject("select hit_count from url_mappings where code = 'b'", Integer.class));
+    }
+}
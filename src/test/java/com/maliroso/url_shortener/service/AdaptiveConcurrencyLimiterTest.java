@@ -0,0 +1,98 @@
+package com.maliroso.url_shortener.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class AdaptiveConcurrencyLimiterTest {
+
+    private static final long FAST = TimeUnit.MILLISECONDS.toNanos(10);
+
+    private static final long SLOW = TimeUnit.MILLISECONDS.toNanos(80);
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private AdaptiveConcurrencyLimiter limiter;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        limiter = new AdaptiveConcurrencyLimiter(20, 4, 200, 0.8, 0.5, meterRegistry);
+    }
+
+    @Test
+    void onSample_growsLimit_whileLatencyStaysFlatUnderLoad() {
+        for (int i = 0; i < 200; i++) {
+            limiter.onSample(FAST, limiter.limit());
+        }
+
+        assertEquals(200, limiter.limit());
+    }
+
+    @Test
+    void onSample_doesNotGrow_whenLimitIsNotUsed() {
+        for (int i = 0; i < 200; i++) {
+            limiter.onSample(FAST, 2);
+        }
+
+        assertEquals(20, limiter.limit());
+    }
+
+    @Test
+    void onSample_shrinksLimit_whenLatencyRises() {
+        for (int i = 0; i < 50; i++) {
+            limiter.onSample(FAST, limiter.limit());
+        }
+        int before = limiter.limit();
+
+        for (int i = 0; i < 30; i++) {
+            limiter.onSample(SLOW, limiter.limit());
+        }
+
+        assertTrue(limiter.limit() < before / 2, "limit " + before + " -> " + limiter.limit());
+        assertTrue(limiter.limit() >= 4);
+    }
+
+    @Test
+    void tryAcquire_shedsCreatesBeforeRedirects() {
+        List<AdaptiveConcurrencyLimiter.Token> held = new ArrayList<>();
+        // creates may use half of the limit of 20
+        for (int i = 0; i < 10; i++) {
+            held.add(limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.CREATE).orElseThrow());
+        }
+        assertTrue(limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.CREATE).isEmpty());
+
+        // metadata up to 16, redirects up to the full 20
+        for (int i = 0; i < 6; i++) {
+            held.add(limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.METADATA).orElseThrow());
+        }
+        assertTrue(limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.METADATA).isEmpty());
+        for (int i = 0; i < 4; i++) {
+            held.add(limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.REDIRECT).orElseThrow());
+        }
+        assertTrue(limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.REDIRECT).isEmpty());
+
+        assertEquals(1.0, meterRegistry.get("shortener_concurrency_rejected_total").tag("priority", "create").counter().count());
+        assertEquals(20.0, meterRegistry.get("shortener_concurrency_inflight").gauge().value());
+    }
+
+    @Test
+    void release_freesSlot() {
+        for (int i = 0; i < 10; i++) {
+            limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.CREATE).orElseThrow();
+        }
+        Optional<AdaptiveConcurrencyLimiter.Token> redirect = limiter.tryAcquire(AdaptiveConcurrencyLimiter.Priority.REDIRECT);
+        assertTrue(redirect.isPresent());
+
+        redirect.get().release(false);
+
+        assertEquals(10.0, meterRegistry.get("shortener_concurrency_inflight").gauge().value());
+    }
+}
@@ -0,0 +1,99 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class CodeRecyclingServiceTest {
+
+    private static final Duration GRACE = Duration.ofDays(30);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reclaim_deletesRowsPastTheGracePeriod_andPoolsOnlyConfirmedDeletes() {
+        CodeRecyclingService service = service(true);
+        when(jdbcTemplate.query(startsWith("select id, code"), any(RowMapper.class), any(), any()))
+                .thenReturn(List.of(new CodeRecyclingService.ExpiredRow(1, "abc123"),
+                        new CodeRecyclingService.ExpiredRow(2, "xyz789")));
+        // the second row was extended between the select and the delete
+        when(jdbcTemplate.batchUpdate(startsWith("delete from url_mappings"), anyList())).thenReturn(new int[]{1, 0});
+
+        assertEquals(1, service.reclaim(now));
+
+        ArgumentCaptor<Object> cutoff = ArgumentCaptor.forClass(Object.class);
+        verify(jdbcTemplate).query(anyString(), any(RowMapper.class), cutoff.capture(), any());
+        assertEquals(Timestamp.from(now.minus(GRACE)), cutoff.getValue());
+        verify(jdbcTemplate).update(startsWith("delete from url_digests"), any(), any());
+        assertEquals(Optional.of("abc123"), service.poll());
+        assertEquals(Optional.empty(), service.poll());
+        assertEquals(1.0, meterRegistry.get("shortener_codes_reclaimed_total").counter().count());
+        assertEquals(1.0, meterRegistry.get("shortener_code_generated_total").tag("source", "recycled").counter().count());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    void reclaim_deletesImportedCodes_butDoesNotPoolThem() {
+        CodeRecyclingService service = service(true);
+        when(jdbcTemplate.query(startsWith("select id, code"), any(RowMapper.class), any(), any()))
+                .thenReturn(List.of(new CodeRecyclingService.ExpiredRow(1, "my-old-link")));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        assertEquals(1, service.reclaim(now));
+        assertEquals(0, service.poolSize());
+    }
+
+    @Test
+    void run_onlyCountsCodes_whenRecyclingIsDisabled() {
+        CodeRecyclingService service = service(false);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(5_680_023_558L);
+
+        service.run();
+
+        verify(jdbcTemplate, never()).batchUpdate(anyString(), anyList());
+        assertEquals(0.1, service.occupancy(), 1e-9);
+        assertEquals(0.1, meterRegistry.get("shortener_keyspace_occupancy").gauge().value(), 1e-9);
+    }
+
+    @Test
+    void recordProbe_countsCollisions_andTracksTheirRate() {
+        CodeRecyclingService service = service(true);
+
+        service.recordProbe(true);
+        service.recordProbe(false);
+
+        assertEquals(1.0, meterRegistry.get("shortener_code_collisions_total").counter().count());
+        assertEquals(1.0, meterRegistry.get("shortener_code_generated_total").tag("source", "random").counter().count());
+        assertTrue(service.collisionRate() > 0);
+        assertTrue(service.collisionRate() < 0.01);
+    }
+
+    private CodeRecyclingService service(boolean enabled) {
+        return new CodeRecyclingService(enabled, GRACE.toMillis(), 1000, 100_000, 10,
+                jdbcTemplate, TransactionOperations.withoutTransaction(), ShardRouter.single(), meterRegistry);
+    }
+}
@@ -0,0 +1,112 @@
+package com.maliroso.url_shortener.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class DatabaseCircuitBreakerTest {
+
+    private long nanos;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private DatabaseCircuitBreaker breaker;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        breaker = new DatabaseCircuitBreaker(3, 1000, meterRegistry, () -> nanos);
+    }
+
+    private void fail(String shard) {
+        assertThrows(DatabaseUnavailableException.class, () -> breaker.call(shard, () -> {
+            throw new QueryTimeoutException("timeout");
+        }));
+    }
+
+    @Test
+    void call_opensAfterConsecutiveFailures_andFailsFast() {
+        fail("s0");
+        fail("s0");
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, breaker.state("s0"));
+        fail("s0");
+        assertEquals(DatabaseCircuitBreaker.State.OPEN, breaker.state("s0"));
+
+        AtomicInteger calls = new AtomicInteger();
+        assertThrows(DatabaseUnavailableException.class, () -> breaker.call("s0", calls::incrementAndGet));
+        assertEquals(0, calls.get());
+        assertEquals(1.0, meterRegistry.get("shortener_db_breaker_rejected_total").tag("shard", "s0").counter().count());
+        assertEquals(1.0, meterRegistry.get("shortener_db_breaker_state").tag("shard", "s0").gauge().value());
+        // other shards are unaffected
+        assertEquals("ok", breaker.call("s1", () -> "ok"));
+    }
+
+    @Test
+    void call_closesAfterSuccessfulProbe() {
+        fail("s0");
+        fail("s0");
+        fail("s0");
+
+        nanos += TimeUnit.MILLISECONDS.toNanos(1000);
+        assertEquals("ok", breaker.call("s0", () -> "ok"));
+
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, breaker.state("s0"));
+    }
+
+    @Test
+    void call_reopensWhenProbeFails() {
+        fail("s0");
+        fail("s0");
+        fail("s0");
+
+        nanos += TimeUnit.MILLISECONDS.toNanos(1000);
+        fail("s0");
+
+        assertEquals(DatabaseCircuitBreaker.State.OPEN, breaker.state("s0"));
+    }
+
+    @Test
+    void call_letsOnlyOneProbeThroughWhileHalfOpen() {
+        fail("s0");
+        fail("s0");
+        fail("s0");
+        nanos += TimeUnit.MILLISECONDS.toNanos(1000);
+
+        String result = breaker.call("s0", () -> {
+            assertEquals(DatabaseCircuitBreaker.State.HALF_OPEN, breaker.state("s0"));
+            assertThrows(DatabaseUnavailableException.class, () -> breaker.call("s0", () -> "second"));
+            return "probe";
+        });
+
+        assertEquals("probe", result);
+    }
+
+    @Test
+    void call_doesNotCountConstraintViolations() {
+        for (int i = 0; i < 5; i++) {
+            assertThrows(DataIntegrityViolationException.class, () -> breaker.call("s0", () -> {
+                throw new DataIntegrityViolationException("duplicate");
+            }));
+        }
+
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, breaker.state("s0"));
+    }
+
+    @Test
+    void call_resetsFailureCountOnSuccess() {
+        fail("s0");
+        fail("s0");
+        breaker.call("s0", () -> "ok");
+        fail("s0");
+        fail("s0");
+
+        assertEquals(DatabaseCircuitBreaker.State.CLOSED, breaker.state("s0"));
+    }
+}
@@ -0,0 +1,127 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.dto.request.RecordFormat;
+import com.maliroso.url_shortener.dto.response.UrlMappingExportRow;
+import com.maliroso.url_shortener.repository.UrlMappingRepository;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.utils.ExportCursor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.data.domain.Pageable;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ExportServiceTest {
+
+    @Mock
+    private UrlMappingRepository urlMappingRepository;
+
+    private ExportService exportService;
+
+    private final ExportService.Filter noFilter = new ExportService.Filter(null, null, null, null);
+
+    private final Instant createdAt = Instant.parse("2025-01-01T00:00:00Z");
+
+    private final Instant expiresAt = Instant.parse("2025-01-08T00:00:00Z");
+
+    @BeforeEach
+    void setUp() {
+        exportService = new ExportService(urlMappingRepository, ShardRouter.single(), 2);
+    }
+
+    private UrlMappingExportRow row(long id, String code, String longUrl) {
+        return new UrlMappingExportRow(id, code, longUrl, 3, createdAt, expiresAt);
+    }
+
+    @Test
+    void export_walksKeysetPagesUntilShortPage() throws Exception {
+        when(urlMappingRepository.findExportPage(eq(0L), any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(row(1, "a", "https://a.com"), row(2, "b", "https://b.com")));
+        when(urlMappingRepository.findExportPage(eq(2L), any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(row(5, "c", "https://c.com")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = exportService.export(RecordFormat.NDJSON, noFilter, null, out);
+
+        assertEquals(3, written);
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals(3, lines.length);
+        assertEquals("{\"cursor\":\"" + ExportCursor.encode(1) + "\",\"id\":1,\"code\":\"a\",\"longUrl\":\"https://a.com\","
+                + "\"hitCount\":3,\"createdAt\":\"2025-01-01T00:00:00Z\",\"expiresAt\":\"2025-01-08T00:00:00Z\"}", lines[0]);
+        verify(urlMappingRepository, times(2)).findExportPage(anyLong(), any(), any(), any(), any(), any(Pageable.class));
+    }
+
+    @Test
+    void export_resumesAfterCursor() throws Exception {
+        when(urlMappingRepository.findExportPage(eq(42L), any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        exportService.export(RecordFormat.NDJSON, noFilter, ExportCursor.encode(42), new ByteArrayOutputStream());
+
+        verify(urlMappingRepository).findExportPage(eq(42L), any(), any(), any(), any(), any(Pageable.class));
+    }
+
+    @Test
+    void export_passesFilterWindowToQuery() throws Exception {
+        Instant from = Instant.parse("2025-02-01T00:00:00Z");
+        when(urlMappingRepository.findExportPage(anyLong(), any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of());
+
+        exportService.export(RecordFormat.CSV, new ExportService.Filter(from, null, null, null), null, new ByteArrayOutputStream());
+
+        verify(urlMappingRepository).findExportPage(eq(0L), eq(from), any(), eq(Instant.EPOCH), any(), any(Pageable.class));
+    }
+
+    @Test
+    void export_writesCsvWithHeaderAndQuotedFields() throws Exception {
+        when(urlMappingRepository.findExportPage(eq(0L), any(), any(), any(), any(), any(Pageable.class)))
+                .thenReturn(List.of(row(7, "q", "https://q.com/?a=1,b=\"2\"")));
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        exportService.export(RecordFormat.CSV, noFilter, null, out);
+
+        String[] lines = out.toString(StandardCharsets.UTF_8).split("\n");
+        assertEquals("cursor,id,code,long_url,hit_count,created_at,expires_at", lines[0]);
+        assertEquals(ExportCursor.encode(7) + ",7,q,\"https://q.com/?a=1,b=\"\"2\"\"\",3,2025-01-01T00:00:00Z,2025-01-08T00:00:00Z", lines[1]);
+    }
+
+    @Test
+    void export_rejectsInvalidCursor() {
+        assertThrows(IllegalArgumentException.class,
+                () -> exportService.export(RecordFormat.NDJSON, noFilter, "not-a-cursor!", new ByteArrayOutputStream()));
+        assertThrows(IllegalArgumentException.class,
+                () -> exportService.export(RecordFormat.NDJSON, noFilter, ExportCursor.encode(1, 5), new ByteArrayOutputStream()));
+        verifyNoInteractions(urlMappingRepository);
+    }
+
+    @Test
+    void export_readsShardsInOrderAndResumesOnCursorShard() throws Exception {
+        ShardRouter shardRouter = new ShardRouter(List.of("s0", "s1", "s2"), List.of(), 16);
+        exportService = new ExportService(urlMappingRepository, shardRouter, 2);
+        List<String> shardsRead = new ArrayList<>();
+        when(urlMappingRepository.findExportPage(anyLong(), any(), any(), any(), any(), any(Pageable.class)))
+                .thenAnswer(invocation -> {
+                    shardsRead.add(ShardRouter.currentShard() + "@" + invocation.getArgument(0));
+                    return List.of(row(9, "x", "https://x.com"));
+                });
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        long written = exportService.export(RecordFormat.NDJSON, noFilter, ExportCursor.encode(1, 4), out);
+
+        assertEquals(2, written);
+        assertEquals(List.of("s1@4", "s2@0"), shardsRead);
+        assertTrue(out.toString(StandardCharsets.UTF_8).contains(ExportCursor.encode(2, 9)));
+    }
+}
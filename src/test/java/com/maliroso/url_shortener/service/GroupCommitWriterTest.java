@@ -0,0 +1,182 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.model.UrlMapping;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.utils.UrlHashUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class GroupCommitWriterTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private GroupCommitWriter writer;
+
+    private ExecutorService callers;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        // a wide window so that all callers in a test land in the same group
+        writer = new GroupCommitWriter(jdbcTemplate, TransactionOperations.withoutTransaction(), ShardRouter.single(),
+                true, 200, 256, 5000, meterRegistry);
+        writer.start();
+        callers = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        callers.shutdownNow();
+        writer.stop();
+    }
+
+    private UrlMapping mapping(String code) {
+        UrlMapping mapping = new UrlMapping();
+        mapping.setCode(code);
+        mapping.setLongUrl("https://example.com/" + code);
+        mapping.setExpiresAt(Instant.now().plusSeconds(3600));
+        return mapping;
+    }
+
+    /**
+     * Answers the multi-row insert with the given codes as the rows that were actually inserted.
+     */
+    private void insertReturns(Set<String> insertedCodes, CountDownLatch statements) throws Exception {
+        doAnswer(invocation -> {
+            RowCallbackHandler handler = invocation.getArgument(2);
+            long id = 100;
+            for (String code : insertedCodes) {
+                ResultSet rs = mock(ResultSet.class);
+                when(rs.getString("code")).thenReturn(code);
+                when(rs.getLong("id")).thenReturn(id++);
+                handler.processRow(rs);
+            }
+            statements.countDown();
+            return null;
+        }).when(jdbcTemplate).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+    }
+
+    @Test
+    void insert_commitsConcurrentCreatesAsOneStatement() throws Exception {
+        CountDownLatch statements = new CountDownLatch(1);
+        insertReturns(Set.of("a", "b", "c"), statements);
+
+        List<Future<Optional<UrlMapping>>> results = new ArrayList<>();
+        for (String code : List.of("a", "b", "c")) {
+            results.add(callers.submit(() -> writer.insert(mapping(code))));
+        }
+
+        for (Future<Optional<UrlMapping>> result : results) {
+            UrlMapping stored = result.get(5, TimeUnit.SECONDS).orElseThrow();
+            assertNotNull(stored.getId());
+            assertNotNull(stored.getCreatedAt());
+        }
+        verify(jdbcTemplate, times(1)).query(contains("(nextval('url_mappings_seq'), ?, ?, 0, ?, ?), (nextval"),
+                any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+        assertEquals(3.0, meterRegistry.get("shortener_group_commit_batch_size").summary().totalAmount());
+    }
+
+    @Test
+    void insert_returnsEmpty_whenCodeWasTaken() throws Exception {
+        insertReturns(Set.of(), new CountDownLatch(1));
+
+        assertEquals(Optional.empty(), writer.insert(mapping("taken")));
+    }
+
+    @Test
+    void insert_rethrowsDatabaseFailure_toEveryCallerInTheGroup() throws Exception {
+        doThrow(new QueryTimeoutException("timeout"))
+                .when(jdbcTemplate).query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+
+        Future<Optional<UrlMapping>> first = callers.submit(() -> writer.insert(mapping("a")));
+        Future<Optional<UrlMapping>> second = callers.submit(() -> writer.insert(mapping("b")));
+
+        for (Future<Optional<UrlMapping>> result : List.of(first, second)) {
+            Exception e = assertThrows(Exception.class, () -> result.get(5, TimeUnit.SECONDS));
+            assertInstanceOf(QueryTimeoutException.class, e.getCause());
+        }
+    }
+
+    @Test
+    void insert_abandonsTheRow_whenTheCallerTimesOut() throws InterruptedException {
+        // the caller gives up long before the 200 ms window closes
+        GroupCommitWriter impatient = new GroupCommitWriter(jdbcTemplate, TransactionOperations.withoutTransaction(),
+                ShardRouter.single(), true, 200, 256, 20, new SimpleMeterRegistry());
+        impatient.start();
+        try {
+            assertThrows(QueryTimeoutException.class, () -> impatient.insert(mapping("late")));
+
+            verify(jdbcTemplate, after(500).never())
+                    .query(anyString(), any(PreparedStatementSetter.class), any(RowCallbackHandler.class));
+        } finally {
+            impatient.stop();
+        }
+    }
+
+    @Test
+    void insert_pointsTheDigestAtTheNewCode_whenTheUrlIsCreatedAgain() throws Exception {
+        GroupCommitWriter sharded = new GroupCommitWriter(jdbcTemplate, TransactionOperations.withoutTransaction(),
+                new ShardRouter(List.of("s0", "s1"), List.of(), 16), true, 2, 256, 5000, new SimpleMeterRegistry());
+        sharded.start();
+        try {
+            // the first mapping of the url expired; its digest row still names "old"
+            UrlMapping again = mapping("fresh");
+            again.setLongUrl("https://example.com/old");
+            insertReturns(Set.of("fresh"), new CountDownLatch(1));
+
+            assertTrue(sharded.insert(again).isPresent());
+
+            @SuppressWarnings("unchecked")
+            ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+            verify(jdbcTemplate).batchUpdate(
+                    contains("on conflict (digest) do update set code = excluded.code, expires_at = excluded.expires_at"),
+                    args.capture());
+            Object[] digestRow = args.getValue().get(0);
+            assertEquals(UrlHashUtil.digest("https://example.com/old"), digestRow[0]);
+            assertEquals("fresh", digestRow[1]);
+        } finally {
+            sharded.stop();
+        }
+    }
+
+    @Test
+    void insert_rejected_whenDisabled() {
+        GroupCommitWriter disabled = new GroupCommitWriter(jdbcTemplate, TransactionOperations.withoutTransaction(),
+                ShardRouter.single(), false, 2, 256, 5000, new SimpleMeterRegistry());
+        disabled.start();
+
+        assertFalse(disabled.isEnabled());
+        assertThrows(IllegalStateException.class, () -> disabled.insert(mapping("a")));
+    }
+}
@@ -0,0 +1,60 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.dto.response.HeavyHitterResponse;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HeavyHitterServiceTest {
+
+    @Mock
+    private UrlMappingCache urlMappingCache;
+
+    private HeavyHitterService heavyHitterService;
+
+    @BeforeEach
+    void setUp() {
+        heavyHitterService = new HeavyHitterService(urlMappingCache, 16, 1, 10_000);
+    }
+
+    @Test
+    void refresh_pinsTopCodesInCache() {
+        for (int i = 0; i < 10; i++) heavyHitterService.recordRedirect("viral");
+        heavyHitterService.recordRedirect("quiet");
+
+        heavyHitterService.refresh();
+
+        verify(urlMappingCache).pin(List.of("viral"));
+    }
+
+    @Test
+    void topHitters_reportsEstimatedRate() {
+        for (int i = 0; i < 40; i++) heavyHitterService.recordRedirect("viral");
+        when(urlMappingCache.isPinned("viral")).thenReturn(true);
+
+        List<HeavyHitterResponse> top = heavyHitterService.topHitters(5);
+
+        assertEquals(1, top.size());
+        assertEquals("viral", top.get(0).code());
+        assertEquals(40, top.get(0).estimatedCount());
+        assertEquals(2.0, top.get(0).redirectsPerSecond(), 0.0001);
+        assertTrue(top.get(0).pinned());
+    }
+
+    @Test
+    void refresh_decaysCountsAfterPinning() {
+        for (int i = 0; i < 8; i++) heavyHitterService.recordRedirect("viral");
+
+        heavyHitterService.refresh();
+
+        assertEquals(4, heavyHitterService.topHitters(1).get(0).estimatedCount());
+    }
+}
@@ -0,0 +1,97 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class HitCountBufferTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private HitCountBuffer hitCountBuffer;
+
+    @BeforeEach
+    void setUp() {
+        hitCountBuffer = new HitCountBuffer(jdbcTemplate, TransactionOperations.withoutTransaction(), ShardRouter.single());
+    }
+
+    @Test
+    void flush_writesOneBatchWithSummedDeltas() {
+        hitCountBuffer.increment("a");
+        hitCountBuffer.increment("a");
+        hitCountBuffer.increment("b");
+        assertEquals(2, hitCountBuffer.pending("a"));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1, 1});
+
+        hitCountBuffer.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), args.capture());
+        assertEquals(2, args.getValue().size());
+        for (Object[] row : args.getValue()) {
+            assertEquals(row[1].equals("a") ? 2L : 1L, row[0]);
+        }
+        assertEquals(0, hitCountBuffer.pending("a"));
+    }
+
+    @Test
+    void flush_keepsHits_whenTheBatchFails() {
+        hitCountBuffer.increment("a");
+        hitCountBuffer.increment("a");
+        when(jdbcTemplate.batchUpdate(anyString(), anyList()))
+                .thenThrow(new QueryTimeoutException("timeout"))
+                .thenReturn(new int[]{1});
+
+        hitCountBuffer.flush();
+        hitCountBuffer.increment("a");
+
+        assertEquals(3, hitCountBuffer.pending("a"));
+        hitCountBuffer.flush();
+        assertEquals(0, hitCountBuffer.pending("a"));
+    }
+
+    @Test
+    void flush_retriesOnThePreviousShard_whenTheRowHasNotMovedYet() {
+        ShardRouter shardRouter = new ShardRouter(List.of("s0", "s1"), List.of("s0"), 16);
+        HitCountBuffer buffer = new HitCountBuffer(jdbcTemplate, TransactionOperations.withoutTransaction(), shardRouter);
+        String code = IntStream.range(0, 100).mapToObj(i -> "code" + i)
+                .filter(candidate -> shardRouter.previousShardFor(candidate).isPresent())
+                .findFirst().orElseThrow();
+        List<String> shards = new ArrayList<>();
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(invocation -> {
+            shards.add(ShardRouter.currentShard());
+            // only the old owner still has the row
+            return new int[]{"s0".equals(ShardRouter.currentShard()) ? 1 : 0};
+        });
+        buffer.increment(code);
+
+        buffer.flush();
+
+        assertEquals(List.of("s1", "s0"), shards);
+        assertEquals(0, buffer.pending(code));
+    }
+
+    @Test
+    void flush_skipsDatabaseWhenNothingPending() {
+        hitCountBuffer.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
@@ -0,0 +1,179 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.dto.request.RecordFormat;
+import com.maliroso.url_shortener.dto.response.ImportProgress;
+import com.maliroso.url_shortener.repository.UrlMappingRepository;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.utils.UrlHashUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class ImportServiceTest {
+
+    @Mock
+    private UrlMappingRepository urlMappingRepository;
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private ImportService importService;
+
+    private final List<Long> invalidLines = new ArrayList<>();
+
+    private final List<ImportProgress> progress = new ArrayList<>();
+
+    private final ImportService.Listener listener = new ImportService.Listener() {
+        @Override
+        public void onInvalid(long line, String reason) {
+            invalidLines.add(line);
+        }
+
+        @Override
+        public void onProgress(ImportProgress p) {
+            progress.add(p);
+        }
+    };
+
+    @BeforeEach
+    void setUp() {
+        importService = new ImportService(urlMappingRepository, jdbcTemplate,
+                TransactionOperations.withoutTransaction(), JsonMapper.builder().build(), ShardRouter.single(), 2);
+    }
+
+    private ByteArrayInputStream input(String text) {
+        return new ByteArrayInputStream(text.getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void importMappings_writesValidNdjsonRowsInBatches() throws Exception {
+        when(urlMappingRepository.findExistingCodes(any())).thenReturn(List.of());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenAnswer(call -> {
+            List<?> args = call.getArgument(1);
+            int[] counts = new int[args.size()];
+            java.util.Arrays.fill(counts, 1);
+            return counts;
+        });
+
+        ImportProgress done = importService.importMappings(RecordFormat.NDJSON, input("""
+                {"code":"aaa111","longUrl":"https://a.com","expiresAt":"2999-01-01T00:00:00Z"}
+                {"code":"bbb222","longUrl":"https://b.com"}
+                {"code":"ccc333","longUrl":"https://c.com","hitCount":9}
+                """), 0, listener);
+
+        assertEquals(new ImportProgress(3, 3, 0, 0), done);
+        assertEquals(1, progress.size());
+        assertEquals(2, progress.get(0).checkpoint());
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList());
+    }
+
+    @Test
+    void importMappings_reportsInvalidRowsAndKeepsGoing() throws Exception {
+        when(urlMappingRepository.findExistingCodes(any())).thenReturn(List.of());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        ImportProgress done = importService.importMappings(RecordFormat.NDJSON, input("""
+                {"code":"bad code","longUrl":"https://a.com"}
+                not json
+                {"code":"old123","longUrl":"https://a.com","expiresAt":"2000-01-01T00:00:00Z"}
+                {"code":"ftp123","longUrl":"ftp://a.com"}
+                {"code":"good12","longUrl":"https://good.com"}
+                """), 0, listener);
+
+        assertEquals(List.of(1L, 2L, 3L, 4L), invalidLines);
+        assertEquals(new ImportProgress(5, 1, 0, 4), done);
+    }
+
+    @Test
+    void importMappings_reportsNullRecordAsInvalid() throws Exception {
+        when(urlMappingRepository.findExistingCodes(any())).thenReturn(List.of());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        ImportProgress done = importService.importMappings(RecordFormat.NDJSON, input("""
+                null
+                {"code":"good12","longUrl":"https://good.com"}
+                """), 0, listener);
+
+        assertEquals(List.of(1L), invalidLines);
+        assertEquals(new ImportProgress(2, 1, 0, 1), done);
+    }
+
+    @Test
+    void importMappings_skipsExistingCodesFoundInBulkCheck() throws Exception {
+        when(urlMappingRepository.findExistingCodes(any())).thenReturn(List.of("taken1"));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        ImportProgress done = importService.importMappings(RecordFormat.CSV, input("""
+                code,long_url,expires_at
+                taken1,https://a.com,
+                free12,"https://b.com/?x=1,2",2999-01-01T00:00:00Z
+                """), 0, listener);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(anyString(), rows.capture());
+        assertEquals(1, rows.getValue().size());
+        assertEquals("free12", rows.getValue().get(0)[0]);
+        assertEquals("https://b.com/?x=1,2", rows.getValue().get(0)[1]);
+        assertEquals(new ImportProgress(2, 1, 1, 0), done);
+    }
+
+    @Test
+    void importMappings_pointsExistingDigestsAtTheImportedCode() throws Exception {
+        ImportService sharded = new ImportService(urlMappingRepository, jdbcTemplate,
+                TransactionOperations.withoutTransaction(), JsonMapper.builder().build(),
+                new ShardRouter(List.of("s0", "s1"), List.of(), 16), 2);
+        when(urlMappingRepository.findExistingCodes(any())).thenReturn(List.of());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        sharded.importMappings(RecordFormat.NDJSON, input("""
+                {"code":"aaa111","longUrl":"https://a.com"}
+                """), 0, listener);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(
+                contains("on conflict (digest) do update set code = excluded.code, expires_at = excluded.expires_at"),
+                rows.capture());
+        assertEquals(UrlHashUtil.digest("https://a.com"), rows.getValue().get(0)[0]);
+        assertEquals("aaa111", rows.getValue().get(0)[1]);
+    }
+
+    @Test
+    void importMappings_resumesAfterCheckpoint() throws Exception {
+        when(urlMappingRepository.findExistingCodes(any())).thenReturn(List.of());
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        ImportProgress done = importService.importMappings(RecordFormat.NDJSON, input("""
+                {"code":"aaa111","longUrl":"https://a.com"}
+                {"code":"bbb222","longUrl":"https://b.com"}
+                {"code":"ccc333","longUrl":"https://c.com"}
+                """), 2, listener);
+
+        verify(urlMappingRepository).findExistingCodes(argThat(codes -> codes.size() == 1 && codes.contains("ccc333")));
+        assertEquals(new ImportProgress(3, 1, 0, 0), done);
+    }
+
+    @Test
+    void importMappings_rejectsCsvWithoutRequiredColumns() {
+        assertThrows(IllegalArgumentException.class,
+                () -> importService.importMappings(RecordFormat.CSV, input("id,url\n1,https://a.com\n"), 0, listener));
+        verifyNoInteractions(jdbcTemplate);
+    }
+}
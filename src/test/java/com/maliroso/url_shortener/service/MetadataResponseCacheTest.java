@@ -0,0 +1,63 @@
+package com.maliroso.url_shortener.service;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetadataResponseCacheTest {
+
+    private MetadataResponseCache cache;
+
+    private Instant now;
+
+    private final MetadataResponseCache.Snapshot snapshot =
+            new MetadataResponseCache.Snapshot(new byte[]{'{', '}'}, "\"etag\"", Instant.EPOCH);
+
+    @BeforeEach
+    void setUp() {
+        cache = new MetadataResponseCache(100, 3, 0.1);
+        now = Instant.now();
+    }
+
+    @Test
+    void get_returnsSnapshotUntilMinimumHitDeltaIsReached() {
+        cache.put("abc123", snapshot, now.plusSeconds(60), 5);
+
+        cache.recordHit("abc123");
+        cache.recordHit("abc123");
+        assertSame(snapshot, cache.get("abc123", now));
+
+        cache.recordHit("abc123");
+        assertNull(cache.get("abc123", now));
+    }
+
+    @Test
+    void get_usesRelativeHitDeltaForPopularCodes() {
+        cache.put("viral", snapshot, now.plusSeconds(60), 1000);
+
+        for (int i = 0; i < 99; i++) cache.recordHit("viral");
+        assertNotNull(cache.get("viral", now));
+
+        cache.recordHit("viral");
+        assertNull(cache.get("viral", now));
+    }
+
+    @Test
+    void get_dropsExpiredEntries() {
+        cache.put("old", snapshot, now.minusSeconds(1), 0);
+
+        assertNull(cache.get("old", now));
+    }
+
+    @Test
+    void invalidate_removesEntry() {
+        cache.put("abc123", snapshot, now.plusSeconds(60), 0);
+
+        cache.invalidate("abc123");
+
+        assertNull(cache.get("abc123", now));
+    }
+}
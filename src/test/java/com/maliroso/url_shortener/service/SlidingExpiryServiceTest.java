@@ -0,0 +1,117 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import com.maliroso.url_shortener.utils.UrlHashUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionOperations;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class SlidingExpiryServiceTest {
+
+    private static final Duration EXTENSION = Duration.ofDays(7);
+
+    private static final Duration INTERVAL = Duration.ofHours(1);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final Instant now = Instant.parse("2026-01-01T00:00:00Z");
+
+    @Test
+    void touch_queuesOneExtension_andFlushWritesItInOneBatch() {
+        SlidingExpiryService service = service(true, ShardRouter.single());
+        CachedUrlMapping mapping = new CachedUrlMapping("abc", "https://example.com", now.plus(Duration.ofDays(2)));
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[]{1});
+
+        service.touch(mapping, now);
+        service.touch(mapping, now.plusSeconds(10));
+        assertEquals(1, service.pending());
+
+        service.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("update url_mappings"), args.capture());
+        assertEquals(1, args.getValue().size());
+        Object[] row = args.getValue().get(0);
+        assertEquals(Timestamp.from(now.plus(EXTENSION)), row[0]);
+        assertEquals("abc", row[1]);
+        assertEquals(0, service.pending());
+        assertEquals(1.0, meterRegistry.get("shortener_sliding_expiry_extended_total").counter().count());
+    }
+
+    @Test
+    void touch_extendsACodeAtMostOncePerInterval() {
+        SlidingExpiryService service = service(true, ShardRouter.single());
+        // the cache still holds the old expiry after the first extension was written
+        CachedUrlMapping mapping = new CachedUrlMapping("abc", "https://example.com", now.plus(Duration.ofDays(2)));
+
+        service.touch(mapping, now);
+        service.flush();
+        service.touch(mapping, now.plus(Duration.ofMinutes(59)));
+        assertEquals(0, service.pending());
+
+        service.touch(mapping, now.plus(Duration.ofMinutes(61)));
+        assertEquals(1, service.pending());
+    }
+
+    @Test
+    void touch_skipsLinksCreatedOrExtendedWithinTheInterval() {
+        SlidingExpiryService service = service(true, ShardRouter.single());
+        CachedUrlMapping fresh = new CachedUrlMapping("new", "https://example.com", now.plus(EXTENSION).minusSeconds(60));
+
+        service.touch(fresh, now);
+
+        assertEquals(0, service.pending());
+    }
+
+    @Test
+    void touch_doesNothing_whenDisabled() {
+        SlidingExpiryService service = service(false, ShardRouter.single());
+
+        service.touch(new CachedUrlMapping("abc", "https://example.com", now.plusSeconds(60)), now);
+        service.flush();
+
+        assertEquals(0, service.pending());
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void flush_alsoExtendsTheDigestRow_whenSharded() {
+        ShardRouter router = new ShardRouter(List.of("s0", "s1", "s2"), List.of(), 32);
+        SlidingExpiryService service = service(true, router);
+        String longUrl = "https://example.com/sharded";
+
+        service.touch(new CachedUrlMapping("abc", longUrl, now.plusSeconds(60)), now);
+        service.flush();
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<Object[]>> args = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate).batchUpdate(startsWith("update url_digests"), args.capture());
+        Object[] row = args.getValue().get(0);
+        assertEquals(UrlHashUtil.digest(longUrl), row[1]);
+        assertEquals("abc", row[2]);
+    }
+
+    private SlidingExpiryService service(boolean enabled, ShardRouter router) {
+        return new SlidingExpiryService(enabled, EXTENSION.toMillis(), INTERVAL.toMillis(), 1000,
+                jdbcTemplate, TransactionOperations.withoutTransaction(), router, meterRegistry);
+    }
+}
@@ -0,0 +1,55 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class StaleMappingStoreTest {
+
+    private final Instant now = Instant.parse("2025-01-01T00:00:00Z");
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private StaleMappingStore store;
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        store = new StaleMappingStore(2, meterRegistry);
+    }
+
+    @Test
+    void fallback_returnsLastKnownMapping_andCountsIt() {
+        CachedUrlMapping mapping = new CachedUrlMapping("a", "https://a.com", now.plusSeconds(60));
+        store.put(mapping);
+
+        assertEquals(Optional.of(mapping), store.fallback("a", now));
+        assertEquals(1.0, meterRegistry.get("shortener_redirect_fallback_total").tag("result", "served").counter().count());
+    }
+
+    @Test
+    void fallback_honoursExpiry() {
+        store.put(new CachedUrlMapping("a", "https://a.com", now.minusSeconds(1)));
+
+        assertTrue(store.fallback("a", now).isEmpty());
+        assertEquals(1.0, meterRegistry.get("shortener_redirect_fallback_total").tag("result", "miss").counter().count());
+    }
+
+    @Test
+    void put_evictsLeastRecentlyUsed() {
+        store.put(new CachedUrlMapping("a", "https://a.com", now.plusSeconds(60)));
+        store.put(new CachedUrlMapping("b", "https://b.com", now.plusSeconds(60)));
+        store.put(new CachedUrlMapping("a", "https://a.com", now.plusSeconds(60)));
+        store.put(new CachedUrlMapping("c", "https://c.com", now.plusSeconds(60)));
+
+        assertEquals(2, store.size());
+        assertTrue(store.fallback("a", now).isPresent());
+        assertTrue(store.fallback("b", now).isEmpty());
+    }
+}
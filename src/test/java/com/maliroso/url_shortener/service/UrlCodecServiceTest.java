@@ -0,0 +1,103 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.dto.response.UrlCodecReport;
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import com.maliroso.url_shortener.model.UrlMapping;
+import com.maliroso.url_shortener.sharding.ShardRouter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UrlCodecServiceTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    private SimpleMeterRegistry meterRegistry;
+
+    private UrlCodecService urlCodecService;
+
+    private final List<String> recentUrls = new ArrayList<>();
+
+    @BeforeEach
+    void setUp() {
+        meterRegistry = new SimpleMeterRegistry();
+        urlCodecService = new UrlCodecService(List.of("https://"), 100, 8, 5, jdbcTemplate, ShardRouter.single(), meterRegistry);
+        for (int i = 0; i < 30; i++) {
+            recentUrls.add("https://shop.example.com/catalog/item/" + i);
+        }
+    }
+
+    private UrlMapping mapping(String longUrl) {
+        UrlMapping mapping = new UrlMapping();
+        mapping.setCode("abc123");
+        mapping.setLongUrl(longUrl);
+        mapping.setExpiresAt(Instant.now().plusSeconds(60));
+        return mapping;
+    }
+
+    @Test
+    void learn_addsSampledPrefixesAfterConfiguredOnes() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(100))).thenReturn(recentUrls);
+
+        List<String> prefixes = urlCodecService.learn();
+
+        assertEquals("https://", prefixes.get(0));
+        assertTrue(prefixes.contains("https://shop.example.com/catalog/item/"));
+        CachedUrlMapping cached = urlCodecService.toCached(mapping("https://shop.example.com/catalog/item/7"));
+        assertEquals(2, cached.encodedSize());
+        assertEquals("https://shop.example.com/catalog/item/7", cached.longUrl());
+    }
+
+    @Test
+    void learn_keepsConfiguredPrefixes_whenTheyFillTheDictionary() {
+        UrlCodecService full = new UrlCodecService(List.of("https://", "http://", "https://www."), 100, 2, 5,
+                jdbcTemplate, ShardRouter.single(), meterRegistry);
+
+        List<String> prefixes = full.learn();
+
+        assertEquals(List.of("https://", "http://", "https://www."), prefixes);
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void toCached_recordsRawAndCompactBytes() {
+        urlCodecService.toCached(mapping("https://a.com/x"));
+
+        assertEquals(15.0, meterRegistry.get("shortener_url_codec_raw_bytes_total").counter().count());
+        assertEquals(8.0, meterRegistry.get("shortener_url_codec_compact_bytes_total").counter().count());
+    }
+
+    @Test
+    void report_estimatesStorageSavingOnSample() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(10))).thenReturn(List.of("https://a.com/x"));
+
+        UrlCodecReport report = urlCodecService.report(10);
+
+        assertEquals(1, report.sampledRows());
+        assertEquals(15, report.sampledRawBytes());
+        assertEquals(8, report.sampledCompactBytes());
+    }
+
+    @Test
+    void learnOnStartup_keepsConfiguredDictionary_whenSamplingFails() {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), eq(100))).thenThrow(new QueryTimeoutException("timeout"));
+
+        urlCodecService.learnOnStartup();
+
+        assertEquals(8, urlCodecService.toCached(mapping("https://a.com/x")).encodedSize());
+    }
+}
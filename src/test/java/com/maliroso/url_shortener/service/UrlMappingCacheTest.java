@@ -0,0 +1,101 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UrlMappingCacheTest {
+
+    private UrlMappingCache cache;
+
+    private Instant now;
+
+    @BeforeEach
+    void setUp() {
+        cache = new UrlMappingCache(2, new SimpleMeterRegistry());
+        now = Instant.now();
+    }
+
+    private CachedUrlMapping mapping(String code) {
+        return new CachedUrlMapping(code, "https://example.com/" + code, now.plusSeconds(3600));
+    }
+
+    @Test
+    void get_returnsCachedMapping() {
+        cache.put(mapping("abc123"));
+
+        assertTrue(cache.get("abc123", now).isPresent());
+        assertTrue(cache.get("zzz999", now).isEmpty());
+    }
+
+    @Test
+    void get_dropsExpiredMapping() {
+        cache.put(new CachedUrlMapping("old", "https://example.com", now.minusSeconds(1)));
+
+        assertTrue(cache.get("old", now).isEmpty());
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    void put_evictsLeastRecentlyUsedBeyondCapacity() {
+        cache.put(mapping("a"));
+        cache.put(mapping("b"));
+        cache.get("a", now);
+        cache.put(mapping("c"));
+
+        assertTrue(cache.get("a", now).isPresent());
+        assertTrue(cache.get("b", now).isEmpty());
+        assertTrue(cache.get("c", now).isPresent());
+    }
+
+    @Test
+    void pin_protectsCodesFromEviction() {
+        cache.put(mapping("viral"));
+        cache.pin(List.of("viral"));
+
+        cache.put(mapping("x"));
+        cache.put(mapping("y"));
+        cache.put(mapping("z"));
+
+        assertTrue(cache.isPinned("viral"));
+        assertTrue(cache.get("viral", now).isPresent());
+    }
+
+    @Test
+    void pin_appliesToCodesCachedAfterPinning() {
+        cache.pin(List.of("later"));
+        cache.put(mapping("later"));
+        cache.put(mapping("x"));
+        cache.put(mapping("y"));
+
+        assertTrue(cache.get("later", now).isPresent());
+    }
+
+    @Test
+    void pin_returnsUnpinnedCodesToLru() {
+        cache.put(mapping("viral"));
+        cache.pin(List.of("viral"));
+        cache.pin(List.of());
+
+        assertFalse(cache.isPinned("viral"));
+        assertTrue(cache.get("viral", now).isPresent());
+    }
+
+    @Test
+    void invalidate_removesPinnedAndLruEntries() {
+        cache.put(mapping("a"));
+        cache.put(mapping("b"));
+        cache.pin(List.of("a"));
+
+        cache.invalidate("a");
+        cache.invalidate("b");
+
+        assertEquals(0, cache.size());
+    }
+}
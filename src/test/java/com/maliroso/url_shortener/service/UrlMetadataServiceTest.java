@@ -0,0 +1,117 @@
+package com.maliroso.url_shortener.service;
+
+import com.maliroso.url_shortener.dto.response.UrlMappingExportRow;
+import com.maliroso.url_shortener.model.UrlMapping;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+class UrlMetadataServiceTest {
+
+    @Mock
+    private UrlService urlService;
+
+    @Mock
+    private HitCountBuffer hitCountBuffer;
+
+    private MetadataResponseCache metadataResponseCache;
+
+    private UrlMetadataService urlMetadataService;
+
+    private Instant now;
+
+    @BeforeEach
+    void setUp() {
+        metadataResponseCache = new MetadataResponseCache(100, 10, 0.01);
+        urlMetadataService = new UrlMetadataService(urlService, hitCountBuffer, metadataResponseCache, JsonMapper.builder().build());
+        now = Instant.parse("2025-01-01T10:00:00.123Z");
+    }
+
+    private UrlMapping mapping() {
+        UrlMapping mapping = new UrlMapping();
+        mapping.setCode("abc123");
+        mapping.setLongUrl("https://example.com");
+        mapping.setHitCount(7);
+        mapping.setCreatedAt(Instant.parse("2025-01-01T00:00:00Z"));
+        mapping.setExpiresAt(now.plusSeconds(3600));
+        return mapping;
+    }
+
+    @Test
+    void lookup_serializesOnceAndServesRepeatedPollsFromCache() {
+        when(urlService.fetchUrlMapping(eq("abc123"), any(Instant.class))).thenReturn(Optional.of(mapping()));
+        when(hitCountBuffer.pending("abc123")).thenReturn(2L);
+
+        MetadataResponseCache.Snapshot first = urlMetadataService.lookup("abc123", now, "http://localhost:8080/r/").orElseThrow();
+        MetadataResponseCache.Snapshot second = urlMetadataService.lookup("abc123", now, "http://localhost:8080/r/").orElseThrow();
+
+        assertSame(first, second);
+        String json = new String(first.body(), StandardCharsets.UTF_8);
+        assertTrue(json.contains("\"shortUrl\":\"http://localhost:8080/r/abc123\""));
+        assertTrue(json.contains("\"hitCount\":9"));
+        assertTrue(first.etag().startsWith("\"") && first.etag().endsWith("\""));
+        assertEquals(Instant.parse("2025-01-01T10:00:00Z"), first.lastModified());
+
+        verify(urlService, times(1)).fetchUrlMapping(eq("abc123"), any(Instant.class));
+        verify(urlService, times(2)).recordHit("abc123");
+    }
+
+    @Test
+    void lookup_returnsEmptyAndRecordsNoHit_whenCodeNotFound() {
+        when(urlService.fetchUrlMapping(eq("missing"), any(Instant.class))).thenReturn(Optional.empty());
+
+        assertTrue(urlMetadataService.lookup("missing", now, "http://localhost:8080/r/").isEmpty());
+        verify(urlService, never()).recordHit(anyString());
+    }
+
+    @Test
+    void lookup_rebuildsAfterInvalidation() {
+        when(urlService.fetchUrlMapping(eq("abc123"), any(Instant.class))).thenReturn(Optional.of(mapping()));
+
+        urlMetadataService.lookup("abc123", now, "http://localhost:8080/r/");
+        metadataResponseCache.invalidate("abc123");
+        urlMetadataService.lookup("abc123", now, "http://localhost:8080/r/");
+
+        verify(urlService, times(2)).fetchUrlMapping(eq("abc123"), any(Instant.class));
+    }
+
+    @Test
+    void lookupAll_readsAllMissesInOneCall_andKeepsRequestOrder() {
+        UrlMapping cached = mapping();
+        when(urlService.fetchUrlMapping(eq("abc123"), any(Instant.class))).thenReturn(Optional.of(cached));
+        MetadataResponseCache.Snapshot fromCache = urlMetadataService.lookup("abc123", now, "http://localhost:8080/r/").orElseThrow();
+        when(urlService.fetchActiveRows(List.of("def456", "missing"), now)).thenReturn(List.of(
+                new UrlMappingExportRow(2L, "def456", "https://example.org", 3, now, now.plusSeconds(3600))));
+
+        List<MetadataResponseCache.Snapshot> result = urlMetadataService.lookupAll(
+                List.of("def456", "abc123", "missing", "def456"), now, "http://localhost:8080/r/");
+
+        assertEquals(2, result.size());
+        assertTrue(new String(result.get(0).body(), StandardCharsets.UTF_8).contains("\"code\":\"def456\""));
+        assertSame(fromCache, result.get(1));
+        // only the single-code lookup above counted as a hit
+        verify(urlService, times(1)).recordHit(anyString());
+    }
+
+    @Test
+    void lookupAll_skipsTheDatabase_whenEveryCodeIsCached() {
+        when(urlService.fetchUrlMapping(eq("abc123"), any(Instant.class))).thenReturn(Optional.of(mapping()));
+        urlMetadataService.lookup("abc123", now, "http://localhost:8080/r/");
+
+        assertEquals(1, urlMetadataService.lookupAll(List.of("abc123"), now, "http://localhost:8080/r/").size());
+        verify(urlService, never()).fetchActiveRows(anyCollection(), any(Instant.class));
+    }
+}
@@ -1,9 +1,21 @@
 package com.maliroso.url_shortener.service;
 
+import com.maliroso.url_shortener.cluster.ClusterMembership;
+import com.maliroso.url_shortener.cluster.PeerLookupClient;
+import com.maliroso.url_shortener.cluster.PeerUnavailableException;
 import com.maliroso.url_shortener.dto.request.ShortenUrlRequest;
+import com.maliroso.url_shortener.dto.response.UrlMappingExportRow;
+import com.maliroso.url_shortener.model.CachedUrlMapping;
+import com.maliroso.url_shortener.model.UrlDigest;
 import com.maliroso.url_shortener.model.UrlMapping;
+import com.maliroso.url_shortener.repository.UrlDigestRepository;
 import com.maliroso.url_shortener.repository.UrlMappingRepository;
+import com.maliroso.url_shortener.sharding.ShardRouter;
 import com.maliroso.url_shortener.utils.UrlHashUtil;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
@@ -11,9 +23,20 @@ import org.mockito.InjectMocks;
 import org.mockito.Mock;
 import org.mockito.MockedStatic;
 import org.mockito.Mockito;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.test.util.ReflectionTestUtils;
 
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
 import java.util.Optional;
 
 import static org.junit.jupiter.api.Assertions.*;
@@ -26,6 +49,46 @@ class UrlServiceTest {
     @Mock
     private UrlMappingRepository urlMappingRepository;
 
+    @Mock
+    private UrlMappingCache urlMappingCache;
+
+    @Mock
+    private HitCountBuffer hitCountBuffer;
+
+    @Mock
+    private MetadataResponseCache metadataResponseCache;
+
+    @Spy
+    private ShardRouter shardRouter = ShardRouter.single();
+
+    @Mock
+    private UrlDigestRepository urlDigestRepository;
+
+    @Spy
+    private DatabaseCircuitBreaker databaseCircuitBreaker = new DatabaseCircuitBreaker(5, 5000, new SimpleMeterRegistry());
+
+    @Mock
+    private StaleMappingStore staleMappingStore;
+
+    @Mock
+    private GroupCommitWriter groupCommitWriter;
+
+    @Mock
+    private SlidingExpiryService slidingExpiryService;
+
+    @Mock
+    private CodeRecyclingService codeRecyclingService;
+
+    @Mock
+    private ClusterMembership clusterMembership;
+
+    @Mock
+    private PeerLookupClient peerLookupClient;
+
+    @Spy
+    private UrlCodecService urlCodecService = new UrlCodecService(
+            List.of("https://"), 0, 64, 20, null, ShardRouter.single(), new SimpleMeterRegistry());
+
     @InjectMocks
     private UrlService urlService;
 
@@ -104,8 +167,7 @@ class UrlServiceTest {
             mockedUtil.when(() -> UrlHashUtil.generateMd5Hash(longUrl)).thenReturn(hash);
             mockedUtil.when(UrlHashUtil::calculateExpiresAt).thenReturn(expiresAt);
 
-            when(urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(eq(hash), any(Instant.class)))
-                    .thenReturn(Optional.empty());
+            when(urlMappingRepository.existsByCode(hash)).thenReturn(false);
 
             UrlMapping saved = new UrlMapping();
             saved.setCode(hash);
@@ -120,7 +182,7 @@ class UrlServiceTest {
             assertEquals(longUrl, result.getLongUrl());
             assertEquals(expiresAt, result.getExpiresAt());
 
-            verify(urlMappingRepository).findByCodeAndExpiresAtGreaterThanEqual(eq(hash), any(Instant.class));
+            verify(urlMappingRepository).existsByCode(hash);
             verify(urlMappingRepository).save(any(UrlMapping.class));
         }
     }
@@ -139,15 +201,11 @@ class UrlServiceTest {
                     .thenReturn(hash2);
             mockedUtil.when(UrlHashUtil::calculateExpiresAt).thenReturn(expiresAt);
 
-            // First lookup: exists → collision
-            UrlMapping existing = new UrlMapping();
-            existing.setCode(hash1);
-            when(urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(eq(hash1), any(Instant.class)))
-                    .thenReturn(Optional.of(existing));
+            // First probe: row exists → collision
+            when(urlMappingRepository.existsByCode(hash1)).thenReturn(true);
 
-            // Second lookup: empty → available
-            when(urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(eq(hash2), any(Instant.class)))
-                    .thenReturn(Optional.empty());
+            // Second probe: no row → available
+            when(urlMappingRepository.existsByCode(hash2)).thenReturn(false);
 
             UrlMapping saved = new UrlMapping();
             saved.setCode(hash2);
@@ -158,11 +216,40 @@ class UrlServiceTest {
             UrlMapping result = urlService.createShortUrlCode(request);
 
             assertEquals(hash2, result.getCode());
-            verify(urlMappingRepository, times(2)).findByCodeAndExpiresAtGreaterThanEqual(anyString(), any(Instant.class));
+            verify(urlMappingRepository, times(2)).existsByCode(anyString());
             verify(urlMappingRepository).save(any(UrlMapping.class));
+            verify(codeRecyclingService).recordProbe(true);
+            verify(codeRecyclingService).recordProbe(false);
         }
     }
 
+    @Test
+    void createShortUrlCode_usesRecycledCode_withoutProbing() {
+        ShortenUrlRequest request = new ShortenUrlRequest(longUrl);
+        when(codeRecyclingService.poll()).thenReturn(Optional.of(hash));
+        when(urlMappingRepository.save(any(UrlMapping.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+        UrlMapping result = urlService.createShortUrlCode(request);
+
+        assertEquals(hash, result.getCode());
+        verify(urlMappingRepository, never()).existsByCode(anyString());
+        verify(codeRecyclingService, never()).recordProbe(anyBoolean());
+    }
+
+    @Test
+    void createShortUrlCode_fallsBackToRandomCode_whenRecycledCodeWasTaken() {
+        ShortenUrlRequest request = new ShortenUrlRequest(longUrl);
+        when(codeRecyclingService.poll()).thenReturn(Optional.of("reused")).thenReturn(Optional.empty());
+        when(urlMappingRepository.save(any(UrlMapping.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"))
+                .thenAnswer(invocation -> invocation.getArgument(0));
+
+        UrlMapping result = urlService.createShortUrlCode(request);
+
+        assertNotEquals("reused", result.getCode());
+        verify(urlMappingRepository).existsByCode(result.getCode());
+    }
+
     @Test
     void updateHitCount_savesTheProvidedUrlMapping() {
         UrlMapping urlMap = new UrlMapping();
@@ -173,4 +260,320 @@ class UrlServiceTest {
 
         verify(urlMappingRepository).save(urlMap);
     }
-}
\ No newline at end of file
+
+    @Test
+    void resolveRedirect_returnsCachedMapping_withoutQueryingRepository() {
+        CachedUrlMapping cached = new CachedUrlMapping(hash, longUrl, now.plusSeconds(100));
+        when(urlMappingCache.get(hash, now)).thenReturn(Optional.of(cached));
+
+        Optional<CachedUrlMapping> result = urlService.resolveRedirect(hash, now);
+
+        assertEquals(Optional.of(cached), result);
+        verifyNoInteractions(urlMappingRepository);
+        verify(slidingExpiryService).touch(cached, now);
+    }
+
+    @Test
+    void resolveRedirect_loadsAndCachesMapping_onCacheMiss() {
+        UrlMapping mapping = new UrlMapping();
+        mapping.setCode(hash);
+        mapping.setLongUrl(longUrl);
+        mapping.setExpiresAt(now.plusSeconds(100));
+
+        when(urlMappingCache.get(hash, now)).thenReturn(Optional.empty());
+        when(urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(hash, now))
+                .thenReturn(Optional.of(mapping));
+
+        Optional<CachedUrlMapping> result = urlService.resolveRedirect(hash, now);
+
+        assertTrue(result.isPresent());
+        assertEquals(longUrl, result.get().longUrl());
+        verify(urlMappingCache).put(result.get());
+        verify(staleMappingStore).put(result.get());
+        verify(slidingExpiryService).touch(result.get(), now);
+    }
+
+    @Test
+    void resolveRedirect_servesLastKnownMapping_whenDatabaseFails() {
+        CachedUrlMapping stale = new CachedUrlMapping(hash, longUrl, now.plusSeconds(100));
+        when(urlMappingCache.get(hash, now)).thenReturn(Optional.empty());
+        when(urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(hash, now))
+                .thenThrow(new QueryTimeoutException("timeout"));
+        when(staleMappingStore.fallback(hash, now)).thenReturn(Optional.of(stale));
+
+        Optional<CachedUrlMapping> result = urlService.resolveRedirect(hash, now);
+
+        assertEquals(Optional.of(stale), result);
+        verify(urlMappingCache, never()).put(any());
+    }
+
+    @Test
+    void resolveRedirect_throwsDatabaseUnavailable_whenNoLastKnownMapping() {
+        when(urlMappingCache.get(hash, now)).thenReturn(Optional.empty());
+        when(urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(hash, now))
+                .thenThrow(new QueryTimeoutException("timeout"));
+        when(staleMappingStore.fallback(hash, now)).thenReturn(Optional.empty());
+
+        assertThrows(DatabaseUnavailableException.class, () -> urlService.resolveRedirect(hash, now));
+    }
+
+    @Test
+    void resolveRedirect_asksOwningNode_withoutCachingOrQueryingRepository() {
+        ClusterMembership.Peer owner = new ClusterMembership.Peer("node-b", "http://localhost:8081");
+        CachedUrlMapping remote = new CachedUrlMapping(hash, longUrl, now.plusSeconds(100));
+        when(urlMappingCache.get(hash, now)).thenReturn(Optional.empty());
+        when(clusterMembership.ownerOf(hash)).thenReturn(Optional.of(owner));
+        when(peerLookupClient.lookup(owner, hash)).thenReturn(Optional.of(remote));
+
+        Optional<CachedUrlMapping> result = urlService.resolveRedirect(hash, now);
+
+        assertEquals(Optional.of(remote), result);
+        verifyNoInteractions(urlMappingRepository);
+        verify(urlMappingCache, never()).put(any());
+        // the owner extends the expiry when it resolves the code
+        verifyNoInteractions(slidingExpiryService);
+    }
+
+    @Test
+    void resolveRedirect_readsDatabase_whenOwningNodeIsUnavailable() {
+        ClusterMembership.Peer owner = new ClusterMembership.Peer("node-b", "http://localhost:8081");
+        UrlMapping mapping = new UrlMapping();
+        mapping.setCode(hash);
+        mapping.setLongUrl(longUrl);
+        mapping.setExpiresAt(now.plusSeconds(100));
+        when(urlMappingCache.get(hash, now)).thenReturn(Optional.empty());
+        when(clusterMembership.ownerOf(hash)).thenReturn(Optional.of(owner));
+        when(peerLookupClient.lookup(owner, hash)).thenThrow(new PeerUnavailableException("timeout"));
+        when(urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(hash, now))
+                .thenReturn(Optional.of(mapping));
+
+        Optional<CachedUrlMapping> result = urlService.resolveRedirect(hash, now);
+
+        assertTrue(result.isPresent());
+        assertEquals(longUrl, result.get().longUrl());
+    }
+
+    @Test
+    void resolveForPeer_neverRoutesTheLookupOn() {
+        when(urlMappingCache.get(hash, now)).thenReturn(Optional.empty());
+        when(urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(hash, now))
+                .thenReturn(Optional.empty());
+
+        assertTrue(urlService.resolveForPeer(hash, now).isEmpty());
+        verifyNoInteractions(clusterMembership, peerLookupClient);
+    }
+
+    @Test
+    void recordHit_buffersIncrementWithoutTouchingRepository() {
+        urlService.recordHit(hash);
+
+        verify(hitCountBuffer).increment(hash);
+        verify(metadataResponseCache).recordHit(hash);
+        verifyNoInteractions(urlMappingRepository);
+    }
+
+    @Test
+    void fetchActiveRows_queriesEachShardOnce_andPreviousShardsForCodesNotFound() {
+        ShardRouter router = useShards(List.of("s0", "s1", "s2"), List.of("s0", "s1"));
+        List<String> codes = new ArrayList<>();
+        String movedCode = null;
+        for (int i = 0; codes.size() < 20; i++) {
+            codes.add("code" + i);
+            if (movedCode == null && router.previousShardFor("code" + i).isPresent()) {
+                movedCode = "code" + i;
+            }
+        }
+        assertNotNull(movedCode);
+        String previousShard = router.previousShardFor(movedCode).orElseThrow();
+        String moved = movedCode;
+
+        List<String> shardsQueried = new ArrayList<>();
+        when(urlMappingRepository.findActiveRows(anyCollection(), eq(now))).thenAnswer(invocation -> {
+            String shard = ShardRouter.currentShard();
+            shardsQueried.add(shard);
+            Collection<String> asked = invocation.getArgument(0);
+            // every code but the moved one is on its owner; the moved one is still on its old shard
+            return asked.stream()
+                    .filter(code -> code.equals(moved) ? shard.equals(previousShard) : router.shardForCode(code).equals(shard))
+                    .map(code -> new UrlMappingExportRow(1L, code, longUrl, 0, now, now.plusSeconds(100)))
+                    .toList();
+        });
+
+        List<UrlMappingExportRow> rows = urlService.fetchActiveRows(codes, now);
+
+        assertEquals(20, rows.size());
+        assertEquals(4, shardsQueried.size());
+        assertEquals(previousShard, shardsQueried.get(3));
+    }
+
+    private ShardRouter useShards(List<String> shards, List<String> previousShards) {
+        ShardRouter router = new ShardRouter(shards, previousShards, 64);
+        ReflectionTestUtils.setField(urlService, "shardRouter", router);
+        return router;
+    }
+
+    @Test
+    void fetchUrlMapping_fallsBackToPreviousShard_whileRebalancing() {
+        ShardRouter router = useShards(List.of("s0", "s1", "s2"), List.of("s0", "s1"));
+        String movedCode = null;
+        for (int i = 0; movedCode == null; i++) {
+            if (router.previousShardFor("code" + i).isPresent()) {
+                movedCode = "code" + i;
+            }
+        }
+        String previousShard = router.previousShardFor(movedCode).orElseThrow();
+        UrlMapping mapping = new UrlMapping();
+        mapping.setCode(movedCode);
+
+        List<String> shardsQueried = new ArrayList<>();
+        when(urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(movedCode, now)).thenAnswer(invocation -> {
+            shardsQueried.add(ShardRouter.currentShard());
+            return previousShard.equals(ShardRouter.currentShard()) ? Optional.of(mapping) : Optional.empty();
+        });
+
+        Optional<UrlMapping> result = urlService.fetchUrlMapping(movedCode, now);
+
+        assertEquals(Optional.of(mapping), result);
+        assertEquals(List.of(router.shardForCode(movedCode), previousShard), shardsQueried);
+    }
+
+    @Test
+    void fetchByLongUrl_followsDigestToCodeShard_whenSharded() {
+        ShardRouter router = useShards(List.of("s0", "s1", "s2"), List.of());
+        String digest = UrlHashUtil.digest(longUrl);
+        UrlMapping mapping = new UrlMapping();
+        mapping.setCode(hash);
+        mapping.setLongUrl(longUrl);
+
+        when(urlDigestRepository.findByDigestAndExpiresAtGreaterThanEqual(digest, now)).thenAnswer(invocation -> {
+            assertEquals(router.shardForDigest(digest), ShardRouter.currentShard());
+            return Optional.of(new UrlDigest(digest, hash, now.plusSeconds(100)));
+        });
+        when(urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual(hash, now)).thenAnswer(invocation -> {
+            assertEquals(router.shardForCode(hash), ShardRouter.currentShard());
+            return Optional.of(mapping);
+        });
+
+        Optional<UrlMapping> result = urlService.fetchByLongUrl(longUrl, now);
+
+        assertEquals(Optional.of(mapping), result);
+        verify(urlMappingRepository, never()).findByLongUrlAndExpiresAtGreaterThanEqual(anyString(), any());
+    }
+
+    @Test
+    void createShortUrlCode_writesDigestOnDigestShard_whenSharded() {
+        ShardRouter router = useShards(List.of("s0", "s1", "s2"), List.of());
+        when(urlMappingRepository.save(any(UrlMapping.class))).thenAnswer(invocation -> {
+            UrlMapping toSave = invocation.getArgument(0);
+            assertEquals(router.shardForCode(toSave.getCode()), ShardRouter.currentShard());
+            return toSave;
+        });
+        String digest = UrlHashUtil.digest(longUrl);
+        when(urlDigestRepository.upsert(eq(digest), anyString(), any(Instant.class))).thenAnswer(invocation -> {
+            assertEquals(router.shardForDigest(digest), ShardRouter.currentShard());
+            return 1;
+        });
+
+        UrlMapping result = urlService.createShortUrlCode(new ShortenUrlRequest(longUrl));
+
+        verify(urlDigestRepository).upsert(digest, result.getCode(), result.getExpiresAt());
+        verify(urlDigestRepository, never()).save(any());
+    }
+
+    @Test
+    void createShortUrlCode_goesThroughGroupCommit_andRetriesTakenCode() {
+        when(groupCommitWriter.isEnabled()).thenReturn(true);
+        when(groupCommitWriter.insert(any(UrlMapping.class)))
+                .thenReturn(Optional.empty())
+                .thenAnswer(invocation -> Optional.of(invocation.getArgument(0)));
+
+        UrlMapping result = urlService.createShortUrlCode(new ShortenUrlRequest(longUrl));
+
+        assertEquals(longUrl, result.getLongUrl());
+        verify(groupCommitWriter, times(2)).insert(any(UrlMapping.class));
+        verify(urlMappingRepository, never()).save(any());
+    }
+
+    @Test
+    void createShortUrlCode_givesUp_whenCodesKeepBeingTaken() {
+        when(groupCommitWriter.isEnabled()).thenReturn(true);
+        when(groupCommitWriter.insert(any(UrlMapping.class))).thenReturn(Optional.empty());
+
+        assertThrows(IllegalStateException.class, () -> urlService.createShortUrlCode(new ShortenUrlRequest(longUrl)));
+
+        verify(groupCommitWriter, times(5)).insert(any(UrlMapping.class));
+    }
+
+    @Test
+    void resolveRedirect_recordsLookupEvent_withSource() throws Exception {
+        CachedUrlMapping cached = new CachedUrlMapping(hash, longUrl, now.plusSeconds(100));
+        when(urlMappingCache.get(hash, now)).thenReturn(Optional.of(cached));
+        when(urlMappingCache.get("stale1", now)).thenReturn(Optional.empty());
+        when(urlMappingRepository.findByCodeAndExpiresAtGreaterThanEqual("stale1", now))
+                .thenThrow(new QueryTimeoutException("timeout"));
+        when(staleMappingStore.fallback("stale1", now))
+                .thenReturn(Optional.of(new CachedUrlMapping("stale1", longUrl, now.plusSeconds(100))));
+
+        List<RecordedEvent> events = record("com.maliroso.url_shortener.Lookup", () -> {
+            urlService.resolveRedirect(hash, now);
+            urlService.resolveRedirect("stale1", now);
+        });
+
+        assertEquals(2, events.size());
+        assertEquals(hash, events.get(0).getString("code"));
+        assertEquals("cache", events.get(0).getString("source"));
+        assertEquals("stale1", events.get(1).getString("code"));
+        assertEquals("stale", events.get(1).getString("source"));
+    }
+
+    @Test
+    void createShortUrlCode_recordsCollisionAndCreateEvents() throws Exception {
+        ShortenUrlRequest request = new ShortenUrlRequest(longUrl);
+        Instant expiresAt = now.plusSeconds(3600);
+
+        try (MockedStatic<UrlHashUtil> mockedUtil = Mockito.mockStatic(UrlHashUtil.class)) {
+            mockedUtil.when(() -> UrlHashUtil.generateMd5Hash(longUrl))
+                    .thenReturn("collision")
+                    .thenReturn("unique");
+            mockedUtil.when(UrlHashUtil::calculateExpiresAt).thenReturn(expiresAt);
+            when(urlMappingRepository.existsByCode("collision")).thenReturn(true);
+            when(urlMappingRepository.save(any(UrlMapping.class))).thenAnswer(invocation -> invocation.getArgument(0));
+
+            List<RecordedEvent> events = record(List.of("com.maliroso.url_shortener.CollisionRetry",
+                    "com.maliroso.url_shortener.Create"), () -> urlService.createShortUrlCode(request));
+
+            assertEquals(2, events.size());
+            RecordedEvent collision = events.get(0);
+            assertEquals("com.maliroso.url_shortener.CollisionRetry", collision.getEventType().getName());
+            assertEquals("collision", collision.getString("code"));
+            assertEquals(1, collision.getInt("attempt"));
+            RecordedEvent create = events.get(1);
+            assertEquals("unique", create.getString("code"));
+            assertEquals(ShardRouter.DEFAULT_SHARD, create.getString("shard"));
+            assertEquals(1, create.getInt("collisions"));
+            assertFalse(create.getBoolean("groupCommit"));
+        }
+    }
+
+    private static List<RecordedEvent> record(String eventName, Runnable action) throws Exception {
+        return record(List.of(eventName), action);
+    }
+
+    private static List<RecordedEvent> record(List<String> eventNames, Runnable action) throws Exception {
+        Path file = Files.createTempFile("url-service", ".jfr");
+        try (Recording recording = new Recording()) {
+            eventNames.forEach(name -> recording.enable(name).withThreshold(Duration.ZERO));
+            recording.start();
+            action.run();
+            recording.stop();
+            recording.dump(file);
+            // the recording also carries a few jdk.* events of its own
+            return RecordingFile.readAllEvents(file).stream()
+                    .filter(event -> eventNames.contains(event.getEventType().getName()))
+                    .sorted(Comparator.comparing(RecordedEvent::getEndTime))
+                    .toList();
+        } finally {
+            Files.deleteIfExists(file);
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.maliroso.url_shortener.sharding;
+
+import com.maliroso.url_shortener.dto.response.ShardRebalanceStatus;
+import com.maliroso.url_shortener.utils.UrlHashUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.jdbc.datasource.init.ResourceDatabasePopulator;
+
+import javax.sql.DataSource;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardRebalancerTest {
+
+    private static final List<String> SHARDS = List.of("s0", "s1", "s2");
+
+    private static final int ROWS = 60;
+
+    private final Map<String, JdbcTemplate> shards = new LinkedHashMap<>();
+
+    private final Map<String, DataSource> dataSources = new LinkedHashMap<>();
+
+    private ShardRouter shardRouter;
+
+    private ShardRebalancer shardRebalancer;
+
+    @BeforeEach
+    void setUp() {
+        // a fresh set of in-memory databases per test, with the same schema the real shards get
+        String run = UUID.randomUUID().toString();
+        ResourceDatabasePopulator schema = new ResourceDatabasePopulator(new ClassPathResource("schema-shard.sql"));
+        for (String shard : SHARDS) {
+            DataSource dataSource = new DriverManagerDataSource(
+                    "jdbc:h2:mem:" + shard + "-" + run + ";MODE=PostgreSQL;DB_CLOSE_DELAY=-1");
+            schema.execute(dataSource);
+            dataSources.put(shard, dataSource);
+            shards.put(shard, new JdbcTemplate(dataSource));
+        }
+
+        // the ring grew from one shard to three, so everything still sits on s0
+        shardRouter = new ShardRouter(SHARDS, List.of("s0"), 32);
+        ShardingProperties properties = new ShardingProperties(true, 32, 10, 1000, List.of(), List.of("s0"));
+        shardRebalancer = new ShardRebalancer(new ShardPools(dataSources), shardRouter, properties, 7);
+
+        Timestamp expiresAt = Timestamp.from(Instant.now().plusSeconds(3600));
+        for (int i = 0; i < ROWS; i++) {
+            String longUrl = "https://example.com/" + i;
+            shards.get("s0").update("""
+                    insert into url_mappings (id, code, long_url, hit_count, created_at, expires_at)
+                    values (nextval('url_mappings_seq'), ?, ?, ?, ?, ?)
+                    """, "code" + i, longUrl, i, expiresAt, expiresAt);
+            shards.get("s0").update("insert into url_digests (digest, code, expires_at) values (?, ?, ?)",
+                    UrlHashUtil.digest(longUrl), "code" + i, expiresAt);
+        }
+    }
+
+    @Test
+    void rebalance_movesEveryRowToItsOwner() {
+        ShardRebalanceStatus status = shardRebalancer.rebalance();
+
+        assertEquals("done", status.state());
+        long expectedMoves = 0;
+        for (int i = 0; i < ROWS; i++) {
+            String code = "code" + i;
+            String digest = UrlHashUtil.digest("https://example.com/" + i);
+            expectedMoves += (shardRouter.shardForCode(code).equals("s0") ? 0 : 1)
+                    + (shardRouter.shardForDigest(digest).equals("s0") ? 0 : 1);
+            for (String shard : SHARDS) {
+                int mappings = count(shard, "select count(*) from url_mappings where code = ?", code);
+                int digests = count(shard, "select count(*) from url_digests where digest = ?", digest);
+                assertEquals(shard.equals(shardRouter.shardForCode(code)) ? 1 : 0, mappings, code + " on " + shard);
+                assertEquals(shard.equals(shardRouter.shardForDigest(digest)) ? 1 : 0, digests, digest + " on " + shard);
+            }
+        }
+        assertEquals(expectedMoves, status.moved());
+        long hitCount = shards.get(shardRouter.shardForCode("code5"))
+                .queryForObject("select hit_count from url_mappings where code = 'code5'", Long.class);
+        assertEquals(5L, hitCount);
+    }
+
+    @Test
+    void rebalance_isIdempotent() {
+        long movedFirst = shardRebalancer.rebalance().moved();
+        ShardRebalanceStatus second = shardRebalancer.rebalance();
+
+        assertTrue(movedFirst > 0);
+        assertEquals(0, second.moved());
+        assertEquals(ROWS * 2, SHARDS.stream().mapToInt(shard ->
+                count(shard, "select count(*) from url_mappings where code like ?", "code%")
+                        + count(shard, "select count(*) from url_digests where code like ?", "code%")).sum());
+    }
+
+    @Test
+    void rebalance_drainsARetiredShard_whenTheRingShrinks() {
+        // the rows from setUp now sit on all three shards, as a finished grow would leave them
+        shardRebalancer.rebalance();
+        Timestamp expiresAt = Timestamp.from(Instant.now().plusSeconds(3600));
+        shards.get("s2").update("""
+                insert into url_mappings (id, code, long_url, hit_count, created_at, expires_at)
+                values (nextval('url_mappings_seq'), 'extra', 'https://example.com/extra', 0, ?, ?)
+                """, expiresAt, expiresAt);
+
+        // s2 is retired: still pooled, but off the ring
+        ShardRouter shrunk = new ShardRouter(List.of("s0", "s1"), SHARDS, 32);
+        ShardingProperties properties = new ShardingProperties(true, 32, 10, 1000, List.of(), SHARDS);
+        ShardRebalanceStatus status = new ShardRebalancer(new ShardPools(dataSources), shrunk, properties, 7).rebalance();
+
+        assertEquals("done", status.state());
+        assertEquals(0, count("s2", "select count(*) from url_mappings where code like ?", "%"));
+        assertEquals(0, count("s2", "select count(*) from url_digests where code like ?", "%"));
+        assertEquals(1, count(shrunk.shardForCode("extra"), "select count(*) from url_mappings where code = ?", "extra"));
+        for (int i = 0; i < ROWS; i++) {
+            String code = "code" + i;
+            String digest = UrlHashUtil.digest("https://example.com/" + i);
+            assertEquals(1, count(shrunk.shardForCode(code), "select count(*) from url_mappings where code = ?", code), code);
+            assertEquals(1, count(shrunk.shardForDigest(digest), "select count(*) from url_digests where digest = ?", digest), digest);
+        }
+    }
+
+    private int count(String shard, String sql, String key) {
+        return shards.get(shard).queryForObject(sql, Integer.class, key);
+    }
+}
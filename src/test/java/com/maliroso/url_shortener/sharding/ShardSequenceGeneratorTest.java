@@ -0,0 +1,86 @@
+package com.maliroso.url_shortener.sharding;
+
+import org.hibernate.id.IntegralDataTypeHolder;
+import org.hibernate.id.IdentifierGeneratorHelper;
+import org.hibernate.id.enhanced.AccessCallback;
+import org.hibernate.id.enhanced.Optimizer;
+import org.hibernate.id.enhanced.PooledOptimizer;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ShardSequenceGeneratorTest {
+
+    private final ShardSequenceGenerator generator = new ShardSequenceGenerator() {
+        @Override
+        public Optimizer getOptimizer() {
+            return new PooledOptimizer(Long.class, 50);
+        }
+    };
+
+    @Test
+    void generate_drawsEachShardsIdsFromItsOwnSequence() {
+        Sequence shard0 = new Sequence();
+        Sequence shard1 = new Sequence();
+
+        Set<Object> shard0Ids = new HashSet<>();
+        List<Object> shard1Ids = new ArrayList<>();
+        for (int i = 0; i < 120; i++) {
+            shard0Ids.add(generator.generate("shard-0", shard0));
+            shard1Ids.add(generator.generate("shard-1", shard1));
+        }
+
+        assertEquals(120, shard0Ids.size());
+        // a block fetched from shard-0 is never handed to shard-1; it starts from its own sequence
+        assertEquals(1L, shard1Ids.get(0));
+        assertEquals(3, shard0.calls.get());
+        assertEquals(3, shard1.calls.get());
+    }
+
+    @Test
+    void generate_neverReusesAValueTakenByAPlainNextval() {
+        Sequence shard = new Sequence();
+        generator.generate("shard-0", shard);
+        generator.generate("shard-0", shard);
+
+        // what the group commit, import or rebalancer insert would take
+        long plain = shard.nextValue().makeValue().longValue();
+        Set<Object> ids = new HashSet<>();
+        for (int i = 0; i < 100; i++) {
+            ids.add(generator.generate("shard-0", shard));
+        }
+
+        assertFalse(ids.contains(plain));
+    }
+
+    private static class Sequence implements AccessCallback {
+
+        private final AtomicLong value = new AtomicLong(-49);
+
+        private final AtomicLong calls = new AtomicLong();
+
+        @Override
+        public IntegralDataTypeHolder getNextValue() {
+            calls.incrementAndGet();
+            return nextValue();
+        }
+
+        IntegralDataTypeHolder nextValue() {
+            // start with 1 increment by 50, as in schema-shard.sql
+            IntegralDataTypeHolder holder = IdentifierGeneratorHelper.getIntegralDataTypeHolder(Long.class);
+            holder.initialize(value.addAndGet(50));
+            return holder;
+        }
+
+        @Override
+        public String getTenantIdentifier() {
+            return null;
+        }
+    }
+}
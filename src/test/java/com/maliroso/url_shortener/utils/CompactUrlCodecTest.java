@@ -0,0 +1,81 @@
+package com.maliroso.url_shortener.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CompactUrlCodecTest {
+
+    private final CompactUrlCodec codec = new CompactUrlCodec(List.of(
+            "https://",
+            "https://www.example.com/",
+            "https://www.example.com/products/"
+    ));
+
+    @Test
+    void encode_usesLongestMatchingPrefix() {
+        String url = "https://www.example.com/products/42?utm_source=mail";
+
+        byte[] encoded = codec.encode(url);
+
+        assertEquals(1 + "42?utm_source=mail".length(), encoded.length);
+        assertEquals(url, codec.decode(encoded));
+    }
+
+    @Test
+    void decode_roundTripsUrlsWithoutPrefix_andNonAscii() {
+        List<String> urls = List.of(
+                "http://other.org/a",
+                "https://www.example.com/café?q=ü",
+                "https://例え.jp/",
+                ""
+        );
+
+        for (String url : urls) {
+            assertEquals(url, codec.decode(codec.encode(url)));
+        }
+    }
+
+    @Test
+    void decode_handlesUrlsLongerThanScratchBuffer() {
+        String url = "https://www.example.com/" + "x".repeat(20_000);
+
+        assertEquals(url, codec.decode(codec.encode(url)));
+    }
+
+    @Test
+    void identity_onlyAddsHeaderByte() {
+        String url = "https://www.example.com/";
+
+        assertEquals(url.length() + 1, CompactUrlCodec.IDENTITY.encode(url).length);
+        assertEquals(url, CompactUrlCodec.IDENTITY.decode(CompactUrlCodec.IDENTITY.encode(url)));
+    }
+
+    @Test
+    void learn_ranksPrefixesBySavings() {
+        List<String> sample = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            sample.add("https://shop.example.com/catalog/item/" + i + "?utm_campaign=spring");
+        }
+        for (int i = 0; i < 5; i++) {
+            sample.add("https://rare.example.org/page/" + i);
+        }
+
+        List<String> prefixes = CompactUrlCodec.learn(sample, 2, 10);
+
+        assertEquals(List.of("https://shop.example.com/catalog/item/", "https://shop.example.com/catalog/"), prefixes);
+    }
+
+    @Test
+    void constructor_rejectsTooManyPrefixes() {
+        List<String> prefixes = new ArrayList<>();
+        for (int i = 0; i <= CompactUrlCodec.MAX_PREFIXES; i++) {
+            prefixes.add("https://host" + i + "/");
+        }
+
+        assertThrows(IllegalArgumentException.class, () -> new CompactUrlCodec(prefixes));
+    }
+}
@@ -0,0 +1,61 @@
+package com.maliroso.url_shortener.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ConsistentHashRingTest {
+
+    private static final int KEYS = 30_000;
+
+    @Test
+    void nodeFor_spreadsKeysEvenly() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c"), 128);
+        Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < KEYS; i++) {
+            counts.merge(ring.nodeFor("key" + i), 1, Integer::sum);
+        }
+
+        assertEquals(3, counts.size());
+        for (int count : counts.values()) {
+            assertTrue(count > KEYS / 3 * 0.8 && count < KEYS / 3 * 1.2, "unbalanced: " + counts);
+        }
+    }
+
+    @Test
+    void nodeFor_movesAboutOneNthOfKeys_whenNodeAdded() {
+        ConsistentHashRing before = new ConsistentHashRing(List.of("a", "b", "c"), 128);
+        ConsistentHashRing after = new ConsistentHashRing(List.of("a", "b", "c", "d"), 128);
+        int moved = 0;
+        for (int i = 0; i < KEYS; i++) {
+            String key = "key" + i;
+            String owner = after.nodeFor(key);
+            if (!owner.equals(before.nodeFor(key))) {
+                // keys only ever move to the new node
+                assertEquals("d", owner);
+                moved++;
+            }
+        }
+
+        assertTrue(moved > KEYS / 4 * 0.8 && moved < KEYS / 4 * 1.2, "moved " + moved);
+    }
+
+    @Test
+    void nodeFor_doesNotDependOnNodeOrder() {
+        ConsistentHashRing ring = new ConsistentHashRing(List.of("a", "b", "c"), 16);
+        ConsistentHashRing reordered = new ConsistentHashRing(List.of("c", "a", "b"), 16);
+
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(ring.nodeFor("key" + i), reordered.nodeFor("key" + i));
+        }
+    }
+
+    @Test
+    void constructor_rejectsEmptyRing() {
+        assertThrows(IllegalArgumentException.class, () -> new ConsistentHashRing(List.of(), 16));
+    }
+}
@@ -0,0 +1,38 @@
+package com.maliroso.url_shortener.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ExportCursorTest {
+
+    @Test
+    void decode_returnsEncodedId() {
+        assertEquals(new ExportCursor.Position(0, 123456789L), ExportCursor.decode(ExportCursor.encode(123456789L)));
+    }
+
+    @Test
+    void decode_returnsShardAndId() {
+        assertEquals(new ExportCursor.Position(2, 77L), ExportCursor.decode(ExportCursor.encode(2, 77L)));
+    }
+
+    @Test
+    void encode_keepsSingleShardFormat() {
+        String token = Base64.getUrlEncoder().withoutPadding().encodeToString("id:5".getBytes(StandardCharsets.US_ASCII));
+
+        assertEquals(token, ExportCursor.encode(0, 5));
+    }
+
+    @Test
+    void decode_rejectsForeignTokens() {
+        String token = Base64.getUrlEncoder().encodeToString("page:3".getBytes(StandardCharsets.US_ASCII));
+        String negative = Base64.getUrlEncoder().encodeToString("id:-1/3".getBytes(StandardCharsets.US_ASCII));
+
+        assertThrows(IllegalArgumentException.class, () -> ExportCursor.decode(token));
+        assertThrows(IllegalArgumentException.class, () -> ExportCursor.decode(negative));
+        assertThrows(IllegalArgumentException.class, () -> ExportCursor.decode("%%%"));
+    }
+}
@@ -0,0 +1,48 @@
+package com.maliroso.url_shortener.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RecordFormatUtilTest {
+
+    @Test
+    void appendJsonString_escapesQuotesAndControlCharacters() {
+        StringBuilder sb = new StringBuilder();
+        RecordFormatUtil.appendJsonString(sb, "a\"b\\c\nd\u0001");
+
+        assertEquals("\"a\\\"b\\\\c\\nd\\u0001\"", sb.toString());
+    }
+
+    @Test
+    void appendJsonString_writesNullLiteral() {
+        StringBuilder sb = new StringBuilder();
+        RecordFormatUtil.appendJsonString(sb, null);
+
+        assertEquals("null", sb.toString());
+    }
+
+    @Test
+    void appendCsvField_quotesOnlyWhenNeeded() {
+        StringBuilder plain = new StringBuilder();
+        RecordFormatUtil.appendCsvField(plain, "https://example.com/a");
+        StringBuilder quoted = new StringBuilder();
+        RecordFormatUtil.appendCsvField(quoted, "x,\"y\"");
+
+        assertEquals("https://example.com/a", plain.toString());
+        assertEquals("\"x,\"\"y\"\"\"", quoted.toString());
+    }
+
+    @Test
+    void parseCsvLine_handlesQuotedFieldsAndEmptyColumns() {
+        assertEquals(List.of("abc", "https://q.com/?a=1,b=\"2\"", ""),
+                RecordFormatUtil.parseCsvLine("abc,\"https://q.com/?a=1,b=\"\"2\"\"\","));
+    }
+
+    @Test
+    void parseCsvLine_rejectsUnterminatedQuote() {
+        assertThrows(IllegalArgumentException.class, () -> RecordFormatUtil.parseCsvLine("abc,\"https://q.com"));
+    }
+}
@@ -0,0 +1,102 @@
+package com.maliroso.url_shortener.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class SpaceSavingSketchTest {
+
+    @Test
+    void top_ranksItemsByCount() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(10);
+        for (int i = 0; i < 5; i++) sketch.offer("hot");
+        for (int i = 0; i < 2; i++) sketch.offer("warm");
+        sketch.offer("cold");
+
+        List<SpaceSavingSketch.Entry> top = sketch.top(2);
+
+        assertEquals(2, top.size());
+        assertEquals("hot", top.get(0).item());
+        assertEquals(5, top.get(0).count());
+        assertEquals("warm", top.get(1).item());
+    }
+
+    @Test
+    void offer_neverTracksMoreThanCapacity() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(3);
+        for (int i = 0; i < 1000; i++) {
+            sketch.offer("code" + i);
+        }
+
+        assertEquals(3, sketch.top(Integer.MAX_VALUE).size());
+    }
+
+    @Test
+    void offer_keepsHeavyHitterAmongManyOneOffItems() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(8);
+        for (int i = 0; i < 1000; i++) {
+            sketch.offer("viral");
+            sketch.offer("once" + i);
+        }
+
+        SpaceSavingSketch.Entry first = sketch.top(1).get(0);
+        assertEquals("viral", first.item());
+        assertTrue(first.count() - first.error() <= 1000);
+        assertTrue(first.count() >= 1000);
+    }
+
+    @Test
+    void offer_evictsTheSmallestCounter() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(3);
+        for (int i = 0; i < 3; i++) sketch.offer("a");
+        sketch.offer("b");
+        for (int i = 0; i < 2; i++) sketch.offer("c");
+
+        sketch.offer("d");
+
+        List<SpaceSavingSketch.Entry> top = sketch.top(10);
+        assertEquals(List.of("a", "c", "d"), top.stream().map(SpaceSavingSketch.Entry::item).sorted().toList());
+        SpaceSavingSketch.Entry newcomer = top.stream().filter(entry -> entry.item().equals("d")).findFirst().orElseThrow();
+        assertEquals(2, newcomer.count());
+        assertEquals(1, newcomer.error());
+    }
+
+    @Test
+    void decay_mergesCountersThatHalveToTheSameCount() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(4);
+        for (int i = 0; i < 4; i++) sketch.offer("four");
+        for (int i = 0; i < 5; i++) sketch.offer("five");
+        for (int i = 0; i < 9; i++) sketch.offer("nine");
+
+        sketch.decay();
+        for (int i = 0; i < 3; i++) sketch.offer("five");
+
+        List<SpaceSavingSketch.Entry> top = sketch.top(10);
+        assertEquals("five", top.get(0).item());
+        assertEquals(5, top.get(0).count());
+        assertEquals("nine", top.get(1).item());
+        assertEquals(4, top.get(1).count());
+        assertEquals("four", top.get(2).item());
+        assertEquals(2, top.get(2).count());
+    }
+
+    @Test
+    void decay_halvesCountsAndDropsEmptyCounters() {
+        SpaceSavingSketch sketch = new SpaceSavingSketch(4);
+        for (int i = 0; i < 8; i++) sketch.offer("hot");
+        sketch.offer("cold");
+
+        sketch.decay();
+
+        List<SpaceSavingSketch.Entry> top = sketch.top(10);
+        assertEquals(1, top.size());
+        assertEquals(4, top.get(0).count());
+    }
+
+    @Test
+    void constructor_rejectsNonPositiveCapacity() {
+        assertThrows(IllegalArgumentException.class, () -> new SpaceSavingSketch(0));
+    }
+}
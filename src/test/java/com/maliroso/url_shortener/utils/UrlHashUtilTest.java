@@ -49,4 +49,28 @@ class UrlHashUtilTest {
             assertEquals(expected, expiresAt);
         }
     }
-}
\ No newline at end of file
+
+    @Test
+    void isValidCode_acceptsGeneratedAndLegacyCodes() {
+        assertTrue(UrlHashUtil.isValidCode(UrlHashUtil.generateMd5Hash("https://linkedin.com")));
+        assertTrue(UrlHashUtil.isValidCode("legacy_code-42"));
+
+        assertFalse(UrlHashUtil.isValidCode(null));
+        assertFalse(UrlHashUtil.isValidCode(""));
+        assertFalse(UrlHashUtil.isValidCode("has space"));
+        assertFalse(UrlHashUtil.isValidCode("a".repeat(65)));
+    }
+
+    @Test
+    void keyspaceSize_isBase62ToTheCodeLength() {
+        assertEquals(56_800_235_584L, UrlHashUtil.keyspaceSize());
+    }
+
+    @Test
+    void isGeneratedCode_acceptsOnlySixBase62Characters() {
+        assertTrue(UrlHashUtil.isGeneratedCode(UrlHashUtil.generateMd5Hash("https://example.com")));
+        assertFalse(UrlHashUtil.isGeneratedCode("abc"));
+        assertFalse(UrlHashUtil.isGeneratedCode("abc-de"));
+        assertFalse(UrlHashUtil.isGeneratedCode(null));
+    }
+}